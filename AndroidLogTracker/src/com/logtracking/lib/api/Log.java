@@ -51,6 +51,8 @@ public final class Log {
     private static final String[] EMPTY_LOCATION = {"",""};
 	
 	private static LogConfiguration sLogConfiguration;
+
+	private static InProcessLogQueue sInProcessLogQueue;
 	
 	/**
 	 * Cannot be instantiated
@@ -73,6 +75,11 @@ public final class Log {
             LogContext logContext = new LogContext(logConfiguration,applicationContext);
 
 			LogFilter.getInstance().initFilter(logContext);
+
+			if (logConfiguration.isFilterOnlyOwnRecord()){
+				sInProcessLogQueue = InProcessLogQueue.getInstance();
+				sInProcessLogQueue.initQueue(logContext);
+			}
 			
 			LogFileManager logFileManager = new LogFileManager(logContext);
 			logFileManager.startLogSaving();
@@ -99,7 +106,7 @@ public final class Log {
      * @param msg The message you would like logged.
      */
 	public static int d(String tag, String msg){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < DEBUG ? android.util.Log.d(LIBRARY_FILTER_TAG + tag , msg) : -1;
+		return dispatch(DEBUG, tag, msg, null) ? android.util.Log.d(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 	
 	/**
@@ -111,7 +118,7 @@ public final class Log {
      */
 	
 	public static int d(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < DEBUG ? android.util.Log.d(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(DEBUG, tag, msg, tr) ? android.util.Log.d(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 	
 	/**
@@ -121,7 +128,7 @@ public final class Log {
      * @param msg The message you would like logged.
      */
 	public static int e(String tag, String msg ){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < ERROR ? android.util.Log.e(LIBRARY_FILTER_TAG + tag , msg ) : -1;
+		return dispatch(ERROR, tag, msg, null) ? android.util.Log.e(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 	
 	/**
@@ -132,7 +139,7 @@ public final class Log {
      * @param tr An exception to log
      */
 	public static int e(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < ERROR ? android.util.Log.e(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(ERROR, tag, msg, tr) ? android.util.Log.e(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 	
 	/**
@@ -142,7 +149,7 @@ public final class Log {
      * @param msg The message you would like logged.
      */
 	public static int i(String tag, String msg ){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < INFO ? android.util.Log.i(LIBRARY_FILTER_TAG + tag , msg ) : -1;
+		return dispatch(INFO, tag, msg, null) ? android.util.Log.i(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 	
 	/**
@@ -153,7 +160,7 @@ public final class Log {
      * @param tr An exception to log
      */
 	public static int i(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < INFO ? android.util.Log.i(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(INFO, tag, msg, tr) ? android.util.Log.i(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 	
 	/**
@@ -165,7 +172,7 @@ public final class Log {
      */
 	
 	public static int v(String tag, String msg ){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < VERBOSE ? android.util.Log.v(LIBRARY_FILTER_TAG + tag , msg ) : -1;
+		return dispatch(VERBOSE, tag, msg, null) ? android.util.Log.v(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 	
 	/**
@@ -176,7 +183,7 @@ public final class Log {
      * @param tr An exception to log
      */
 	public static int v(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < VERBOSE ? android.util.Log.v(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(VERBOSE, tag, msg, tr) ? android.util.Log.v(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 
 	 /**
@@ -186,7 +193,7 @@ public final class Log {
      * @param msg The message you would like logged.
      */
 	public static int w(String tag, String msg ){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < WARN ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , msg ) : -1;
+		return dispatch(WARN, tag, msg, null) ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 
     /**
@@ -196,7 +203,7 @@ public final class Log {
      * @param tr An exception to log
      */
 	public static int w(String tag,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < WARN ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , tr) : -1;
+		return dispatch(WARN, tag, null, tr) ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , tr) : -1;
 	}
 	
 	/**
@@ -207,7 +214,7 @@ public final class Log {
      * @param tr An exception to log
      */
 	public static int w(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < WARN ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(WARN, tag, msg, tr) ? android.util.Log.w(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 
 
@@ -222,7 +229,7 @@ public final class Log {
      * @param msg The message you would like logged.
      */
 	public static int wtf(String tag, String msg ){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < ERROR ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , msg ) : -1;
+		return dispatch(ERROR, ASSERT, tag, msg, null, true) ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , msg) : -1;
 	}
 
     /**
@@ -233,7 +240,7 @@ public final class Log {
      * @param tr An exception to log.
      */
 	public static int wtf(String tag,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < ERROR ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , tr) : -1;
+		return dispatch(ERROR, ASSERT, tag, null, tr, true) ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , tr) : -1;
 	}
 
     /**
@@ -245,7 +252,7 @@ public final class Log {
      * @param tr An exception to log.  May be null.
      */
 	public static int wtf(String tag, String msg ,Throwable tr){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < ERROR ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
+		return dispatch(ERROR, ASSERT, tag, msg, tr, true) ? android.util.Log.wtf(LIBRARY_FILTER_TAG + tag , msg , tr) : -1;
 	}
 	
 	/**
@@ -257,7 +264,7 @@ public final class Log {
      * @return The number of bytes written.
      */
 	public static int println(int priority,String tag, String msg){
-		return sLogConfiguration.getMinimumLoggingLevelAvailable() < priority ? android.util.Log.println(priority, tag, msg) : -1;
+		return dispatch(priority, priority, tag, msg, null, false) ? android.util.Log.println(priority, tag, msg) : -1;
 	}
 	
 	 /**
@@ -463,6 +470,24 @@ public final class Log {
 		return wtf(tag,concatArgs(args));
 	}
 	
+	/*
+	 * Check is message with given priority available and publish it to in-process queue, if log saving takes records from it.
+	 * Return true if message should be sent to system log.
+	 */
+	private static boolean dispatch(int priority, String tag, String msg, Throwable tr){
+		return dispatch(priority, priority, tag, msg, tr, true);
+	}
+
+	private static boolean dispatch(int availableLevel, int priority, String tag, String msg, Throwable tr, boolean libraryTag){
+		if (sLogConfiguration.getMinimumLoggingLevelAvailable() >= availableLevel)
+			return false;
+
+		if (sInProcessLogQueue != null){
+			sInProcessLogQueue.publish(priority, libraryTag ? LIBRARY_FILTER_TAG + tag : tag, msg, tr);
+		}
+		return true;
+	}
+
 	private static String concatArgs(Object... args){
 		StringBuilder builder = new StringBuilder();
 		for (Object arg : args){
@@ -1,8 +1,11 @@
 package com.logtracking.lib.api;
 
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
+import com.logtracking.lib.internal.LogMetrics;
+
 /**
  * Class provide additional functionality to log standard system and runtime data.
  * All messages has {@link Log#INFO} level.
@@ -121,4 +124,41 @@ public class LogUtils {
 	public static int logCallerClassAndMethod(){
 		return logCallerClassAndMethod(TAG);
 	}
+
+	/**
+	 * Get current metrics of tracker : counts of read, parsed, filtered and dropped log lines, count of written bytes,
+	 * counts and durations of flushes, report preparation phases and uploads, depth of queues and times of tasks
+	 * of background threads. Durations are in microseconds, histogram of flush durations is counted in buckets of milliseconds.
+	 *
+	 * @return unmodifiable map of metric values by their names.
+	 */
+	public static Map<String, Long> getMetrics(){
+		return LogMetrics.snapshot();
+	}
+
+	/**
+	 * Log metrics of tracker in format : Tracker metrics : name = value, name = value ...
+	 * Log message level - {@link Log#INFO}.
+	 *
+	 * @param tag tag Used to identify the source of a log message.  It usually identifies
+     *       the class or activity where the log call occurs.
+	 * @see #getMetrics()
+	 */
+	public static int logMetrics(String tag){
+		StringBuilder message = new StringBuilder("Tracker metrics : ");
+		String separator = "";
+		for (Map.Entry<String, Long> metric : getMetrics().entrySet()){
+			message.append(separator).append(metric.getKey()).append(" = ").append(metric.getValue());
+			separator = ", ";
+		}
+		return Log.i(tag, message.toString());
+	}
+
+	/**
+	 * Log metrics of tracker in format : Tracker metrics : name = value, name = value ...
+	 * Log message level - {@link Log#INFO}.
+	 */
+	public static int logMetrics(){
+		return logMetrics(TAG);
+	}
 }
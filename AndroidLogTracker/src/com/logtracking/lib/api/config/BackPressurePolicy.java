@@ -0,0 +1,29 @@
+package com.logtracking.lib.api.config;
+
+/**
+ * Enum represents policy of log saving, when log file writing can't keep up with reading of system log.
+ * Messages read from system log are collected in one buffer, while other buffer is written in log file.
+ * Policy defines what happens, when first buffer is full and second one is still being written.
+ *
+ * @see LogConfiguration.LogConfigurationBuilder#setBackPressurePolicy(BackPressurePolicy)
+ */
+public enum BackPressurePolicy {
+
+    /**
+     * Reading of system log will be paused until buffer will be written.
+     * No messages are lost by library, but system log ring buffer could overflow meanwhile.
+     */
+    BLOCK,
+
+    /**
+     * The oldest collected messages, which are waiting to be written, will be dropped, so reading of system log
+     * could continue with newest messages.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Collected messages will be appended to temporary spill file, which is moved into log file
+     * before next written buffer. In mode {@link LogConfiguration.LogSavingMode#SAVE_IN_RING_BUFFER} works as {@link #BLOCK}.
+     */
+    SPILL_TO_DISK
+}
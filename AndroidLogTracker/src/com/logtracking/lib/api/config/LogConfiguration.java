@@ -9,6 +9,7 @@ import com.logtracking.lib.internal.ReportIssueActivity;
 
 import java.io.File;
 import java.util.*;
+import java.util.zip.Deflater;
 
 import static com.logtracking.lib.api.Log.*;
 import static java.util.Collections.*;
@@ -37,6 +38,16 @@ public final class LogConfiguration {
 
         private static final long DEFAULT_LOG_FILE_ROTATION_SIZE = 1 * 1000 * 1024;
 
+        private static final int DEFAULT_FLUSH_SIZE_THRESHOLD = 64 * 1024;
+
+        private static final long DEFAULT_FLUSH_MAX_LATENCY = 500;
+
+        private static final int DEFAULT_RING_BUFFER_SIZE = 2 * 1024 * 1024;
+
+        private static final int DEFAULT_RETAINED_SEGMENTS_COUNT = 1;
+
+        private static final long DEFAULT_RETAINED_SEGMENTS_SIZE = 4 * 1024 * 1024;
+
 
         /**
          *  Return new instance of {@link LogConfigurationBuilder} class , with recommended debug parameters.
@@ -50,6 +61,8 @@ public final class LogConfiguration {
          *      <br> - Log messages filtering by package of current application;
          *      <br> - Folder with log files locate in application cache of in application folder if SD card not exist;
          *      <br> - File format is {@link LogFileFormat#DEFAULT};
+         *      <br> - Back-pressure policy is {@link BackPressurePolicy#BLOCK};
+         *      <br> - Log messages are flushed in file every 64 KB or 500 ms;
          *
          * @param context  application context
          * @return         new instance of default config.
@@ -90,6 +103,8 @@ public final class LogConfiguration {
          *      <br> - Log messages filtering by package of current application;
          *      <br> - Folder with log files locate in application cache of in application folder if SD card not exist.
          *      <br> - File format is {@link LogFileFormat#DEFAULT};
+         *      <br> - Back-pressure policy is {@link BackPressurePolicy#BLOCK};
+         *      <br> - Log messages are flushed in file every 64 KB or 500 ms;
          *
          * @param context application context
          * @return        new instance of production config.
@@ -151,6 +166,7 @@ public final class LogConfiguration {
         private List<String> mTagFilter = new ArrayList<String>();
         private int mLevelFilter;
         private boolean mFilterOnlyOwnLogRecord;
+        private LogRecordFilter mRecordFilter;
 
         /*
          * File config
@@ -160,10 +176,20 @@ public final class LogConfiguration {
         private String mSnapshotDirectoryName;
         private String  mLogFileName;
         private LogFileFormat mLogFileFormat;
+        private LogFileFormat mReportFileFormat;
         private LogFileRotationType mLogFileRotationType;
         private long mLogFileRotationSize;
         private long mLogFileRotationTime;
         private List<String> mFilesAttachedToReport = new ArrayList<String>();
+        private BackPressurePolicy mBackPressurePolicy;
+        private LogFlushPolicy mFlushPolicy;
+        private LogRetentionPolicy mRetentionPolicy;
+        private long mReportTimeWindow;
+        private int mReportCompressionLevel;
+        private boolean mAppendOnlyLogFile;
+        private int mRingBufferSize;
+        private boolean mLogcatBinaryOutput;
+        private boolean mMetricsInReport;
 
         /*
          * Sending config
@@ -196,6 +222,12 @@ public final class LogConfiguration {
             mFilesAttachedToReport.add(mSnapshotDirectoryName);
             mLogFileName = mLogDirectoryName + FILE_NAME_SEPARATOR + DEFAULT_LOG_FILE_NAME;
             mLogFileFormat = LogFileFormat.DEFAULT;
+            mReportFileFormat = LogFileFormat.DEFAULT;
+            mBackPressurePolicy = BackPressurePolicy.BLOCK;
+            mFlushPolicy = new LogFlushPolicy(DEFAULT_FLUSH_SIZE_THRESHOLD, DEFAULT_FLUSH_MAX_LATENCY);
+            mRingBufferSize = DEFAULT_RING_BUFFER_SIZE;
+            mRetentionPolicy = new LogRetentionPolicy(DEFAULT_RETAINED_SEGMENTS_COUNT, DEFAULT_RETAINED_SEGMENTS_SIZE);
+            mReportCompressionLevel = Deflater.DEFAULT_COMPRESSION;
             mSnapshotFormat = Bitmap.CompressFormat.PNG;
             mSnapshotQuality = 100;
             mApplicationPackage = applicationContext.getPackageName();
@@ -292,6 +324,8 @@ public final class LogConfiguration {
 
         /**
          * Set true to filter only messages containing library tag.
+         * Such messages are taken in process, without reading logcat, so messages from other processes of application
+         * are not saved, and messages, logged while log is not being saved, are dropped.
          *
          * @param onlyOwnLogRecord  true is you want to save messages from Log class.
          * @return current instance.
@@ -304,6 +338,20 @@ public final class LogConfiguration {
             return this;
         }
 
+        /**
+         * Set filter of log messages, which is applied to every log message before it is saved in file,
+         * in addition to package, tag and level filters.
+         *
+         * @param recordFilter filter of log messages, composed by factory methods of {@link LogRecordFilter}.
+         * @return current instance.
+         * @throws NullPointerException if recordFilter is null.
+         */
+        public LogConfigurationBuilder setRecordFilter(LogRecordFilter recordFilter){
+            checkNotNull(recordFilter);
+            mRecordFilter = recordFilter;
+            return this;
+        }
+
         /**
          * Set mode of saving log messages ing log file.
          *
@@ -345,6 +393,22 @@ public final class LogConfiguration {
             return this;
         }
 
+        /**
+         * Set text format, to which log file in format {@link LogFileFormat#BINARY} is decoded, when issue report is prepared.
+         * Default format is {@link LogFileFormat#DEFAULT}.
+         *
+         * @param reportFileFormat text format of issue report.
+         * @return current instance.
+         * @throws NullPointerException if reportFileFormat is null.
+         * @throws IllegalArgumentException if reportFileFormat is {@link LogFileFormat#BINARY}.
+         */
+        public LogConfigurationBuilder setReportFileFormat(LogFileFormat reportFileFormat){
+            checkNotNull(reportFileFormat);
+            checkArgument(reportFileFormat == LogFileFormat.BINARY, "Report file format should be text format");
+            mReportFileFormat = reportFileFormat;
+            return this;
+        }
+
         /**
          * Set max log file size. If log file size is more, that was set,  file rotation started.
          * Also this method set file rotation mode - {@link com.logtracking.lib.api.config.LogConfiguration.LogFileRotationType#ROTATION_BY_SIZE}.
@@ -391,6 +455,139 @@ public final class LogConfiguration {
         }
 
 
+        /**
+         * Set policy of handling log messages, which are read from system log faster then they could be written in log file.
+         *
+         * @param policy back-pressure policy.
+         * @return current instance.
+         * @see BackPressurePolicy
+         * @throws NullPointerException if policy is null.
+         */
+        public LogConfigurationBuilder setBackPressurePolicy(BackPressurePolicy policy){
+            checkNotNull(policy);
+            mBackPressurePolicy = policy;
+            return this;
+        }
+
+        /**
+         * Set policy of flushing collected log messages in log file.
+         *
+         * @param flushPolicy flush policy.
+         * @return current instance.
+         * @see LogFlushPolicy
+         * @throws NullPointerException if flushPolicy is null.
+         */
+        public LogConfigurationBuilder setFlushPolicy(LogFlushPolicy flushPolicy){
+            checkNotNull(flushPolicy);
+            mFlushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * Set policy of keeping rotated log files. Rotated log file is compressed in background and kept
+         * as historical segment, which is included in issue report. By default only one segment is kept.
+         *
+         * @param retentionPolicy retention policy.
+         * @return current instance.
+         * @see LogRetentionPolicy
+         * @throws NullPointerException if retentionPolicy is null.
+         */
+        public LogConfigurationBuilder setRetentionPolicy(LogRetentionPolicy retentionPolicy){
+            checkNotNull(retentionPolicy);
+            mRetentionPolicy = retentionPolicy;
+            return this;
+        }
+
+        /**
+         * Set time window of issue and crash reports : report will contain only log messages, saved during given time
+         * before report preparation. Only needed parts of log files are read, so report is prepared faster.
+         * Window is applied to time of log messages. Date of message, read from text output of logcat, has no year,
+         * so time, when message was read, is used for it.
+         * Set 0 to include all saved log messages, which is default.
+         * Used only in log saving mode {@link LogSavingMode#SAVE_ALL_LOG_IN_FILE}.
+         *
+         * @param reportTimeWindow time window in milliseconds or 0.
+         * @return current instance.
+         * @throws IllegalArgumentException if reportTimeWindow is less then 0.
+         */
+        public LogConfigurationBuilder setReportTimeWindow(long reportTimeWindow){
+            checkArgument(reportTimeWindow < 0, "Report time window couldn't be less then 0");
+            mReportTimeWindow = reportTimeWindow;
+            return this;
+        }
+
+        /**
+         * Set compression level of issue report archive, from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+         * Lower level makes report preparation faster, what could be important for crash reports, but report is larger.
+         * Default is {@link Deflater#DEFAULT_COMPRESSION}. Attached PNG and JPEG files are already compressed,
+         * so they are always stored without compression.
+         *
+         * @param reportCompressionLevel compression level of report archive.
+         * @return current instance.
+         * @throws IllegalArgumentException if reportCompressionLevel is out of bound of compression levels.
+         */
+        public LogConfigurationBuilder setReportCompressionLevel(int reportCompressionLevel){
+            checkArgument(reportCompressionLevel < Deflater.DEFAULT_COMPRESSION ||
+                          reportCompressionLevel > Deflater.BEST_COMPRESSION, "Report compression level out of bound");
+            mReportCompressionLevel = reportCompressionLevel;
+            return this;
+        }
+
+        /**
+         * Set true to keep log file in append-only mode. In this mode log file contains only formatted log messages,
+         * one per line, and new messages are always appended to the end of file. Document tags, meta-data and report message
+         * are added only to issue report file, when report is prepared. This mode allows to avoid rewriting of closing tags
+         * after every flush, and log file stays consistent if application is killed during writing.
+         * Used only in log saving mode {@link LogSavingMode#SAVE_ALL_LOG_IN_FILE}.
+         *
+         * @param appendOnlyLogFile enabling or disabling append-only mode of log file.
+         * @return current instance.
+         */
+        public LogConfigurationBuilder setAppendOnlyLogFile(boolean appendOnlyLogFile){
+            mAppendOnlyLogFile = appendOnlyLogFile;
+            return this;
+        }
+
+        /**
+         * Set size of ring buffer file, which keeps last log messages in mode {@link LogSavingMode#SAVE_IN_RING_BUFFER}.
+         * Default size is 2 MB.
+         *
+         * @param ringBufferSize size of ring buffer in bytes.
+         * @return current instance.
+         * @throws IllegalArgumentException if ringBufferSize is less or equal 0.
+         */
+        public LogConfigurationBuilder setRingBufferSize(int ringBufferSize){
+            checkArgument(ringBufferSize <= 0, "Ring buffer size should be more then 0");
+            mRingBufferSize = ringBufferSize;
+            return this;
+        }
+
+        /**
+         * Set true to read log messages from logcat in binary format. Binary entries are decoded without parsing of text
+         * lines, and tag and message are decoded only for log messages, which pass pid and level filters.
+         * Default value is false.
+         *
+         * @param logcatBinaryOutput enabling or disabling binary output of logcat.
+         * @return current instance.
+         */
+        public LogConfigurationBuilder setLogcatBinaryOutput(boolean logcatBinaryOutput){
+            mLogcatBinaryOutput = logcatBinaryOutput;
+            return this;
+        }
+
+        /**
+         * Set true to add metrics of tracker, e.g. counts of read and dropped log lines and durations of flushes,
+         * to meta-data of report. Metrics are always available by {@link com.logtracking.lib.api.LogUtils#getMetrics()}.
+         * Default value is false.
+         *
+         * @param metricsInReport enabling or disabling metrics in report.
+         * @return current instance.
+         */
+        public LogConfigurationBuilder setMetricsInReport(boolean metricsInReport){
+            mMetricsInReport = metricsInReport;
+            return this;
+        }
+
         /**
          * Add full path to file that should be attached to archive with report.
          *
@@ -534,7 +731,17 @@ public final class LogConfiguration {
          * Log file will be not rotate in this mode.
          * Issue report , that will be send , will contains only dumped messages from system log ring buffer.
          */
-        SAVE_ONLY_IF_NEEDED
+        SAVE_ONLY_IF_NEEDED,
+
+        /**
+         * In this mode last log messages will be saved in fixed-size ring buffer file, mapped in memory, while application works.
+         * The oldest messages are overwritten by newest ones. Saved messages are kept even if application process
+         * is killed, and will be included in next issue report.
+         * Log file will be not rotate in this mode.
+         *
+         * @see com.logtracking.lib.api.config.LogConfiguration.LogConfigurationBuilder#setRingBufferSize(int)
+         */
+        SAVE_IN_RING_BUFFER
     }
 
     /**
@@ -560,7 +767,16 @@ public final class LogConfiguration {
         /**
          * File in Html format.
          */
-        HTML
+        HTML,
+
+        /**
+         * Compact binary file : pid and tid are varint-encoded, time is stored as delta from previous message,
+         * tags and package names are stored once and then referenced by id. Binary file is decoded to text format
+         * when issue report is prepared.
+         *
+         * @see com.logtracking.lib.api.config.LogConfiguration.LogConfigurationBuilder#setReportFileFormat(LogFileFormat)
+         */
+        BINARY
     }
 
     /**
@@ -568,7 +784,8 @@ public final class LogConfiguration {
      * Rotation is used to avoid possible growing of log file to very large size.
      * When current log file should be rotated in some moment, which depends on mode, current file will be renamed
      * to temporary log file, and new log file will be created, in which log messages will continue to save.
-     * In case if in moment  of log file rotation previous temporary log file will be exist it will be removed.
+     * Temporary log file is compressed in background and kept as historical segment, the oldest segments
+     * are removed according to {@link LogRetentionPolicy}.
      *
      * Rotation used only in log saving mode {@link LogSavingMode#SAVE_ALL_LOG_IN_FILE}
      */
@@ -624,6 +841,7 @@ public final class LogConfiguration {
     private final List<String> mTagFilter;
     private final int mLevelFilter;
     private boolean mFilterOnlyOwnLogRecord;
+    private final LogRecordFilter mRecordFilter;
 
     /*
      * File config
@@ -633,10 +851,20 @@ public final class LogConfiguration {
     private final String mSnapshotDirectoryName;
     private final String mLogFileName;
     private final LogFileFormat mLogFileFormat;
+    private final LogFileFormat mReportFileFormat;
     private final LogFileRotationType mLogFileRotationType;
     private final long mLogFileRotationSize;
     private final long mLogFileRotationTime;
     private final List<String> mFilesAttachedToReport;
+    private final BackPressurePolicy mBackPressurePolicy;
+    private final LogFlushPolicy mFlushPolicy;
+    private final LogRetentionPolicy mRetentionPolicy;
+    private final long mReportTimeWindow;
+    private final int mReportCompressionLevel;
+    private final boolean mAppendOnlyLogFile;
+    private final int mRingBufferSize;
+    private final boolean mLogcatBinaryOutput;
+    private final boolean mMetricsInReport;
 
     /*
      * Sending config
@@ -666,16 +894,27 @@ public final class LogConfiguration {
         mTagFilter =  unmodifiableList(builder.mTagFilter);
         mLevelFilter = builder.mLevelFilter;
         mFilterOnlyOwnLogRecord = builder.mFilterOnlyOwnLogRecord;
+        mRecordFilter = builder.mRecordFilter;
 
         mLogSavingMode = builder.mLogSavingMode;
         mLogDirectoryName = builder.mLogDirectoryName;
         mSnapshotDirectoryName = builder.mSnapshotDirectoryName;
         mLogFileName =  builder.mLogFileName;
         mLogFileFormat = builder.mLogFileFormat;
+        mReportFileFormat = builder.mReportFileFormat;
         mLogFileRotationType = builder.mLogFileRotationType;
         mLogFileRotationSize = builder.mLogFileRotationSize;
         mLogFileRotationTime = builder.mLogFileRotationTime;
         mFilesAttachedToReport = unmodifiableList(builder.mFilesAttachedToReport);
+        mBackPressurePolicy = builder.mBackPressurePolicy;
+        mFlushPolicy = builder.mFlushPolicy;
+        mRetentionPolicy = builder.mRetentionPolicy;
+        mReportTimeWindow = builder.mReportTimeWindow;
+        mReportCompressionLevel = builder.mReportCompressionLevel;
+        mAppendOnlyLogFile = builder.mAppendOnlyLogFile;
+        mRingBufferSize = builder.mRingBufferSize;
+        mLogcatBinaryOutput = builder.mLogcatBinaryOutput;
+        mMetricsInReport = builder.mMetricsInReport;
 
         mSendingSettings = builder.mSendingSettings;
 
@@ -720,6 +959,10 @@ public final class LogConfiguration {
         return mFilterOnlyOwnLogRecord;
     }
 
+    public LogRecordFilter getRecordFilter(){
+        return mRecordFilter;
+    }
+
     public LogSavingMode getLogSavingMode(){
         return mLogSavingMode;
     }
@@ -740,6 +983,10 @@ public final class LogConfiguration {
         return mLogFileFormat;
     }
 
+    public LogFileFormat getReportFileFormat(){
+        return mReportFileFormat;
+    }
+
     public LogFileRotationType getLogFileRotationType(){
         return mLogFileRotationType;
     }
@@ -756,6 +1003,42 @@ public final class LogConfiguration {
         return mFilesAttachedToReport;
     }
 
+    public BackPressurePolicy getBackPressurePolicy(){
+        return mBackPressurePolicy;
+    }
+
+    public LogFlushPolicy getFlushPolicy(){
+        return mFlushPolicy;
+    }
+
+    public LogRetentionPolicy getRetentionPolicy(){
+        return mRetentionPolicy;
+    }
+
+    public long getReportTimeWindow(){
+        return mReportTimeWindow;
+    }
+
+    public int getReportCompressionLevel(){
+        return mReportCompressionLevel;
+    }
+
+    public boolean isAppendOnlyLogFile(){
+        return mAppendOnlyLogFile;
+    }
+
+    public int getRingBufferSize(){
+        return mRingBufferSize;
+    }
+
+    public boolean isLogcatBinaryOutput(){
+        return mLogcatBinaryOutput;
+    }
+
+    public boolean isMetricsInReport(){
+        return mMetricsInReport;
+    }
+
     public LogSendingConfiguration getSendingSettings(){
         return mSendingSettings;
     }
@@ -0,0 +1,45 @@
+package com.logtracking.lib.api.config;
+
+/**
+ * Class represents policy of flushing collected log messages in log file.
+ * Messages are flushed when size of collected messages reaches size threshold or when the oldest
+ * collected message waits longer then max latency, whichever comes first.
+ * Object of {@link LogFlushPolicy} is immutable.
+ *
+ * @see LogConfiguration.LogConfigurationBuilder#setFlushPolicy(LogFlushPolicy)
+ */
+public final class LogFlushPolicy {
+
+    private final int mSizeThreshold;
+    private final long mMaxLatency;
+
+    /**
+     * @param sizeThreshold size of collected messages in bytes, after which they will be flushed.
+     * @param maxLatency max time in milliseconds, during which message could wait for flushing.
+     * @throws IllegalArgumentException if sizeThreshold or maxLatency is less or equal 0.
+     */
+    public LogFlushPolicy(int sizeThreshold, long maxLatency){
+        if (sizeThreshold <= 0) {
+            throw new IllegalArgumentException("Flush size threshold should be more then 0");
+        }
+        if (maxLatency <= 0) {
+            throw new IllegalArgumentException("Flush max latency should be more then 0");
+        }
+        mSizeThreshold = sizeThreshold;
+        mMaxLatency = maxLatency;
+    }
+
+    /**
+     * @return size of collected messages in bytes, after which they will be flushed.
+     */
+    public int getSizeThreshold(){
+        return mSizeThreshold;
+    }
+
+    /**
+     * @return max time in milliseconds, during which message could wait for flushing.
+     */
+    public long getMaxLatency(){
+        return mMaxLatency;
+    }
+}
@@ -0,0 +1,430 @@
+package com.logtracking.lib.api.config;
+
+import com.logtracking.lib.internal.LogLevels;
+import com.logtracking.lib.internal.LogModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Class represents filter of log messages, saved in log file. Filter is composed of predicates on pid, level, tag
+ * and message of log message, combined with {@link #and(LogRecordFilter)}, {@link #or(LogRecordFilter)} and
+ * {@link #not(LogRecordFilter)}.
+ * <br>
+ * Filter is compiled while it is composed : pids are kept in sorted array of primitives, tags with their levels
+ * in hash table, which is looked up without extracting tag from log message, message patterns are compiled once.
+ * Alternatives of pids and tags are merged in single set and table, and predicates are evaluated from the cheapest one,
+ * so filter could be applied to every log message at high rate.
+ * <br>
+ * Example - save warnings of own process, all messages of "Network" tag and no heartbeat messages :
+ * <pre>
+ * pids(Process.myPid()).and(level(Log.WARN).or(tagLevel("Network", Log.VERBOSE)))
+ *                      .and(not(messageContains("heartbeat")))
+ * </pre>
+ * Object of {@link LogRecordFilter} is immutable.
+ *
+ * @see LogConfiguration.LogConfigurationBuilder#setRecordFilter(LogRecordFilter)
+ */
+public abstract class LogRecordFilter {
+
+    /*Cost of evaluation of predicates, cheaper predicates are evaluated first.*/
+    private static final int PRIMITIVE_COST = 0;
+    private static final int TAG_COST = 1;
+    private static final int MESSAGE_COST = 2;
+    private static final int PATTERN_COST = 3;
+    private static final int COMPOSITION_COST = 4;
+
+    private static final int[] LEVEL_BY_SYMBOL = new int[128];
+
+    static {
+        LEVEL_BY_SYMBOL['V'] = LogLevels.VERBOSE;
+        LEVEL_BY_SYMBOL['D'] = LogLevels.DEBUG;
+        LEVEL_BY_SYMBOL['I'] = LogLevels.INFO;
+        LEVEL_BY_SYMBOL['W'] = LogLevels.WARN;
+        LEVEL_BY_SYMBOL['E'] = LogLevels.ERROR;
+        LEVEL_BY_SYMBOL['A'] = LogLevels.ASSERT;
+        LEVEL_BY_SYMBOL['F'] = LogLevels.ASSERT;
+    }
+
+    private static final Comparator<LogRecordFilter> COST_COMPARATOR = new Comparator<LogRecordFilter>() {
+        @Override
+        public int compare(LogRecordFilter first, LogRecordFilter second) {
+            return first.getCost() - second.getCost();
+        }
+    };
+
+    /*Filter could be created only by factory methods.*/
+    LogRecordFilter(){
+    }
+
+    /**
+     * @return true if log message passes filter.
+     */
+    public abstract boolean accept(LogModel record);
+
+    abstract int getCost();
+
+    /**
+     * @return filter, which is passed by log messages of given processes.
+     */
+    public static LogRecordFilter pids(int... pids){
+        checkNotNull(pids);
+        return new PidFilter(pids);
+    }
+
+    /**
+     * @return filter, which is passed by log messages with given level or higher.
+     * @throws IllegalArgumentException if level is out of bound between {@link android.util.Log#VERBOSE} and {@link android.util.Log#ASSERT}.
+     */
+    public static LogRecordFilter level(int minLevel){
+        checkLevel(minLevel);
+        return new LevelFilter(minLevel);
+    }
+
+    /**
+     * @return filter, which is passed by log messages with any of given tags.
+     */
+    public static LogRecordFilter tags(String... tags){
+        checkNotNull(tags);
+        Map<String, Integer> tagLevels = new HashMap<String, Integer>();
+        for (String tag : tags){
+            checkNotNull(tag);
+            tagLevels.put(tag, LogLevels.VERBOSE);
+        }
+        return new TagFilter(tagLevels);
+    }
+
+    /**
+     * @return filter, which is passed by log messages with given tag and given level or higher.
+     * @throws IllegalArgumentException if level is out of bound between {@link android.util.Log#VERBOSE} and {@link android.util.Log#ASSERT}.
+     */
+    public static LogRecordFilter tagLevel(String tag, int minLevel){
+        checkNotNull(tag);
+        checkLevel(minLevel);
+        return new TagFilter(Collections.singletonMap(tag, minLevel));
+    }
+
+    /**
+     * @return filter, which is passed by log messages containing given string.
+     */
+    public static LogRecordFilter messageContains(String string){
+        checkNotNull(string);
+        return new MessageFilter(string);
+    }
+
+    /**
+     * @param regularExpression regular expression, which should be found in message.
+     * @return filter, which is passed by log messages containing match of given regular expression.
+     * @throws java.util.regex.PatternSyntaxException if regular expression is invalid.
+     */
+    public static LogRecordFilter messageMatches(String regularExpression){
+        checkNotNull(regularExpression);
+        return new PatternFilter(Pattern.compile(regularExpression));
+    }
+
+    /**
+     * @return filter, which is passed by log messages, which don't pass given filter.
+     */
+    public static LogRecordFilter not(LogRecordFilter filter){
+        checkNotNull(filter);
+        return new NotFilter(filter);
+    }
+
+    /**
+     * @return filter, which is passed by log messages, which pass both this and other filter.
+     */
+    public LogRecordFilter and(LogRecordFilter other){
+        checkNotNull(other);
+        List<LogRecordFilter> filters = new ArrayList<LogRecordFilter>();
+        addOperands(filters, this, AndFilter.class);
+        addOperands(filters, other, AndFilter.class);
+        Collections.sort(filters, COST_COMPARATOR);
+        return new AndFilter(filters.toArray(new LogRecordFilter[filters.size()]));
+    }
+
+    /**
+     * @return filter, which is passed by log messages, which pass this or other filter.
+     */
+    public LogRecordFilter or(LogRecordFilter other){
+        checkNotNull(other);
+        List<LogRecordFilter> operands = new ArrayList<LogRecordFilter>();
+        addOperands(operands, this, OrFilter.class);
+        addOperands(operands, other, OrFilter.class);
+
+        /*Alternatives of pids and tags are merged in one set and one table.*/
+        List<LogRecordFilter> filters = new ArrayList<LogRecordFilter>();
+        List<Integer> pids = null;
+        Map<String, Integer> tagLevels = null;
+        for (LogRecordFilter operand : operands){
+            if (operand instanceof PidFilter){
+                if (pids == null)
+                    pids = new ArrayList<Integer>();
+                for (int pid : ((PidFilter) operand).mPids){
+                    pids.add(pid);
+                }
+            } else if (operand instanceof TagFilter){
+                if (tagLevels == null)
+                    tagLevels = new HashMap<String, Integer>();
+                mergeTagLevels(tagLevels, ((TagFilter) operand).mTagLevels);
+            } else {
+                filters.add(operand);
+            }
+        }
+        if (pids != null){
+            filters.add(new PidFilter(toIntArray(pids)));
+        }
+        if (tagLevels != null){
+            filters.add(new TagFilter(tagLevels));
+        }
+
+        if (filters.size() == 1)
+            return filters.get(0);
+
+        Collections.sort(filters, COST_COMPARATOR);
+        return new OrFilter(filters.toArray(new LogRecordFilter[filters.size()]));
+    }
+
+    /*Level of record, or 0 if record has no level, so it doesn't pass any level filter.*/
+    static int getLevel(LogModel record){
+        Character levelSymbol = record.getLevelSymbol();
+        if (levelSymbol == null || levelSymbol >= LEVEL_BY_SYMBOL.length)
+            return 0;
+        return LEVEL_BY_SYMBOL[levelSymbol];
+    }
+
+    private static void addOperands(List<LogRecordFilter> operands, LogRecordFilter filter,
+                                    Class<? extends CompositeFilter> compositionClass){
+        if (compositionClass.isInstance(filter)){
+            operands.addAll(Arrays.asList(((CompositeFilter) filter).mFilters));
+        } else {
+            operands.add(filter);
+        }
+    }
+
+    /*Tag passes alternatives, if it passes any of them, so the lowest level of tag is kept.*/
+    private static void mergeTagLevels(Map<String, Integer> tagLevels, Map<String, Integer> otherTagLevels){
+        for (Map.Entry<String, Integer> entry : otherTagLevels.entrySet()){
+            Integer level = tagLevels.get(entry.getKey());
+            if (level == null || level > entry.getValue()){
+                tagLevels.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static int[] toIntArray(List<Integer> values){
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++){
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static void checkNotNull(Object object){
+        if (object == null){
+            throw new NullPointerException();
+        }
+    }
+
+    private static void checkLevel(int level){
+        if (level < LogLevels.VERBOSE || level > LogLevels.ASSERT){
+            throw new IllegalArgumentException("Level filter out of bound");
+        }
+    }
+
+    private static final class PidFilter extends LogRecordFilter {
+
+        private final int[] mPids;
+
+        PidFilter(int[] pids){
+            mPids = pids.clone();
+            Arrays.sort(mPids);
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            return Arrays.binarySearch(mPids, record.getPid()) >= 0;
+        }
+
+        @Override
+        int getCost() {
+            return PRIMITIVE_COST;
+        }
+    }
+
+    private static final class LevelFilter extends LogRecordFilter {
+
+        private final int mMinLevel;
+
+        LevelFilter(int minLevel){
+            mMinLevel = minLevel;
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            return getLevel(record) >= mMinLevel;
+        }
+
+        @Override
+        int getCost() {
+            return PRIMITIVE_COST;
+        }
+    }
+
+    /*Open addressing hash table of tags, compared by hash code first, so tag is rarely compared char by char.*/
+    private static final class TagFilter extends LogRecordFilter {
+
+        private final Map<String, Integer> mTagLevels;
+        private final String[] mTags;
+        private final int[] mHashCodes;
+        private final int[] mMinLevels;
+        private final int mMask;
+
+        TagFilter(Map<String, Integer> tagLevels){
+            mTagLevels = new HashMap<String, Integer>(tagLevels);
+
+            int capacity = Integer.highestOneBit(Math.max(1, tagLevels.size()) * 2) * 2;
+            mTags = new String[capacity];
+            mHashCodes = new int[capacity];
+            mMinLevels = new int[capacity];
+            mMask = capacity - 1;
+
+            for (Map.Entry<String, Integer> entry : mTagLevels.entrySet()){
+                int hashCode = entry.getKey().hashCode();
+                int index = hashCode & mMask;
+                while (mTags[index] != null){
+                    index = (index + 1) & mMask;
+                }
+                mTags[index] = entry.getKey();
+                mHashCodes[index] = hashCode;
+                mMinLevels[index] = entry.getValue();
+            }
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            int hashCode = record.getTagHashCode();
+            int index = hashCode & mMask;
+            while (mTags[index] != null){
+                if (mHashCodes[index] == hashCode && record.isTagEqual(mTags[index]))
+                    return getLevel(record) >= mMinLevels[index];
+                index = (index + 1) & mMask;
+            }
+            return false;
+        }
+
+        @Override
+        int getCost() {
+            return TAG_COST;
+        }
+    }
+
+    private static final class MessageFilter extends LogRecordFilter {
+
+        private final String mString;
+
+        MessageFilter(String string){
+            mString = string;
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            return record.isMessageContains(mString);
+        }
+
+        @Override
+        int getCost() {
+            return MESSAGE_COST;
+        }
+    }
+
+    private static final class PatternFilter extends LogRecordFilter {
+
+        private final Pattern mPattern;
+
+        PatternFilter(Pattern pattern){
+            mPattern = pattern;
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            String message = record.getMessage();
+            return message != null && mPattern.matcher(message).find();
+        }
+
+        @Override
+        int getCost() {
+            return PATTERN_COST;
+        }
+    }
+
+    private static final class NotFilter extends LogRecordFilter {
+
+        private final LogRecordFilter mFilter;
+
+        NotFilter(LogRecordFilter filter){
+            mFilter = filter;
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            return !mFilter.accept(record);
+        }
+
+        @Override
+        int getCost() {
+            return mFilter.getCost();
+        }
+    }
+
+    private static abstract class CompositeFilter extends LogRecordFilter {
+
+        final LogRecordFilter[] mFilters;
+
+        CompositeFilter(LogRecordFilter[] filters){
+            mFilters = filters;
+        }
+
+        @Override
+        int getCost() {
+            return COMPOSITION_COST;
+        }
+    }
+
+    private static final class AndFilter extends CompositeFilter {
+
+        AndFilter(LogRecordFilter[] filters){
+            super(filters);
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            for (LogRecordFilter filter : mFilters){
+                if (!filter.accept(record))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class OrFilter extends CompositeFilter {
+
+        OrFilter(LogRecordFilter[] filters){
+            super(filters);
+        }
+
+        @Override
+        public boolean accept(LogModel record) {
+            for (LogRecordFilter filter : mFilters){
+                if (filter.accept(record))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.logtracking.lib.api.config;
+
+/**
+ * Class represents policy of keeping rotated log files.
+ * Rotated log file is compressed in background and kept as historical segment, which is included in issue report.
+ * The oldest segments are removed in background, when count of segments or their total compressed size exceeds limits
+ * of policy, or when segments get older than max age.
+ * Object of {@link LogRetentionPolicy} is immutable.
+ *
+ * @see LogConfiguration.LogConfigurationBuilder#setRetentionPolicy(LogRetentionPolicy)
+ */
+public final class LogRetentionPolicy {
+
+    private final int mMaxSegmentsCount;
+    private final long mMaxTotalSize;
+    private final long mMaxAge;
+
+    /**
+     * Create policy without limit of age of segments.
+     *
+     * @param maxSegmentsCount max count of kept rotated segments.
+     * @param maxTotalSize max total size of compressed segments in bytes.
+     * @throws IllegalArgumentException if maxSegmentsCount or maxTotalSize is less or equal 0.
+     */
+    public LogRetentionPolicy(int maxSegmentsCount, long maxTotalSize){
+        this(maxSegmentsCount, maxTotalSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSegmentsCount max count of kept rotated segments.
+     * @param maxTotalSize max total size of compressed segments in bytes.
+     * @param maxAge max time in milliseconds since rotation of segment, during which segment is kept.
+     * @throws IllegalArgumentException if maxSegmentsCount, maxTotalSize or maxAge is less or equal 0.
+     */
+    public LogRetentionPolicy(int maxSegmentsCount, long maxTotalSize, long maxAge){
+        if (maxSegmentsCount <= 0) {
+            throw new IllegalArgumentException("Max segments count should be more then 0");
+        }
+        if (maxTotalSize <= 0) {
+            throw new IllegalArgumentException("Max total size of segments should be more then 0");
+        }
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("Max age of segments should be more then 0");
+        }
+        mMaxSegmentsCount = maxSegmentsCount;
+        mMaxTotalSize = maxTotalSize;
+        mMaxAge = maxAge;
+    }
+
+    /**
+     * @return max count of kept rotated segments.
+     */
+    public int getMaxSegmentsCount(){
+        return mMaxSegmentsCount;
+    }
+
+    /**
+     * @return max total size of compressed segments in bytes.
+     */
+    public long getMaxTotalSize(){
+        return mMaxTotalSize;
+    }
+
+    /**
+     * @return max time in milliseconds since rotation of segment, during which segment is kept.
+     */
+    public long getMaxAge(){
+        return mMaxAge;
+    }
+}
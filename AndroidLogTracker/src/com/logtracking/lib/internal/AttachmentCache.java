@@ -0,0 +1,196 @@
+package com.logtracking.lib.internal;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.ZipEntry;
+
+/**
+ * Cache of compressed files, attached to reports. Attached file is compressed only once while it is not changed,
+ * and its raw deflate stream is copied into every next report as is.
+ * Entry of cache is addressed by hash of key : path, size and modification time of attached file and compression level.
+ * Entry file contains deflate stream, followed by trailer with key, checksum and size of attached file,
+ * so entry could be verified and checked for staleness without reading of its data.
+ * Entry is written in partial file and renamed only when it is complete.
+ * Thread safe.
+ */
+class AttachmentCache {
+
+    private static final String ENTRY_FILE_EXTENSION = ".deflate";
+    private static final String PARTIAL_FILE_EXTENSION = ".part";
+    private static final char KEY_SEPARATOR = ':';
+    private static final int TRAILER_LENGTH_SIZE = 4;
+
+    /*Partial file could be left only by killed process, if it is older than this time.*/
+    private static final long PARTIAL_FILE_MAX_AGE = 60 * 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+
+    AttachmentCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @return entry of current version of file, or null if file isn't in cache.
+     */
+    CompressedEntry get(File file, int compressionLevel) {
+        String key = getKey(file, compressionLevel);
+        File entryFile = getEntryFile(key);
+        if (!entryFile.exists())
+            return null;
+
+        try {
+            RandomAccessFile input = new RandomAccessFile(entryFile, "r");
+            try {
+                long dataLength = readTrailerStart(input);
+                if (dataLength < 0 || !key.equals(input.readUTF()))
+                    return null;
+                long crc = input.readLong();
+                long size = input.readLong();
+                return new CompressedEntry(file.getName(), ZipEntry.DEFLATED, crc, size, dataLength, file.lastModified(),
+                                           entryFile, false);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Compress file into cache.
+     *
+     * @return entry of compressed file.
+     */
+    CompressedEntry put(File file, int compressionLevel) throws IOException {
+        if (!mDirectory.exists()) {
+            mDirectory.mkdirs();
+        }
+
+        String key = getKey(file, compressionLevel);
+        File entryFile = getEntryFile(key);
+        File partialFile = File.createTempFile(entryFile.getName(), PARTIAL_FILE_EXTENSION, mDirectory);
+
+        CompressedEntry entry = CompressedEntry.deflate(file, partialFile, compressionLevel);
+        try {
+            writeTrailer(partialFile, key, entry);
+        } catch (IOException e) {
+            entry.release();
+            throw e;
+        }
+
+        /*Compressed data is still valid, even if it couldn't be cached.*/
+        if (!partialFile.renameTo(entryFile))
+            return entry;
+
+        return new CompressedEntry(entry.mName, entry.mMethod, entry.mCrc, entry.mSize, entry.mCompressedSize,
+                                   entry.mTime, entryFile, false);
+    }
+
+    /**
+     * Remove entries of files, which were changed or removed since they were cached, so cache keeps only
+     * current versions of attached files.
+     */
+    void removeStaleEntries() {
+        File[] files = mDirectory.listFiles();
+        if (files == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_FILE_EXTENSION)) {
+                if (now - file.lastModified() > PARTIAL_FILE_MAX_AGE) {
+                    file.delete();
+                }
+            } else if (!isCurrentEntry(file)) {
+                file.delete();
+            }
+        }
+    }
+
+    private boolean isCurrentEntry(File entryFile) {
+        try {
+            RandomAccessFile input = new RandomAccessFile(entryFile, "r");
+            try {
+                if (readTrailerStart(input) < 0)
+                    return false;
+                String key = input.readUTF();
+
+                int levelSeparator = key.lastIndexOf(KEY_SEPARATOR);
+                int timeSeparator = key.lastIndexOf(KEY_SEPARATOR, levelSeparator - 1);
+                int sizeSeparator = key.lastIndexOf(KEY_SEPARATOR, timeSeparator - 1);
+                if (sizeSeparator < 0)
+                    return false;
+
+                File file = new File(key.substring(0, sizeSeparator));
+                int compressionLevel = Integer.parseInt(key.substring(levelSeparator + 1));
+                return file.exists() && key.equals(getKey(file, compressionLevel)) &&
+                       entryFile.getName().equals(getEntryFile(key).getName());
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /*Move to the start of trailer and return its offset, which is length of compressed data, or -1 if there is no trailer.*/
+    private static long readTrailerStart(RandomAccessFile input) throws IOException {
+        long length = input.length();
+        if (length < TRAILER_LENGTH_SIZE)
+            return -1;
+
+        input.seek(length - TRAILER_LENGTH_SIZE);
+        long trailerStart = length - TRAILER_LENGTH_SIZE - input.readInt();
+        if (trailerStart < 0)
+            return -1;
+
+        input.seek(trailerStart);
+        return trailerStart;
+    }
+
+    private static void writeTrailer(File entryFile, String key, CompressedEntry entry) throws IOException {
+        ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+        DataOutputStream trailerOutput = new DataOutputStream(trailer);
+        trailerOutput.writeUTF(key);
+        trailerOutput.writeLong(entry.mCrc);
+        trailerOutput.writeLong(entry.mSize);
+        trailerOutput.writeInt(trailer.size());
+
+        OutputStream output = new FileOutputStream(entryFile, true);
+        try {
+            trailer.writeTo(output);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String getKey(File file, int compressionLevel) {
+        return file.getAbsolutePath() + KEY_SEPARATOR + file.length() + KEY_SEPARATOR + file.lastModified() +
+               KEY_SEPARATOR + compressionLevel;
+    }
+
+    private File getEntryFile(String key) {
+        return new File(mDirectory, hash(key) + ENTRY_FILE_EXTENSION);
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte digestByte : digest) {
+                builder.append(Character.forDigit((digestByte >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(digestByte & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -1,15 +1,12 @@
 package com.logtracking.lib.internal;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -25,16 +22,17 @@ import com.logtracking.lib.internal.format.LogFileFormatterFactory;
 public abstract class BaseLogTask extends AsyncTask <Void,Void,File> {
 	
 	protected final static String LINE_SEPARATOR = System.getProperty("line.separator");
+	protected final static Charset UTF_8 = Charset.forName("UTF-8");
 	
-	protected static final String TEMP_FILE_PREFIX = "_temp_";
-	protected static final String FILE_CREATION_TIME = "log_file_creation_time";
-	protected static final String TEMP_FILE_NAME = "log_temp_file_name";
+	protected static final String RECORDS_FILE_EXTENSION = ".records";
+	protected static final String RING_BUFFER_FILE_EXTENSION = ".ring";
+	protected static final String BINARY_FILE_EXTENSION = ".bin";
+	protected static final String ATTACHMENT_CACHE_DIRECTORY_NAME = "attachments_cache";
 	protected static final String CRASH_REPORT_MESSAGE = "Crash report";
 
 	protected LogConfiguration mLogConfiguration;
     protected Context mApplicationContext;
 
-	protected RandomAccessFile mRandomAccessFile;
 	protected LogFileFormatter mFileFormatter;
 	
 	protected File mLogFile;
@@ -43,8 +41,6 @@ public abstract class BaseLogTask extends AsyncTask <Void,Void,File> {
 	protected LogFileManager.ReportPrepareListener onReportPrepareListener;
 
     protected LogPreferences mPreferences;
-
-	protected long mFileCreationTime;
 	
 	protected BaseLogTask(LogContext logContext) {
 		super();
@@ -79,18 +75,28 @@ public abstract class BaseLogTask extends AsyncTask <Void,Void,File> {
 		}
 	}
 	
-	/*Method provide possibility to work two or more AsyncTask's in parallel on Android v3.0 and higher.*/
-	protected void startProcess(){
+	/*
+	 * Method provide possibility to work two or more AsyncTask's in parallel on Android v3.0 and higher.
+	 * Task, rejected by full lane, is failed, as if it prepared no file, so report listener is notified.
+	 * Return false if task was not started.
+	 */
+	protected boolean startProcess(){
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB){
-			BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(10);
-			executeOnExecutor(new ThreadPoolExecutor(5, 128, 1, TimeUnit.SECONDS, workQueue));
+			try {
+				executeOnExecutor(LogScheduler.getExecutor(getLane()));
+			} catch (RejectedExecutionException e) {
+				onPostExecute(null);
+				return false;
+			}
 		} else {
 			execute();
 		}
+		return true;
 	}
-	
-	protected int getWriteLineLength(String line){
-		return TextUtils.isEmpty(line) ? 0 :line.length() + 1; 
+
+	/*Lane of scheduler, where task is executed.*/
+	LogScheduler.Lane getLane(){
+		return LogScheduler.Lane.CAPTURE;
 	}
 	
 	protected boolean isLogFileExist(String logFile){
@@ -100,93 +106,62 @@ public abstract class BaseLogTask extends AsyncTask <Void,Void,File> {
 		return file.exists();
 	}
 	
-	protected void createNewLogFile() throws IOException{
-		
-		File parentDirectory = new File(mLogFile.getParent());
-		if(!parentDirectory.exists()){
-			parentDirectory.mkdirs();
-		}
-		
-		if(!mLogFile.exists()){
-			mLogFile.createNewFile();
-			mPreferences.saveLong(FILE_CREATION_TIME, System.currentTimeMillis());
-			mFileCreationTime = mPreferences.getLong(FILE_CREATION_TIME, 0);
-		}
-		
-		mRandomAccessFile = new RandomAccessFile(mLogFile,"rw");
-		
-		if (isLogFileEmpty()){
-			writeLineToFile(mFileFormatter.getDocumentOpenTag());
-			writeReportMessage();
-			writeMetaData();
-			writeLineToFile(mFileFormatter.getLoggingOpenTag());
-			writeLineToFile(mFileFormatter.getLoggingCloseTag());
-			writeLineToFile(mFileFormatter.getDocumentCloseTag());
-		}
-	}
-	
-	private boolean isLogFileEmpty() throws IOException{
-		FileReader reader = new FileReader(mLogFile);
-		boolean logFileIsEmpty = reader.read() == -1;
-		reader.close();
-		return logFileIsEmpty;
+	/*Name of file, in which log saving task writes log messages in configured mode.*/
+	protected String getCurrentLogFileName(){
+		return mLogConfiguration.getLogFileName() + getCurrentLogFileExtension();
 	}
 
-	private void writeReportMessage() throws IOException{
-		if (!TextUtils.isEmpty(mReportMessage)){
-			writeLineToFile(mFileFormatter.formatMessage(mReportMessage));
+	/*
+	 * Active log file in append-only mode contains only formatted records, one per line, without document envelope.
+	 * Ring buffer file also contains formatted records, one per line. Extension of such files is extension of formatted
+	 * log file with additional extension. Binary log file also has no envelope, it is never kept in ring buffer,
+	 * because records in ring are separated by lines.
+	 */
+	protected String getCurrentLogFileExtension(){
+		if (mLogConfiguration.getLogSavingMode() == LogConfiguration.LogSavingMode.SAVE_IN_RING_BUFFER){
+			return mFileFormatter.getFileExtension() + RING_BUFFER_FILE_EXTENSION;
 		}
-	}
-
-    private void writeMetaData() throws IOException {
-        writeLineToFile(mFileFormatter.getMetaDataOpenTag());
-        writeLineToFile(mFileFormatter.formatMetaData(mLogConfiguration.getMetaData()));
-        writeLineToFile(mFileFormatter.getMetaDataCloseTag());
-    }
-
-    protected void seekFilePointerBeforeCloseTags() throws IOException{
-		long closeTagsLength = getWriteLineLength(mFileFormatter.getLoggingCloseTag()) +
-				   getWriteLineLength(mFileFormatter.getDocumentCloseTag());
-
-		long posBeforeCloseTag = mRandomAccessFile.length() - closeTagsLength;
-		mRandomAccessFile.seek(posBeforeCloseTag);	
-	}
-	
-	protected void writeClosingTags() throws IOException{
-		writeLineToFile(mFileFormatter.getLoggingCloseTag());
-		writeLineToFile(mFileFormatter.getDocumentCloseTag());
-	}
-	
-	protected void writeLineToFile(String str) throws IOException{
-		if (!TextUtils.isEmpty(str)){
-			mRandomAccessFile.writeBytes(str);
-			mRandomAccessFile.writeBytes(LINE_SEPARATOR);
+		if (mLogConfiguration.getLogFileFormat() == LogConfiguration.LogFileFormat.BINARY){
+			return BINARY_FILE_EXTENSION;
 		}
-	}
-	
-	protected void closeAccessToFile(){
-		if (mRandomAccessFile != null){
-			try {
-				mRandomAccessFile.close();
-			} catch (IOException closeExc) {
-				closeExc.printStackTrace();
-			}
+		if (mLogConfiguration.isAppendOnlyLogFile()){
+			return mFileFormatter.getFileExtension() + RECORDS_FILE_EXTENSION;
 		}
+		return mFileFormatter.getFileExtension();
 	}
 	
-	protected File prepareReportArchive() throws IOException{
+	/*Create archive of report, named as log file, in which report is prepared.*/
+	protected ZipArchiveHelper createReportArchive() throws IOException{
 		String logFileName = mLogFile.getAbsolutePath();
 		String archiveName = logFileName.substring(0,logFileName.length()-5);
+		return new ZipArchiveHelper(archiveName, mLogConfiguration.getReportCompressionLevel());
+	}
 
-        List<File> reportFiles = new ArrayList<File>();
-        reportFiles.add(mLogFile);
+	/*
+	 * Attached files are compressed in background and added to archive after report, when archive is closed.
+	 * Files, which weren't changed since previous report, aren't compressed again, but taken from cache.
+	 */
+	protected void packAttachedFiles(ZipArchiveHelper archive){
+        List<File> attachedFiles = new ArrayList<File>();
 		for(String attachFile : mLogConfiguration.getAttachedFilesToReport()){
-            reportFiles.add(new File(attachFile));
+            attachedFiles.add(new File(attachFile));
 		}
 
-        ZipArchiveHelper archive = new ZipArchiveHelper(archiveName);
-        archive.packFiles(reportFiles);
-
+        AttachmentCache cache = new AttachmentCache(new File(mLogConfiguration.getLogDirectoryName(), ATTACHMENT_CACHE_DIRECTORY_NAME));
+        cache.removeStaleEntries();
+        archive.packFiles(attachedFiles, cache);
+	}
+	
+	protected File prepareReportArchive() throws IOException{
+        ZipArchiveHelper archive = createReportArchive();
+        try {
+            archive.packFiles(Collections.singletonList(mLogFile));
+            packAttachedFiles(archive);
+            archive.close();
+        } catch (IOException e) {
+            archive.discard();
+            throw e;
+        }
 		return archive.getArchiveFile();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.logtracking.lib.internal;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.logtracking.lib.internal.BinaryLogEncoder.*;
+
+/**
+ * Decodes records of binary log file, written by {@link BinaryLogEncoder}, so they could be formatted by any text formatter.
+ * Last entry of file could be written only partially, if application was killed during writing, so it is skipped.
+ * Corrupt block, e.g. torn block, after which records were appended, is skipped up to the next block start,
+ * because blocks never reference each other.
+ * Not thread safe.
+ */
+class BinaryLogDecoder {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/*Longer string could be only a length read from corrupt block, so it is never allocated.*/
+	private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+	private static final int HEADER_LENGTH = MAGIC.length + 1;
+
+	/**
+	 * Entry, which couldn't be written by encoder, so the rest of its block is skipped.
+	 */
+	private static class CorruptEntryException extends IOException {
+
+		CorruptEntryException(String message){
+			super(message);
+		}
+	}
+
+	private final InputStream mInput;
+	private final List<String> mStrings = new ArrayList<String>();
+	private long mPreviousTimeMillis;
+	private byte[] mStringBytes = new byte[256];
+	/*Count of bytes read from input, so end of decoded record is known.*/
+	private long mPosition;
+	private int mSkippedBlocksCount;
+
+	/**
+	 * @param input buffered stream of binary log file.
+	 * @throws IOException if stream doesn't start with header of binary log file.
+	 */
+	BinaryLogDecoder(InputStream input) throws IOException {
+		this(input, true);
+	}
+
+	/**
+	 * @param input buffered stream of binary log file.
+	 * @param readHeader false if stream is positioned at the start of block of records, not at the start of file.
+	 * @throws IOException if header should be read, but stream doesn't start with header of binary log file.
+	 */
+	BinaryLogDecoder(InputStream input, boolean readHeader) throws IOException {
+		mInput = input;
+		if (!readHeader)
+			return;
+
+		byte[] header = new byte[HEADER_LENGTH];
+		try {
+			readFully(header, header.length);
+		} catch (EOFException e) {
+			throw new IOException("File is not a binary log file");
+		}
+		if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC) || header[MAGIC.length] != VERSION)
+			throw new IOException("File is not a binary log file of version " + VERSION);
+	}
+
+	/**
+	 * Find end of the last complete record of binary log file, so torn tail, which is left if application was killed
+	 * during writing, could be cut off before new records are appended.
+	 *
+	 * @param blockOffset offset of block, from which file is decoded, e.g. the last indexed one,
+	 * or {@link LogTimeIndex#UNKNOWN_OFFSET} to decode whole file.
+	 * @return offset after the last complete record, or length of file if it isn't a binary log file.
+	 */
+	static long findCompleteRecordsEnd(File file, long blockOffset) throws IOException {
+		FileInputStream fileInput = new FileInputStream(file);
+		try {
+			long length = fileInput.getChannel().size();
+			boolean fromBlock = blockOffset != LogTimeIndex.UNKNOWN_OFFSET && blockOffset <= length;
+			if (!fromBlock && length < HEADER_LENGTH)
+				return 0;
+
+			long start = 0;
+			if (fromBlock){
+				fileInput.getChannel().position(blockOffset);
+				start = blockOffset;
+			}
+			BinaryLogDecoder decoder;
+			try {
+				decoder = new BinaryLogDecoder(new BufferedInputStream(fileInput), !fromBlock);
+			} catch (IOException e) {
+				return length;
+			}
+
+			long end = start + decoder.mPosition;
+			while (decoder.readRecord() != null){
+				end = start + decoder.mPosition;
+			}
+			return end;
+		} finally {
+			fileInput.close();
+		}
+	}
+
+	/**
+	 * @return next record of file, or null if there are no complete records anymore.
+	 */
+	LogModel readRecord() throws IOException {
+		while (true){
+			try {
+				return readNextRecord();
+			} catch (EOFException e) {
+				return null;
+			} catch (CorruptEntryException e) {
+				mSkippedBlocksCount++;
+				if (!skipToBlockStart())
+					return null;
+			}
+		}
+	}
+
+	/**
+	 * @return count of corrupt blocks, which were skipped.
+	 */
+	int getSkippedBlocksCount(){
+		return mSkippedBlocksCount;
+	}
+
+	private LogModel readNextRecord() throws IOException {
+		int entryType;
+		while ((entryType = read()) >= 0){
+			switch (entryType){
+				case BLOCK_START:
+					startBlock();
+					break;
+
+				case STRING_DEFINITION:
+					readStringDefinition();
+					break;
+
+				case RECORD:
+					return readRecordEntry();
+
+				default:
+					throw new CorruptEntryException("Unknown entry type " + entryType);
+			}
+		}
+		return null;
+	}
+
+	private void startBlock(){
+		mStrings.clear();
+		mPreviousTimeMillis = 0;
+	}
+
+	/*
+	 * Block start is a zero byte, which could be also a part of corrupt entry, so block, found by it, could be corrupt too
+	 * and then it is skipped as well. Return false if input ended before block start.
+	 */
+	private boolean skipToBlockStart() throws IOException {
+		int nextByte;
+		while ((nextByte = read()) >= 0){
+			if (nextByte == BLOCK_START){
+				startBlock();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void readStringDefinition() throws IOException {
+		int id = (int) readVarLong();
+		String string = readString();
+		if (id != mStrings.size() + 1)
+			throw new CorruptEntryException("Unexpected string id " + id);
+		mStrings.add(string);
+	}
+
+	private LogModel readRecordEntry() throws IOException {
+		long timeMillis = mPreviousTimeMillis + unZigZag(readVarLong());
+		char levelSymbol = (char) readByte();
+		if (levelSymbol != '?' && LogLevels.getLevel(levelSymbol) == 0)
+			throw new CorruptEntryException("Unknown level symbol " + levelSymbol);
+		int pid = (int) readVarLong();
+		long tid = readVarLong();
+		String tag = getString(readVarLong());
+		String packageName = getString(readVarLong());
+		String message = readString();
+		mPreviousTimeMillis = timeMillis;
+
+		LogModel record = new LogModel();
+		record.setTimeMillis(timeMillis);
+		record.setLevelSymbol(levelSymbol);
+		record.setPid(pid);
+		record.setTid(tid);
+		record.setTag(tag);
+		record.setPackageName(packageName);
+		record.setMessage(message);
+		record.setFullLogRecord(buildThreadTimeLine(record));
+		return record;
+	}
+
+	/*Decoded record has no source line, so line in logcat threadtime format is built for formatters of full record.*/
+	private static String buildThreadTimeLine(LogModel record){
+		StringBuilder builder = new StringBuilder();
+		builder.append(record.getFormattedDate());
+		builder.append(' ');
+		appendPadded(builder, record.getPid());
+		builder.append(' ');
+		appendPadded(builder, record.getTid());
+		builder.append(' ');
+		builder.append(record.getLevelSymbol());
+		builder.append(' ');
+		builder.append(record.getTag());
+		builder.append(": ");
+		builder.append(record.getMessage());
+		return builder.toString();
+	}
+
+	private static void appendPadded(StringBuilder builder, long number){
+		String digits = String.valueOf(number);
+		for (int i = digits.length(); i < 5; i++){
+			builder.append(' ');
+		}
+		builder.append(digits);
+	}
+
+	private String getString(long id) throws IOException {
+		if (id == NULL_STRING_ID)
+			return null;
+		if (id < 0 || id > mStrings.size())
+			throw new CorruptEntryException("Undefined string id " + id);
+		return mStrings.get((int) id - 1);
+	}
+
+	private String readString() throws IOException {
+		long lengthPlusOne = readVarLong();
+		if (lengthPlusOne == 0)
+			return null;
+
+		if (lengthPlusOne < 0 || lengthPlusOne - 1 > MAX_STRING_LENGTH)
+			throw new CorruptEntryException("Unexpected string length " + (lengthPlusOne - 1));
+
+		int length = (int) (lengthPlusOne - 1);
+		if (length > mStringBytes.length){
+			mStringBytes = new byte[Math.max(length, mStringBytes.length * 2)];
+		}
+		readFully(mStringBytes, length);
+		return new String(mStringBytes, 0, length, UTF_8);
+	}
+
+	private static long unZigZag(long value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7){
+			int nextByte = readByte();
+			value |= (long) (nextByte & 0x7F) << shift;
+			if ((nextByte & 0x80) == 0)
+				return value;
+		}
+		throw new CorruptEntryException("Malformed varint");
+	}
+
+	private int readByte() throws IOException {
+		int nextByte = read();
+		if (nextByte < 0)
+			throw new EOFException();
+		return nextByte;
+	}
+
+	private int read() throws IOException {
+		int nextByte = mInput.read();
+		if (nextByte >= 0){
+			mPosition++;
+		}
+		return nextByte;
+	}
+
+	private void readFully(byte[] bytes, int length) throws IOException {
+		int offset = 0;
+		while (offset < length){
+			int count = mInput.read(bytes, offset, length - offset);
+			if (count < 0)
+				throw new EOFException();
+			offset += count;
+			mPosition += count;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.logtracking.lib.internal;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes records in compact binary format of log file.
+ * File starts with magic and version, followed by blocks. Every buffer of records is written as separate block,
+ * which starts with {@link #BLOCK_START}, so block never references strings or time of other blocks and
+ * buffers could be written, spilled or dropped independently.
+ * Inside block tags and package names are defined once by {@link #STRING_DEFINITION} entry and then referenced by id,
+ * time of record is stored as delta from time of previous record, all integers are varint-encoded.
+ * Not thread safe.
+ *
+ * @see BinaryLogDecoder
+ */
+class BinaryLogEncoder {
+
+	/*"ALTB" in ASCII.*/
+	static final byte[] MAGIC = {'A', 'L', 'T', 'B'};
+	static final int VERSION = 1;
+
+	static final int BLOCK_START = 0;
+	static final int STRING_DEFINITION = 1;
+	static final int RECORD = 2;
+
+	/*Id of absent string, ids of defined strings start from 1.*/
+	static final int NULL_STRING_ID = 0;
+
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private final Map<String, Integer> mStringIds = new HashMap<String, Integer>();
+	private long mPreviousTimeMillis;
+
+	/*Start of the day of last parsed date, so calendar is used only once a day.*/
+	private final Calendar mCalendar = Calendar.getInstance();
+	private int mParsedMonthDay = -1;
+	private long mParsedDayStart;
+
+	/**
+	 * @return header, which should be written at the beginning of empty log file.
+	 */
+	static byte[] getFileHeader(){
+		byte[] header = new byte[MAGIC.length + 1];
+		System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+		header[MAGIC.length] = VERSION;
+		return header;
+	}
+
+	/**
+	 * Encode record to buffer. New block is started, if buffer contains no records yet.
+	 */
+	void encode(LogModel record, Utf8RecordBuffer buffer){
+		if (buffer.getRecordsCount() == 0){
+			startBlock(buffer);
+		}
+
+		int tagId = getStringId(record.getTag(), buffer);
+		int packageNameId = getStringId(record.getPackageName(), buffer);
+		long timeMillis = getTimeMillis(record);
+		Character levelSymbol = record.getLevelSymbol();
+
+		buffer.putByte(RECORD);
+		putVarLong(buffer, zigZag(timeMillis - mPreviousTimeMillis));
+		buffer.putByte(levelSymbol != null ? levelSymbol : '?');
+		putVarLong(buffer, record.getPid());
+		putVarLong(buffer, record.getTid());
+		putVarLong(buffer, tagId);
+		putVarLong(buffer, packageNameId);
+		putString(buffer, record.getMessage());
+
+		mPreviousTimeMillis = timeMillis;
+	}
+
+	private void startBlock(Utf8RecordBuffer buffer){
+		mStringIds.clear();
+		mPreviousTimeMillis = 0;
+		buffer.putByte(BLOCK_START);
+	}
+
+	private int getStringId(String string, Utf8RecordBuffer buffer){
+		if (string == null)
+			return NULL_STRING_ID;
+
+		Integer id = mStringIds.get(string);
+		if (id == null){
+			id = mStringIds.size() + 1;
+			mStringIds.put(string, id);
+
+			buffer.putByte(STRING_DEFINITION);
+			putVarLong(buffer, id);
+			putString(buffer, string);
+		}
+		return id;
+	}
+
+	private long getTimeMillis(LogModel record){
+		if (!record.hasOnlyFormattedDate())
+			return record.getTimeMillis();
+
+		long timeMillis = parseDate(record.getFormattedDate());
+		return timeMillis >= 0 ? timeMillis : record.getTimeMillis();
+	}
+
+	/*Parse date in logcat format "MM-dd HH:mm:ss.SSS" of current year, return -1 if date is malformed.*/
+	private long parseDate(String date){
+		if (date == null || date.length() < 18)
+			return -1;
+
+		int month = parseNumber(date, 0, 2);
+		int day = parseNumber(date, 3, 5);
+		int hours = parseNumber(date, 6, 8);
+		int minutes = parseNumber(date, 9, 11);
+		int seconds = parseNumber(date, 12, 14);
+		int millis = parseNumber(date, 15, 18);
+		if (month < 1 || day < 1 || hours < 0 || minutes < 0 || seconds < 0 || millis < 0)
+			return -1;
+
+		return getDayStart(month, day) + ((hours * 60L + minutes) * 60L + seconds) * 1000L + millis;
+	}
+
+	/*Records of the end of December, read in January, belong to previous year.*/
+	private long getDayStart(int month, int day){
+		int monthDay = month * 100 + day;
+		if (monthDay != mParsedMonthDay){
+			long now = System.currentTimeMillis();
+			mCalendar.setTimeInMillis(now);
+			int year = mCalendar.get(Calendar.YEAR);
+			mCalendar.clear();
+			mCalendar.set(year, month - 1, day);
+			if (mCalendar.getTimeInMillis() > now + DAY_MILLIS){
+				mCalendar.set(Calendar.YEAR, year - 1);
+			}
+			mParsedDayStart = mCalendar.getTimeInMillis();
+			mParsedMonthDay = monthDay;
+		}
+		return mParsedDayStart;
+	}
+
+	private static int parseNumber(String string, int start, int end){
+		int number = 0;
+		for (int i = start; i < end; i++){
+			char digit = string.charAt(i);
+			if (digit < '0' || digit > '9')
+				return -1;
+			number = number * 10 + digit - '0';
+		}
+		return number;
+	}
+
+	/*String is stored as varint length of UTF-8 bytes plus one, so 0 means null.*/
+	private static void putString(Utf8RecordBuffer buffer, String string){
+		if (string == null){
+			putVarLong(buffer, 0);
+			return;
+		}
+		putVarLong(buffer, getUtf8Length(string) + 1);
+		buffer.append(string);
+	}
+
+	/*Length of string, encoded by Utf8RecordBuffer. Unpaired surrogate is replaced by one byte.*/
+	private static int getUtf8Length(String string){
+		int length = 0;
+		int count = string.length();
+		for (int i = 0; i < count; i++){
+			char character = string.charAt(i);
+			if (character < 0x80){
+				length += 1;
+			} else if (character < 0x800){
+				length += 2;
+			} else if (Character.isHighSurrogate(character) && i + 1 < count && Character.isLowSurrogate(string.charAt(i + 1))){
+				length += 4;
+				i++;
+			} else if (character >= Character.MIN_SURROGATE && character <= Character.MAX_SURROGATE){
+				length += 1;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/*Signed delta is mapped to unsigned number, so small negative deltas are also encoded in few bytes.*/
+	private static long zigZag(long value){
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static void putVarLong(Utf8RecordBuffer buffer, long value){
+		while ((value & ~0x7FL) != 0){
+			buffer.putByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.putByte((int) value);
+	}
+}
@@ -0,0 +1,113 @@
+package com.logtracking.lib.internal;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Content of file entry of zip archive, prepared before it is written into archive. Data of deflated entry is raw deflate
+ * stream, kept in data file, data of stored entry is content of source file itself.
+ * Object of {@link CompressedEntry} is immutable.
+ */
+class CompressedEntry {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /*Entries are prepared on pool of threads, so every thread has its own buffer.*/
+    private static final ThreadLocal<byte[]> sBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    final String mName;
+    final int mMethod;
+    final long mCrc;
+    final long mSize;
+    final long mCompressedSize;
+    final long mTime;
+    final File mDataFile;
+    final boolean mTemporaryDataFile;
+
+    CompressedEntry(String name, int method, long crc, long size, long compressedSize, long time,
+                    File dataFile, boolean temporaryDataFile) {
+        mName = name;
+        mMethod = method;
+        mCrc = crc;
+        mSize = size;
+        mCompressedSize = compressedSize;
+        mTime = time;
+        mDataFile = dataFile;
+        mTemporaryDataFile = temporaryDataFile;
+    }
+
+    /**
+     * Prepare entry, which keeps content of file without compression.
+     */
+    static CompressedEntry store(File file) throws IOException {
+        byte[] buffer = sBuffer.get();
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                crc.update(buffer, 0, count);
+                size += count;
+            }
+        } finally {
+            input.close();
+        }
+        return new CompressedEntry(file.getName(), ZipEntry.STORED, crc.getValue(), size, size, file.lastModified(),
+                                   file, false);
+    }
+
+    /**
+     * Prepare entry, which keeps content of file compressed into given data file.
+     */
+    static CompressedEntry deflate(File file, File dataFile, int compressionLevel) throws IOException {
+        byte[] buffer = sBuffer.get();
+        CRC32 crc = new CRC32();
+        long size = 0;
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                OutputStream output = new DeflaterOutputStream(new FileOutputStream(dataFile), deflater, BUFFER_SIZE);
+                try {
+                    int count;
+                    while ((count = input.read(buffer)) > 0) {
+                        crc.update(buffer, 0, count);
+                        size += count;
+                        output.write(buffer, 0, count);
+                    }
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            dataFile.delete();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        return new CompressedEntry(file.getName(), ZipEntry.DEFLATED, crc.getValue(), size, dataFile.length(),
+                                   file.lastModified(), dataFile, true);
+    }
+
+    /**
+     * Remove data file, if it was created only for this entry.
+     */
+    void release() {
+        if (mTemporaryDataFile) {
+            mDataFile.delete();
+        }
+    }
+}
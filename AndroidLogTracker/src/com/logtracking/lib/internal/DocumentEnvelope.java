@@ -0,0 +1,67 @@
+package com.logtracking.lib.internal;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.logtracking.lib.internal.format.LogFileFormatter;
+
+/**
+ * Lines of document, which enclose log records : document tag, report message and meta-data before records
+ * and closing tags after them. Empty lines are never written, so formats without some tags have no blank lines.
+ * Shared by log file, which is written with envelope, and report, so both have the same layout.
+ */
+final class DocumentEnvelope {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Cannot be instantiated
+	 */
+	private DocumentEnvelope(){
+	}
+
+	static List<String> getOpeningLines(LogFileFormatter formatter, String reportMessage, Map<String,String> metaData){
+		List<String> lines = new ArrayList<String>();
+		addLine(lines, formatter.getDocumentOpenTag());
+		if (!isEmpty(reportMessage)){
+			addLine(lines, formatter.formatMessage(reportMessage));
+		}
+		addLine(lines, formatter.getMetaDataOpenTag());
+		if (metaData != null && !metaData.isEmpty()){
+			addLine(lines, formatter.formatMetaData(metaData));
+		}
+		addLine(lines, formatter.getMetaDataCloseTag());
+		addLine(lines, formatter.getLoggingOpenTag());
+		return lines;
+	}
+
+	static List<String> getClosingLines(LogFileFormatter formatter){
+		List<String> lines = new ArrayList<String>();
+		addLine(lines, formatter.getLoggingCloseTag());
+		addLine(lines, formatter.getDocumentCloseTag());
+		return lines;
+	}
+
+	/**
+	 * @return lines encoded in UTF-8, each one followed by line separator.
+	 */
+	static byte[] getBytes(List<String> lines){
+		StringBuilder builder = new StringBuilder();
+		for (String line : lines){
+			builder.append(line).append(LogFileFormatter.LINE_SEPARATOR);
+		}
+		return builder.toString().getBytes(UTF_8);
+	}
+
+	private static void addLine(List<String> lines, String line){
+		if (!isEmpty(line)){
+			lines.add(line);
+		}
+	}
+
+	private static boolean isEmpty(String line){
+		return line == null || line.length() == 0;
+	}
+}
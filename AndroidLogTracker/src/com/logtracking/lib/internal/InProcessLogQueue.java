@@ -0,0 +1,142 @@
+package com.logtracking.lib.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import android.os.Process;
+import android.text.TextUtils;
+
+/**
+ * Internal class, do not use directly.
+ * Lock-free queue of records, which are published by {@link com.logtracking.lib.api.Log} of current process.
+ * Log saving task takes records straight from queue, so there is no need to read and parse them from logcat.
+ * Records are queued also while there is no consumer, e.g. before log saving is started or between its runs,
+ * so next consumer takes them. Queue is bounded, records, which don't fit in it, are dropped and counted.
+ */
+public final class InProcessLogQueue {
+
+	private static final int MAX_QUEUED_RECORDS = 10 * 1000;
+
+	private static final InProcessLogQueue instance = new InProcessLogQueue();
+
+	public static InProcessLogQueue getInstance(){
+		return instance;
+	}
+
+	private final ConcurrentLinkedQueue<LogModel> mRecords = new ConcurrentLinkedQueue<LogModel>();
+	private final AtomicInteger mRecordsCount = new AtomicInteger();
+	private final AtomicLong mDroppedRecordsCount = new AtomicLong();
+
+	private String mPackageName;
+	private int mLevelFilter;
+	private List<String> mTagFilter;
+	private volatile Thread mConsumerThread;
+	private volatile boolean mConsumerWaiting;
+
+	private InProcessLogQueue(){
+	}
+
+	public void initQueue(LogContext logContext){
+		mPackageName = logContext.getApplicationContext().getPackageName();
+		mLevelFilter = logContext.getLogConfiguration().getLevelFilter();
+		mTagFilter = logContext.getLogConfiguration().getTagFilter();
+	}
+
+	/**
+	 * Publish message of current thread. Message with several lines is published as several records,
+	 * same as it would be read from logcat. Level and tag filters are applied here, as logcat would apply them.
+	 */
+	public void publish(int level, String tag, String message, Throwable throwable){
+		if (level < mLevelFilter)
+			return;
+
+		if (!mTagFilter.isEmpty() && !mTagFilter.contains(tag))
+			return;
+
+		if (throwable != null){
+			String stackTrace = android.util.Log.getStackTraceString(throwable);
+			message = TextUtils.isEmpty(message) ? stackTrace : message + '\n' + stackTrace;
+		}
+
+		int pid = Process.myPid();
+		int tid = Process.myTid();
+		int lineStart = 0;
+		int lineEnd;
+		while ((lineEnd = message.indexOf('\n', lineStart)) >= 0){
+			offer(new LogModel(pid, tid, level, mPackageName, tag, message.substring(lineStart, lineEnd)));
+			lineStart = lineEnd + 1;
+		}
+		if (lineStart < message.length()){
+			offer(new LogModel(pid, tid, level, mPackageName, tag, message.substring(lineStart)));
+		}
+
+		Thread consumerThread = mConsumerThread;
+		if (mConsumerWaiting && consumerThread != null){
+			LockSupport.unpark(consumerThread);
+		}
+	}
+
+	/**
+	 * @return count of records, that were not published because queue was full.
+	 */
+	public long getDroppedRecordsCount(){
+		return mDroppedRecordsCount.get();
+	}
+
+	/*Only one consumer could take records from queue.*/
+	void attachConsumer(){
+		mConsumerThread = Thread.currentThread();
+	}
+
+	/*
+	 * Queued records are kept for next consumer. Count of records is changed only together with queue itself,
+	 * so publisher, which adds record while consumer is detached, never makes count differ from size of queue.
+	 */
+	void detachConsumer(){
+		mConsumerThread = null;
+	}
+
+	/*
+	 * Return next record, or null if there were no records during timeout or thread was interrupted.
+	 * Consumer marks itself as waiting before the last check of queue, so publisher,
+	 * which adds record after this check, always wakes it up.
+	 */
+	LogModel take(long timeoutNanos){
+		LogModel record = poll();
+		if (record != null)
+			return record;
+
+		mConsumerWaiting = true;
+		try {
+			record = poll();
+			if (record == null){
+				LockSupport.parkNanos(this, timeoutNanos);
+				record = poll();
+			}
+		} finally {
+			mConsumerWaiting = false;
+		}
+		return record;
+	}
+
+	private void offer(LogModel record){
+		if (mRecordsCount.incrementAndGet() > MAX_QUEUED_RECORDS){
+			mRecordsCount.decrementAndGet();
+			mDroppedRecordsCount.incrementAndGet();
+			LogMetrics.LINES_DROPPED.increment();
+			return;
+		}
+		mRecords.offer(record);
+	}
+
+	private LogModel poll(){
+		LogModel record = mRecords.poll();
+		if (record != null){
+			mRecordsCount.decrementAndGet();
+		}
+		return record;
+	}
+}
@@ -0,0 +1,41 @@
+package com.logtracking.lib.internal;
+
+/**
+ * Source of records, published by {@link com.logtracking.lib.api.Log} of current process into {@link InProcessLogQueue}.
+ * Records are taken until reading thread is interrupted. Source should be opened and read by the same thread,
+ * which becomes consumer of queue.
+ */
+class InProcessLogSource implements LogSource {
+
+	private final InProcessLogQueue mQueue;
+	private final long mTimeoutNanos;
+
+	/**
+	 * @param timeoutNanos time of waiting for record, after which interruption of reading thread is checked.
+	 */
+	InProcessLogSource(InProcessLogQueue queue, long timeoutNanos){
+		mQueue = queue;
+		mTimeoutNanos = timeoutNanos;
+		mQueue.attachConsumer();
+	}
+
+	@Override
+	public LogModel read(LogModel recycledRecord, HeaderFilter headerFilter){
+		while (!Thread.currentThread().isInterrupted()){
+			LogModel record = mQueue.take(mTimeoutNanos);
+			if (record == null)
+				continue;
+
+			LogMetrics.LINES_READ.increment();
+			if (headerFilter.passHeader(record.getPid(), record.getLevelSymbol())){
+				return record;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close(){
+		mQueue.detachConsumer();
+	}
+}
@@ -7,8 +7,7 @@ import com.logtracking.lib.internal.upload.LogReportSender;
 import android.content.Context;
 import android.content.Intent;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.logtracking.lib.internal.ReportIssueActivity.*;
 
@@ -18,12 +17,16 @@ public class IssueReporter {
 		
 		@Override	
 		public void onReportPrepared(final IssueReport report) {
-            mSendingService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    mLogFileSender.sendReport(report);
-                }
-            });
+            try {
+                LogScheduler.getExecutor(LogScheduler.Lane.UPLOAD).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLogFileSender.sendReport(report);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                mNotifier.sendFailUploadNotification();
+            }
 		}
 		
 		@Override
@@ -32,14 +35,11 @@ public class IssueReporter {
 		}
 	};
 
-    private final int POOL_SIZE = 3;
-
 	private Context mApplicationContext;
 	private LogConfiguration mLogConfiguration;
 	private LogReportSender mLogFileSender;
     private LogFileManager mLogFileManager;
 	private AndroidNotifier mNotifier;
-	private ExecutorService mSendingService;
 
 	private Thread mCrashedThread;
 	private Throwable mUncaughtException;
@@ -50,7 +50,6 @@ public class IssueReporter {
         mLogConfiguration = logContext.getLogConfiguration();
         mLogFileManager = fileManager;
 		mNotifier = new AndroidNotifier(logContext);
-        mSendingService = Executors.newFixedThreadPool(POOL_SIZE);
 
         if(isSendingSupport()){
             mLogFileSender = LogFileSenderFactory.newSender(logContext);
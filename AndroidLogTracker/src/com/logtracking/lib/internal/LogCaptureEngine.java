@@ -0,0 +1,98 @@
+package com.logtracking.lib.internal;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures records from {@link LogSource} : rejects records by pid and level before they are built, resolves
+ * package names, applies filter and passes records to sink. Engine doesn't depend on Android classes,
+ * so it could be run on JVM with recorded logcat output and any filter.
+ * Records are captured by one thread, counters could be read from any thread.
+ */
+final class LogCaptureEngine {
+
+	/**
+	 * Receiver of captured records, e.g. buffer of log file.
+	 */
+	interface RecordSink {
+
+		/**
+		 * Write record, which is valid only during this call.
+		 */
+		void write(LogModel record) throws IOException;
+	}
+
+	private final LogCaptureFilter mFilter;
+	private final RecordSink mSink;
+	private final LogModel mRecycledRecord = new LogModel();
+
+	private final AtomicLong mCapturedRecordsCount = new AtomicLong();
+	private final AtomicLong mSkippedRecordsCount = new AtomicLong();
+	private final AtomicLong mFilteredRecordsCount = new AtomicLong();
+
+	private volatile boolean mStopped;
+
+	private final LogSource.HeaderFilter mHeaderFilter = new LogSource.HeaderFilter() {
+		@Override
+		public boolean passHeader(int pid, char levelSymbol){
+			if (mFilter.filterAvailable() && !mFilter.passLineHeader(pid, levelSymbol)){
+				mSkippedRecordsCount.incrementAndGet();
+				LogMetrics.LINES_FILTERED.increment();
+				return false;
+			}
+			return true;
+		}
+	};
+
+	LogCaptureEngine(LogCaptureFilter filter, RecordSink sink){
+		mFilter = filter;
+		mSink = sink;
+	}
+
+	/**
+	 * Capture records from source, until source is ended or engine is stopped. Source is not closed.
+	 */
+	void capture(LogSource source) throws IOException{
+		LogModel record;
+		while (!mStopped && (record = source.read(mRecycledRecord, mHeaderFilter)) != null){
+			if (record.getPackageName() == null){
+				record.setPackageName(mFilter.packageNameByPid(record.getPid()));
+			}
+			if (mFilter.filterAvailable() && !mFilter.passFilterRecord(record)){
+				mFilteredRecordsCount.incrementAndGet();
+				LogMetrics.LINES_FILTERED.increment();
+				continue;
+			}
+			mSink.write(record);
+			mCapturedRecordsCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Stop capture after current record. Capture, which waits for next record, is stopped when record is read.
+	 */
+	void stop(){
+		mStopped = true;
+	}
+
+	/**
+	 * @return count of records, passed to sink.
+	 */
+	long getCapturedRecordsCount(){
+		return mCapturedRecordsCount.get();
+	}
+
+	/**
+	 * @return count of records, rejected by pid or level before they were built.
+	 */
+	long getSkippedRecordsCount(){
+		return mSkippedRecordsCount.get();
+	}
+
+	/**
+	 * @return count of built records, rejected by filter.
+	 */
+	long getFilteredRecordsCount(){
+		return mFilteredRecordsCount.get();
+	}
+}
@@ -0,0 +1,25 @@
+package com.logtracking.lib.internal;
+
+/**
+ * Filter of records, captured by {@link LogCaptureEngine}.
+ * Pid and level of record are checked by {@link #passLineHeader(int, char)} before record is built,
+ * whole record is checked by {@link #passFilterRecord(LogModel)} after it is built.
+ *
+ * @see LogFilter
+ */
+interface LogCaptureFilter {
+
+	/**
+	 * @return false if all records pass filter, so they don't need to be checked.
+	 */
+	boolean filterAvailable();
+
+	boolean passLineHeader(int pid, char levelSymbol);
+
+	boolean passFilterRecord(LogModel record);
+
+	/**
+	 * @return package name of process with given pid, or null if it is unknown.
+	 */
+	String packageNameByPid(int pid);
+}
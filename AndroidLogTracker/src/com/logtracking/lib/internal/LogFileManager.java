@@ -8,7 +8,6 @@ import java.util.Date;
 import java.util.List;
 
 import com.logtracking.lib.api.Log;
-import com.logtracking.lib.api.config.LogConfiguration;
 import com.logtracking.lib.internal.format.LogFileFormatter;
 import com.logtracking.lib.internal.format.LogFileFormatterFactory;
 import com.logtracking.lib.api.config.LogConfiguration.*;
@@ -56,7 +55,7 @@ public class LogFileManager {
 		}
 		
 		private boolean needToResumeLogSaving(){
-			return (mLogContext.getLogConfiguration().getLogSavingMode() == LogConfiguration.LogSavingMode.SAVE_ALL_LOG_IN_FILE) &&
+			return isContinuousLogSaving() &&
 				   (mPreparationTasksCount == 0 ) &&
 				   (mSaveLogTask != null); 
 		}
@@ -84,10 +83,12 @@ public class LogFileManager {
 	}
 	
 	public void startLogSaving(){
-		if (mLogContext.getLogConfiguration().getLogSavingMode() == LogSavingMode.SAVE_ALL_LOG_IN_FILE && !isSaving()){
+		if (isContinuousLogSaving() && !isSaving()){
 			prepareLogDirectory();
 			mSaveLogTask = new LogSavingTask(mLogContext);
-			mSaveLogTask.startProcess();
+			if (!mSaveLogTask.startProcess()){
+				mSaveLogTask = null;
+			}
 		}
 	}
 	
@@ -97,6 +98,20 @@ public class LogFileManager {
 			mSaveLogTask.cancel(true);
 		}
 	}
+
+	/**
+	 * @return count of log lines, that were read by current log saving, but were not written in log file.
+	 */
+	public long getDroppedLinesCount(){
+		return mSaveLogTask != null ? mSaveLogTask.getDroppedLinesCount() : 0;
+	}
+
+	/**
+	 * @return count of log lines, that were read by current log saving, but were rejected by filter before parsing.
+	 */
+	public long getSkippedLinesCount(){
+		return mSaveLogTask != null ? mSaveLogTask.getSkippedLinesCount() : 0;
+	}
 	
 	/**
 	 * Should be called only from UI thread!
@@ -159,9 +174,10 @@ public class LogFileManager {
 		reportTask.setReportMessage(reportMessage);
 		reportTask.setReportPrepareListener(mInternalOnReportPreparationsListener);
 		reportTask.setLogFile(getReportFileName());	
-		reportTask.startProcess();
 		
+		/*Counted before start, because rejected task is failed and uncounted during start.*/
 		mPreparationTasksCount++;
+		reportTask.startProcess();
 	}
 
     private List<LogModel> formatCrashStackTrace(Thread thread,Throwable throwable){
@@ -186,6 +202,11 @@ public class LogFileManager {
 						mFileFormatter.getFileExtension());
 	}
 	
+	private boolean isContinuousLogSaving(){
+		LogSavingMode logSavingMode = mLogContext.getLogConfiguration().getLogSavingMode();
+		return logSavingMode == LogSavingMode.SAVE_ALL_LOG_IN_FILE || logSavingMode == LogSavingMode.SAVE_IN_RING_BUFFER;
+	}
+	
 	private boolean isSaving(){
 		return (mSaveLogTask!=null && mSaveLogTask.getStatus() == AsyncTask.Status.RUNNING);
 	}
@@ -1,106 +1,282 @@
 package com.logtracking.lib.internal;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.logtracking.lib.api.Log;
 
 import android.app.ActivityManager;
 import android.app.ActivityManager.RunningAppProcessInfo;
 import android.content.Context;
-import android.text.TextUtils;
+import android.content.pm.PackageManager;
+import android.os.Process;
 import android.util.SparseArray;
 import com.logtracking.lib.api.config.LogConfiguration;
+import com.logtracking.lib.api.config.LogRecordFilter;
 
-public class LogFilter {
+/*
+ * Package names of processes are looked up in immutable snapshot of running processes, which is published through
+ * volatile reference, so lookup never blocks. Query of running processes is binder call, so snapshot is refreshed
+ * only in background, when unknown pid is found, not more often than once per refresh interval.
+ * Pids, which are still unknown after refresh, e.g. pids of system processes, are cached as unknown for some time,
+ * so they don't cause refreshes. Every pid expires at its own time and is carried to next snapshots until then.
+ */
+public class LogFilter implements LogCaptureFilter {
+
+	private static final long MIN_REFRESH_INTERVAL = 1000;
+	private static final long UNKNOWN_PID_CACHE_TIME = 30 * 1000;
+	/*Power of two. Pids, which don't fit, are missed again after next refresh.*/
+	private static final int MISSED_PIDS_CAPACITY = 64;
 
-	private static final SparseArray<Character> CODE_LEVEL_ARRAY = new SparseArray<Character>();
-	
-	static {
-		CODE_LEVEL_ARRAY.put(Log.ASSERT ,  'A');
-		CODE_LEVEL_ARRAY.put(Log.DEBUG  ,  'D');
-		CODE_LEVEL_ARRAY.put(Log.ERROR  ,  'E');
-		CODE_LEVEL_ARRAY.put(Log.INFO   ,  'I');
-		CODE_LEVEL_ARRAY.put(Log.VERBOSE,  'V');
-		CODE_LEVEL_ARRAY.put(Log.WARN   ,  'W');
-	}
-	
 	private static final LogFilter instance = new LogFilter();
-	
+
 	public static LogFilter getInstance(){
 		return instance;
 	}
 	
 	public static char getLevelSymbolByCode(int code){
-		return CODE_LEVEL_ARRAY.get(code);
+		return LogLevels.getSymbol(code);
+	}
+
+	public static int getLevelCodeBySymbol(char symbol){
+		return LogLevels.getLevel(symbol);
 	}
 	
-	private SparseArray<String> mPidPackageNameCollector;
-	private List<Integer> mPidFilter;
+	/*Snapshot of running processes, which is never changed after it is published.*/
+	private static final class ProcessSnapshot {
+
+		static final ProcessSnapshot EMPTY = new ProcessSnapshot(new SparseArray<String>(), new int[0], new long[0], null);
+
+		final SparseArray<String> mPackageNames;
+		/*Sorted unknown pids and times, when they expire.*/
+		final int[] mUnknownPids;
+		final long[] mUnknownPidsExpirationTimes;
+		final int[] mPidFilter;
+
+		ProcessSnapshot(SparseArray<String> packageNames, int[] unknownPids, long[] unknownPidsExpirationTimes, int[] pidFilter){
+			mPackageNames = packageNames;
+			mUnknownPids = unknownPids;
+			mUnknownPidsExpirationTimes = unknownPidsExpirationTimes;
+			mPidFilter = pidFilter;
+		}
+
+		boolean isUnknownPid(int pid){
+			int index = Arrays.binarySearch(mUnknownPids, pid);
+			return index >= 0 && mUnknownPidsExpirationTimes[index] > System.currentTimeMillis();
+		}
+	}
+
+	private volatile ProcessSnapshot mSnapshot = ProcessSnapshot.EMPTY;
+	private final AtomicLong mNextRefreshTime = new AtomicLong();
+	/*
+	 * Pids, which were not found in current snapshot, since it was published. Open addressing set of pid + 1 values,
+	 * so 0 is free slot and pids are added without locking and boxing.
+	 */
+	private final AtomicIntegerArray mMissedPids = new AtomicIntegerArray(MISSED_PIDS_CAPACITY);
+	private final Runnable mRefreshTask = new Runnable() {
+		@Override
+		public void run() {
+			refreshSnapshot();
+		}
+	};
+
 	private Integer mLevelFilter;
 	private boolean mOnlyOwnLogRecord;
+	private LogRecordFilter mRecordFilter;
 	private Context mApplicationContext;
 	private LogConfiguration mConfiguration;
 	
-	protected boolean filterAvailable(){
-		return (mPidFilter !=null && mPidFilter.size()>0) ||
-			   (mLevelFilter !=null);
+	@Override
+	public boolean filterAvailable(){
+		int[] pidFilter = mSnapshot.mPidFilter;
+		return (pidFilter !=null && pidFilter.length>0) ||
+			   (mLevelFilter !=null) ||
+			   (mRecordFilter !=null);
 	}
 	
-	protected boolean passFilterRecord(LogModel record){
-		
-		return ( ( (mPidFilter == null || mPidFilter.size() == 0) || (mPidFilter.contains(record.getPid())) )
+	@Override
+	public boolean passFilterRecord(LogModel record){
+		int[] pidFilter = mSnapshot.mPidFilter;
+		return ( ( (pidFilter == null || pidFilter.length == 0) || (containsPid(pidFilter, record.getPid())) )
+				 &&
+				 ((!mOnlyOwnLogRecord) || (record.isTagStartsWith(Log.LIBRARY_FILTER_TAG) ))
 				 &&
-				 ((!mOnlyOwnLogRecord) || (record.getTag().startsWith(Log.LIBRARY_FILTER_TAG) ))
+				 ((mRecordFilter == null) || (mRecordFilter.accept(record)))
 				 );
 	}
 
-	
+	/*
+	 * Checks pid and level columns of logcat line before line is parsed, so most of filtered lines are rejected
+	 * without building of record. Record of passed line is still checked by passFilterRecord.
+	 */
+	@Override
+	public boolean passLineHeader(int pid, char levelSymbol){
+		int[] pidFilter = mSnapshot.mPidFilter;
+		return ( ( (pidFilter == null || pidFilter.length == 0) || (containsPid(pidFilter, pid)) )
+				 &&
+				 ((mLevelFilter == null) || (getLevelCodeBySymbol(levelSymbol) >= mLevelFilter))
+				 );
+	}
+
+	/*Pids of filter are taken from keys of SparseArray, so they are sorted.*/
+	private static boolean containsPid(int[] pidFilter, int pid){
+		return Arrays.binarySearch(pidFilter, pid) >= 0;
+	}
+
 	public void initFilter(LogContext logContext){
 		mApplicationContext = logContext.getApplicationContext();
 		mConfiguration = logContext.getLogConfiguration();
-		mPidFilter = packageNameFilterToPIDFilter(mConfiguration.getApplicationPackageFilter());
 		mLevelFilter = mConfiguration.getLevelFilter();
 		mOnlyOwnLogRecord = mConfiguration.isFilterOnlyOwnRecord();
+		mRecordFilter = mConfiguration.getRecordFilter();
+		refreshSnapshot();
 	}
 	
+	/*Never blocks : if pid is unknown, snapshot is refreshed in background and next records of this pid get package name.*/
+	@Override
 	public String packageNameByPid(int pid){
-		String packageName = mPidPackageNameCollector.get(pid);
-		if (TextUtils.isEmpty(packageName)){
-			refreshPackageFilter();
+		ProcessSnapshot snapshot = mSnapshot;
+		String packageName = snapshot.mPackageNames.get(pid);
+		if (packageName == null && !snapshot.isUnknownPid(pid)){
+			addMissedPid(pid);
+			requestRefresh();
 		}
-		return mPidPackageNameCollector.get(pid);
+		return packageName;
 	}
 	
+	/*Return pid of process of given package, or -1 if it is not running. Snapshot is refreshed right now, if package is unknown.*/
 	public int getPidByPackageName(String packageName){
-		int pid = mPidPackageNameCollector.indexOfValue(packageName);
-		if (pid<0){
-			refreshPackageFilter();
+		int pid = findPid(mSnapshot, packageName);
+		if (pid < 0){
+			refreshSnapshot();
+			pid = findPid(mSnapshot, packageName);
 		}
-		return mPidPackageNameCollector.indexOfValue(packageName);
+		return pid;
 	}
-	
-	private List<Integer> packageNameFilterToPIDFilter(List<String> packageNameFilter){
-		if (packageNameFilter == null)
+
+	private static int findPid(ProcessSnapshot snapshot, String packageName){
+		SparseArray<String> packageNames = snapshot.mPackageNames;
+		for (int i = 0; i < packageNames.size(); i++){
+			if (packageName.equals(packageNames.valueAt(i)))
+				return packageNames.keyAt(i);
+		}
+		return -1;
+	}
+
+	/*
+	 * Return true if only own process passes package filter, so logcat could filter records by own pid.
+	 * Pid filter of other packages couldn't be passed to logcat, as their processes could be restarted with new pids.
+	 */
+	public boolean isOnlyOwnProcessFiltered(){
+		int[] pidFilter = mSnapshot.mPidFilter;
+		List<String> packageFilter = mConfiguration.getApplicationPackageFilter();
+		return pidFilter != null && pidFilter.length == 1 && pidFilter[0] == Process.myPid() &&
+			   packageFilter.size() == 1 && packageFilter.get(0).equals(mApplicationContext.getPackageName());
+	}
+
+	/*
+	 * Return uids of filtered packages, so logcat could filter records by them, or null if package filter is empty
+	 * or some package is not installed. Records of uid are still checked by package filter.
+	 */
+	public int[] getUidFilter(){
+		List<String> packageFilter = mConfiguration.getApplicationPackageFilter();
+		if (mApplicationContext == null || packageFilter == null || packageFilter.isEmpty())
 			return null;
-		
-		mPidPackageNameCollector = new SparseArray<String>();
-		List<String> packageNameFilterCopy = new ArrayList<String>(packageNameFilter);
-		List<Integer> pidFilter = new ArrayList<Integer>();
+
+		PackageManager packageManager = mApplicationContext.getPackageManager();
+		int[] uidFilter = new int[packageFilter.size()];
+		for (int i = 0; i < uidFilter.length; i++){
+			try {
+				uidFilter[i] = packageManager.getApplicationInfo(packageFilter.get(i), 0).uid;
+			} catch (PackageManager.NameNotFoundException e) {
+				return null;
+			}
+		}
+		return uidFilter;
+	}
+
+	/*Refresh is scheduled not more often than once per interval, only one thread wins the right to schedule it.*/
+	private void requestRefresh(){
+		long now = System.currentTimeMillis();
+		long nextRefreshTime = mNextRefreshTime.get();
+		if (now >= nextRefreshTime && mNextRefreshTime.compareAndSet(nextRefreshTime, now + MIN_REFRESH_INTERVAL)){
+			LogScheduler.getExecutor(LogScheduler.Lane.MAINTENANCE).execute(mRefreshTask);
+		}
+	}
+	
+	private void addMissedPid(int pid){
+		int value = pid + 1;
+		for (int i = 0; i < MISSED_PIDS_CAPACITY; i++){
+			int slot = (value + i) & (MISSED_PIDS_CAPACITY - 1);
+			if (mMissedPids.get(slot) == value || mMissedPids.compareAndSet(slot, 0, value) || mMissedPids.get(slot) == value){
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Pids, missed in previous snapshot and not found in new one, are remembered as unknown. Unknown pids
+	 * of previous snapshot, which are not expired and still not found, are carried with their expiration times.
+	 */
+	private synchronized void refreshSnapshot(){
+		if (mApplicationContext == null)
+			return;
+
 		ActivityManager manager  = (ActivityManager) mApplicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+		List<RunningAppProcessInfo> processes = manager.getRunningAppProcesses();
+
+		SparseArray<String> packageNames = new SparseArray<String>();
+		if (processes != null){
+			for (RunningAppProcessInfo processInfo : processes){
+				packageNames.put(processInfo.pid, processInfo.processName);
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		ProcessSnapshot previousSnapshot = mSnapshot;
+		Map<Integer, Long> unknownPids = new TreeMap<Integer, Long>();
+		for (int i = 0; i < previousSnapshot.mUnknownPids.length; i++){
+			int pid = previousSnapshot.mUnknownPids[i];
+			long expirationTime = previousSnapshot.mUnknownPidsExpirationTimes[i];
+			if (expirationTime > now && packageNames.get(pid) == null){
+				unknownPids.put(pid, expirationTime);
+			}
+		}
+		for (int slot = 0; slot < MISSED_PIDS_CAPACITY; slot++){
+			int pid = mMissedPids.getAndSet(slot, 0) - 1;
+			if (pid >= 0 && packageNames.get(pid) == null && !unknownPids.containsKey(pid)){
+				unknownPids.put(pid, now + UNKNOWN_PID_CACHE_TIME);
+			}
+		}
 
-		for(RunningAppProcessInfo processInfo : manager.getRunningAppProcesses()){
-			mPidPackageNameCollector.put(processInfo.pid, processInfo.processName);
-			for (String packageName : packageNameFilterCopy) {
-				 if(processInfo.processName.equals(packageName))
-					 pidFilter.add(processInfo.pid);
-				 	 packageNameFilterCopy.remove(packageName);
-				 	 break;
-				 }
+		int[] pids = new int[unknownPids.size()];
+		long[] expirationTimes = new long[unknownPids.size()];
+		int index = 0;
+		for (Map.Entry<Integer, Long> unknownPid : unknownPids.entrySet()){
+			pids[index] = unknownPid.getKey();
+			expirationTimes[index] = unknownPid.getValue();
+			index++;
 		}
-		return pidFilter;
+
+		mSnapshot = new ProcessSnapshot(packageNames, pids, expirationTimes,
+										packageNameFilterToPidFilter(mConfiguration.getApplicationPackageFilter(), packageNames));
 	}
 	
-	private void refreshPackageFilter(){
-		mPidFilter = packageNameFilterToPIDFilter(mConfiguration.getApplicationPackageFilter());
+	private static int[] packageNameFilterToPidFilter(List<String> packageNameFilter, SparseArray<String> packageNames){
+		if (packageNameFilter == null)
+			return null;
+		
+		int pidsCount = 0;
+		int[] pidFilter = new int[packageNames.size()];
+		for (int i = 0; i < packageNames.size(); i++){
+			if (packageNameFilter.contains(packageNames.valueAt(i))){
+				pidFilter[pidsCount++] = packageNames.keyAt(i);
+			}
+		}
+		return Arrays.copyOf(pidFilter, pidsCount);
 	}
 }
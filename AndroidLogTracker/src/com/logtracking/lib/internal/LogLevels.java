@@ -0,0 +1,69 @@
+package com.logtracking.lib.internal;
+
+/**
+ * Levels of log messages and mapping between them and their symbols in logcat output.
+ * Values of levels are the same as constants of {@code android.util.Log}, but they are declared here,
+ * so capture engine and filters don't depend on Android platform and could be run on JVM.
+ */
+public final class LogLevels {
+
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+	public static final int WARN = 5;
+	public static final int ERROR = 6;
+	public static final int ASSERT = 7;
+
+	/**
+	 * Cannot be instantiated
+	 */
+	private LogLevels(){
+	}
+
+	/**
+	 * @throws IllegalArgumentException if level is unknown.
+	 */
+	static char getSymbol(int level){
+		switch (level){
+			case VERBOSE:
+				return 'V';
+			case DEBUG:
+				return 'D';
+			case INFO:
+				return 'I';
+			case WARN:
+				return 'W';
+			case ERROR:
+				return 'E';
+			case ASSERT:
+				return 'A';
+
+			default:
+				throw new IllegalArgumentException("Unknown level : " + level);
+		}
+	}
+
+	/**
+	 * @return level of given symbol, or 0 if symbol is unknown, so it is lower than any level.
+	 */
+	static int getLevel(char symbol){
+		switch (symbol){
+			case 'V':
+				return VERBOSE;
+			case 'D':
+				return DEBUG;
+			case 'I':
+				return INFO;
+			case 'W':
+				return WARN;
+			case 'E':
+				return ERROR;
+			case 'A':
+			case 'F':
+				return ASSERT;
+
+			default:
+				return 0;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.logtracking.lib.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Library-wide registry of metrics, which show whether tracker keeps up with log : counts of read, parsed, filtered
+ * and dropped lines, written bytes, durations of flushes, report preparation phases and uploads, and statistics
+ * of lanes of {@link LogScheduler} : depth of queues, rejected tasks and times of tasks in queue and in run.
+ * Counters are striped by thread, so threads, which update the same counter, don't contend for one cell.
+ * Values are read by {@link #snapshot()}, which is not atomic across metrics.
+ */
+public final class LogMetrics {
+
+	private static final List<Metric> sMetrics = new ArrayList<Metric>();
+
+	public static final Counter LINES_READ = register(new Counter("lines.read"));
+	public static final Counter LINES_PARSED = register(new Counter("lines.parsed"));
+	public static final Counter LINES_FILTERED = register(new Counter("lines.filtered"));
+	public static final Counter LINES_PARSE_FAILED = register(new Counter("lines.parse_failed"));
+	public static final Counter LINES_DROPPED = register(new Counter("lines.dropped"));
+	public static final Counter BYTES_WRITTEN = register(new Counter("bytes.written"));
+	public static final Timer FLUSH = register(new Timer("flush", true));
+	public static final Counter ROTATIONS = register(new Counter("rotations"));
+	public static final Timer REPORT_ATTACHMENTS = register(new Timer("report.attachments", false));
+	public static final Timer REPORT_MERGE = register(new Timer("report.merge", false));
+	public static final Timer REPORT_ARCHIVE = register(new Timer("report.archive", false));
+	public static final Timer UPLOAD = register(new Timer("upload", false));
+	public static final Counter UPLOAD_RETRIES = register(new Counter("upload.retries"));
+
+	static {
+		register(new SchedulerLanes("scheduler"));
+	}
+
+	/**
+	 * Cannot be instantiated
+	 */
+	private LogMetrics(){
+	}
+
+	/**
+	 * @return current values of all metrics by their names, in order of registration. Durations are in microseconds.
+	 */
+	public static Map<String, Long> snapshot(){
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (Metric metric : sMetrics){
+			metric.snapshot(values);
+		}
+		return Collections.unmodifiableMap(values);
+	}
+
+	private static <T extends Metric> T register(T metric){
+		sMetrics.add(metric);
+		return metric;
+	}
+
+	private abstract static class Metric {
+
+		final String mName;
+
+		Metric(String name){
+			mName = name;
+		}
+
+		abstract void snapshot(Map<String, Long> values);
+	}
+
+	/**
+	 * Sum, which is updated in cell of current thread. Cells are placed apart, so they are not in the same cache line.
+	 */
+	public static final class Counter extends Metric {
+
+		private static final int STRIPES_COUNT = 8;
+		private static final int CELL_SPACING = 8;
+
+		private final AtomicLongArray mCells = new AtomicLongArray(STRIPES_COUNT * CELL_SPACING);
+
+		Counter(String name){
+			super(name);
+		}
+
+		public void increment(){
+			add(1);
+		}
+
+		public void add(long value){
+			mCells.addAndGet(((int) Thread.currentThread().getId() & (STRIPES_COUNT - 1)) * CELL_SPACING, value);
+		}
+
+		public long get(){
+			long sum = 0;
+			for (int i = 0; i < STRIPES_COUNT; i++){
+				sum += mCells.get(i * CELL_SPACING);
+			}
+			return sum;
+		}
+
+		@Override
+		void snapshot(Map<String, Long> values){
+			values.put(mName, get());
+		}
+	}
+
+	/**
+	 * Count, total and maximum of durations, optionally with histogram of durations in buckets of 1, 4, 16, 64, 256
+	 * and 1024 milliseconds, and above.
+	 */
+	public static final class Timer extends Metric {
+
+		private static final long[] BUCKET_BOUNDS_MILLIS = {1, 4, 16, 64, 256, 1024};
+
+		private final Counter mCount;
+		private final Counter mTotalNanos;
+		private final AtomicLong mMaxNanos = new AtomicLong();
+		private final AtomicLongArray mBuckets;
+
+		Timer(String name, boolean histogram){
+			super(name);
+			mCount = new Counter(name + ".count");
+			mTotalNanos = new Counter(name + ".total_us");
+			mBuckets = histogram ? new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1) : null;
+		}
+
+		/**
+		 * Record duration since given start time, taken from {@link System#nanoTime()}.
+		 */
+		public void stop(long startNanos){
+			record(System.nanoTime() - startNanos);
+		}
+
+		public void record(long durationNanos){
+			mCount.increment();
+			mTotalNanos.add(durationNanos);
+
+			long maxNanos = mMaxNanos.get();
+			while (durationNanos > maxNanos && !mMaxNanos.compareAndSet(maxNanos, durationNanos)){
+				maxNanos = mMaxNanos.get();
+			}
+
+			if (mBuckets != null){
+				int bucket = 0;
+				while (bucket < BUCKET_BOUNDS_MILLIS.length && durationNanos > TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[bucket])){
+					bucket++;
+				}
+				mBuckets.incrementAndGet(bucket);
+			}
+		}
+
+		@Override
+		void snapshot(Map<String, Long> values){
+			values.put(mCount.mName, mCount.get());
+			values.put(mTotalNanos.mName, TimeUnit.NANOSECONDS.toMicros(mTotalNanos.get()));
+			values.put(mName + ".max_us", TimeUnit.NANOSECONDS.toMicros(mMaxNanos.get()));
+			if (mBuckets != null){
+				for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++){
+					values.put(mName + ".le_" + BUCKET_BOUNDS_MILLIS[i] + "ms", mBuckets.get(i));
+				}
+				values.put(mName + ".gt_" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms",
+						   mBuckets.get(BUCKET_BOUNDS_MILLIS.length));
+			}
+		}
+	}
+
+	/**
+	 * Statistics of lanes of scheduler, which were used since start, e.g. scheduler.report.queued.
+	 */
+	private static final class SchedulerLanes extends Metric {
+
+		SchedulerLanes(String name){
+			super(name);
+		}
+
+		@Override
+		void snapshot(Map<String, Long> values){
+			for (Map.Entry<LogScheduler.Lane, LogScheduler.LaneStatistics> lane : LogScheduler.getStatistics().entrySet()){
+				String prefix = mName + "." + lane.getKey().name().toLowerCase(Locale.US) + ".";
+				LogScheduler.LaneStatistics statistics = lane.getValue();
+				values.put(prefix + "active", (long) statistics.mActiveCount);
+				values.put(prefix + "queued", (long) statistics.mQueuedCount);
+				values.put(prefix + "completed", statistics.mCompletedCount);
+				values.put(prefix + "rejected", statistics.mRejectedCount);
+				values.put(prefix + "wait.avg_us", TimeUnit.NANOSECONDS.toMicros(statistics.mAverageWaitTime));
+				values.put(prefix + "wait.max_us", TimeUnit.NANOSECONDS.toMicros(statistics.mMaxWaitTime));
+				values.put(prefix + "run.avg_us", TimeUnit.NANOSECONDS.toMicros(statistics.mAverageRunTime));
+			}
+		}
+	}
+}
@@ -1,17 +1,26 @@
 package com.logtracking.lib.internal;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-
-import android.text.TextUtils;
-import com.logtracking.lib.api.Log;
+import java.util.Date;
 
+/**
+ * Single log record.
+ * Object could be recycled : after {@link #reset()} it could be filled with next record, so
+ * stream of records could be handled without allocating new models. String fields of record,
+ * parsed from logcat line, are extracted from source line lazily, only when requested.
+ */
 public class LogModel {
-	
+
 	protected static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat("MM-dd HH:mm:ss.SSS");
-	private static final Calendar CALENDAR = Calendar.getInstance();
+
+	/*Minimal widths of pid, tid and tag columns of logcat "threadtime" line.*/
+	private static final int ID_COLUMN_WIDTH = 5;
+	private static final int TAG_COLUMN_WIDTH = 8;
 
 	private String mDate;
+	private long mTimeMillis;
+	/*True if date was set from logcat line, not formatted from time millis.*/
+	private boolean mParsedDate;
 	private Character mLevelSymbol;
 	private int mPid;
 	private long mTid;
@@ -19,24 +28,69 @@ public class LogModel {
 	private String mMessage;
 	private String mPackageName;
 	private String mLogRecord;
-	
+
+	/*Source logcat line and offsets of fields, that were not extracted yet.*/
+	private String mSourceLine;
+	private int mDateEnd;
+	private int mTagStart;
+	private int mTagEnd;
+	private int mMessageStart;
+	private int mMessageEnd;
+
 	public LogModel(){
-        mDate = LOG_DATE_FORMAT.format(CALENDAR.getTime());
+        mTimeMillis = System.currentTimeMillis();
 	}
 
 	public LogModel(int pid, long tid, int level, String packageName ,String tag,  String message){
-		mDate = LOG_DATE_FORMAT.format(CALENDAR.getTime());
+		mTimeMillis = System.currentTimeMillis();
         mPid = pid;
 		mTid = tid;
-        mLevelSymbol = LogFilter.getLevelSymbolByCode(level);
+        mLevelSymbol = LogLevels.getSymbol(level);
 		mPackageName = packageName;
 		mTag = tag;
 		mMessage = message;
-        buildLogRecord();
+	}
+
+	/**
+	 * Clear all fields of record, so object could be reused for next record.
+	 */
+	public void reset(){
+		mDate = null;
+		mTimeMillis = System.currentTimeMillis();
+		mParsedDate = false;
+		mLevelSymbol = null;
+		mPid = 0;
+		mTid = 0;
+		mTag = null;
+		mMessage = null;
+		mPackageName = null;
+		mLogRecord = null;
+		mSourceLine = null;
+	}
+
+	/*
+	 * Set logcat line as source of date, tag and message fields. Also this line is used as full log record.
+	 */
+	void setSourceLine(String line, int dateEnd, int tagStart, int tagEnd, int messageStart, int messageEnd){
+		mSourceLine = line;
+		mLogRecord = line;
+		mParsedDate = true;
+		mDateEnd = dateEnd;
+		mTagStart = tagStart;
+		mTagEnd = tagEnd;
+		mMessageStart = messageStart;
+		mMessageEnd = messageEnd;
 	}
 
 	public void setFormattedDate(String dateStr) {
 		mDate = dateStr;
+		mParsedDate = dateStr != null;
+	}
+
+	public void setTimeMillis(long timeMillis) {
+		mTimeMillis = timeMillis;
+		mDate = null;
+		mParsedDate = false;
 	}
 
 	public void setLevelSymbol(Character levelSymbol) {
@@ -68,9 +122,28 @@ public class LogModel {
 	}
 
 	public String getFormattedDate() {
+		if (mDate == null){
+			mDate = mSourceLine != null ? mSourceLine.substring(0, mDateEnd) : formatDate(mTimeMillis);
+		}
 		return mDate;
 	}
 
+	/**
+	 * @return time of record in millis. Time of record, parsed from logcat line, is known only as formatted date,
+	 * so for such record this is time of parsing.
+	 * @see #hasOnlyFormattedDate()
+	 */
+	public long getTimeMillis() {
+		return mTimeMillis;
+	}
+
+	/**
+	 * @return true if record was parsed from logcat line, so its time is known only as formatted date.
+	 */
+	public boolean hasOnlyFormattedDate() {
+		return mParsedDate;
+	}
+
 	public Character getLevelSymbol() {
 		return mLevelSymbol;
 	}
@@ -84,10 +157,16 @@ public class LogModel {
 	}
 
 	public String getTag() {
+		if (mTag == null && mSourceLine != null){
+			mTag = mSourceLine.substring(mTagStart, mTagEnd);
+		}
 		return mTag;
 	}
 
 	public String getMessage() {
+		if (mMessage == null && mSourceLine != null){
+			mMessage = mSourceLine.substring(mMessageStart, mMessageEnd);
+		}
 		return mMessage;
 	}
 
@@ -96,29 +175,98 @@ public class LogModel {
 	}
 
 	public String getFullLogRecord() {
-        if(TextUtils.isEmpty(mLogRecord)){
+        if(mLogRecord == null || mLogRecord.length() == 0){
             buildLogRecord();
         }
 		return mLogRecord;
 	}
 
+	/**
+	 * Checks does tag start with given prefix, without extracting tag from source line.
+	 */
+	public boolean isTagStartsWith(String prefix){
+		if (mTag == null && mSourceLine != null){
+			return mTagEnd - mTagStart >= prefix.length() && mSourceLine.startsWith(prefix, mTagStart);
+		}
+		return mTag != null && mTag.startsWith(prefix);
+	}
+
+	/**
+	 * @return hash code of tag, equal to {@link String#hashCode()} of tag, computed without extracting tag from source line.
+	 */
+	public int getTagHashCode(){
+		if (mTag == null && mSourceLine != null){
+			int hashCode = 0;
+			for (int i = mTagStart; i < mTagEnd; i++){
+				hashCode = 31 * hashCode + mSourceLine.charAt(i);
+			}
+			return hashCode;
+		}
+		return mTag != null ? mTag.hashCode() : 0;
+	}
+
+	/**
+	 * Checks is tag equal to given string, without extracting tag from source line.
+	 */
+	public boolean isTagEqual(String tag){
+		if (mTag == null && mSourceLine != null){
+			return mTagEnd - mTagStart == tag.length() && mSourceLine.startsWith(tag, mTagStart);
+		}
+		return tag.equals(mTag);
+	}
+
+	/**
+	 * Checks does message contain given string, without extracting message from source line.
+	 */
+	public boolean isMessageContains(String string){
+		if (mMessage == null && mSourceLine != null){
+			int index = mSourceLine.indexOf(string, mMessageStart);
+			return index >= 0 && index + string.length() <= mMessageEnd;
+		}
+		return mMessage != null && mMessage.contains(string);
+	}
+
     @Override
     public String toString(){
         return getFullLogRecord();
     }
 
+    private static String formatDate(long timeMillis){
+        synchronized (LOG_DATE_FORMAT){
+            return LOG_DATE_FORMAT.format(new Date(timeMillis));
+        }
+    }
+
+    /*
+     * Build record in the same "threadtime" layout, as logcat prints it : "MM-dd HH:mm:ss.SSS  PID  TID L TAG     : MESSAGE",
+     * so records, published in process, are saved in the same lines as records, read from logcat.
+     */
     private void buildLogRecord(){
         StringBuilder builder = new StringBuilder();
-        builder.append(mDate);
-        builder.append(" ");
-        builder.append(mPid);
-        builder.append(" ");
-        builder.append(mTid);
-        builder.append(" ");
+        builder.append(getFormattedDate());
+        builder.append(' ');
+        appendPadded(builder, String.valueOf(mPid), ID_COLUMN_WIDTH, true);
+        builder.append(' ');
+        appendPadded(builder, String.valueOf(mTid), ID_COLUMN_WIDTH, true);
+        builder.append(' ');
         builder.append(mLevelSymbol);
-        builder.append(" ");
+        builder.append(' ');
+        String tag = getTag();
+        appendPadded(builder, tag != null ? tag : "", TAG_COLUMN_WIDTH, false);
         builder.append(": ");
-        builder.append(mMessage);
+        builder.append(getMessage());
         mLogRecord = builder.toString();
     }
+
+    private static void appendPadded(StringBuilder builder, String value, int width, boolean alignRight){
+        if (!alignRight){
+            builder.append(value);
+        }
+        for (int i = value.length(); i < width; i++){
+            builder.append(' ');
+        }
+        if (alignRight){
+            builder.append(value);
+        }
+    }
 }
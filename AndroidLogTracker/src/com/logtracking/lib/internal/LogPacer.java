@@ -0,0 +1,82 @@
+package com.logtracking.lib.internal;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Releases records of replayed or generated log at times of their records, scaled by speed, counted from the first
+ * record. If reader falls behind, records are released at once and lag of reader is measured, so it shows
+ * whether capture keeps up with rate of source. Used by one thread, lag could be read from any thread.
+ */
+final class LogPacer {
+
+	/**
+	 * Records are released at real time of log.
+	 */
+	static final double REAL_TIME = 1;
+
+	/**
+	 * Records are released as fast as they are read.
+	 */
+	static final double AS_FAST_AS_POSSIBLE = 0;
+
+	private final double mSpeed;
+	private long mFirstRecordTime = -1;
+	private long mLastRecordTime;
+	private long mStartNanos;
+
+	private volatile long mLagNanos;
+	private volatile long mMaxLagNanos;
+
+	/**
+	 * @param speed ratio of log time to real time, e.g. 10 replays minute of log in 6 seconds,
+	 * or {@link #AS_FAST_AS_POSSIBLE}.
+	 */
+	LogPacer(double speed){
+		if (speed < 0)
+			throw new IllegalArgumentException("Speed should not be negative : " + speed);
+		mSpeed = speed;
+	}
+
+	/**
+	 * Wait until record with given time should be released. Pacing is started again from record, which is older than
+	 * previous one, e.g. after time of device was changed. Waiting is stopped, if thread is interrupted.
+	 *
+	 * @param recordTime time of record in millis, or negative if time is unknown, then record is released at once.
+	 */
+	void await(long recordTime){
+		if (mSpeed == AS_FAST_AS_POSSIBLE || recordTime < 0)
+			return;
+
+		if (mFirstRecordTime < 0 || recordTime < mLastRecordTime){
+			mFirstRecordTime = recordTime;
+			mStartNanos = System.nanoTime();
+		}
+		mLastRecordTime = recordTime;
+
+		long releaseNanos = mStartNanos + (long) ((recordTime - mFirstRecordTime) * 1000000L / mSpeed);
+		long delay;
+		while ((delay = releaseNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()){
+			LockSupport.parkNanos(this, delay);
+		}
+
+		long lag = Math.max(-delay, 0);
+		mLagNanos = lag;
+		if (lag > mMaxLagNanos){
+			mMaxLagNanos = lag;
+		}
+	}
+
+	/**
+	 * @return delay of release of the last record after its time.
+	 */
+	long getLagNanos(){
+		return mLagNanos;
+	}
+
+	/**
+	 * @return the longest delay of release of record after its time.
+	 */
+	long getMaxLagNanos(){
+		return mMaxLagNanos;
+	}
+}
@@ -3,15 +3,21 @@ package com.logtracking.lib.internal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Scanner;
-import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
+/**
+ * Parses lines of logcat "threadtime" format into {@link LogModel}.
+ * Line is scanned by character offsets, and only line with unexpected layout is matched by regular expression,
+ * which gives the same fields of record.
+ * Not thread safe : parser reuses one {@link Matcher}, keeps columns of the last scanned line between
+ * {@link #scanLineHeader(String)} and parsing, and parses into recycled model, so every thread should have own parser.
+ */
 class LogParser{
 
 	private static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat("MM-dd HH:mm:ss.SSS");
-	
+
 	private static final Pattern LOG_ENTRY_PATTERN = Pattern.compile(
 			"^(\\d\\d-\\d\\d\\s\\d\\d:\\d\\d:\\d\\d\\.\\d+)\\s*(\\d+)\\s*(\\d+)\\s([VDIWEAF])\\s(.*?):\\s+(.*)$");
 
@@ -21,38 +27,249 @@ class LogParser{
 	private static final int RECORD_POS_TAG = 5;
     private static final int RECORD_POS_MESSAGE = 6;
 	private static final int RECORD_POS_TID = 3;
-	
+
+	/*Offset of the millis fraction in "MM-dd HH:mm:ss.SSS" date prefix of threadtime line.*/
+	private static final int DATE_MILLIS_OFFSET = 15;
+
+	/*Max count of digits, that always fit in int without overflow check.*/
+	private static final int MAX_ID_DIGITS = 9;
+
+	private static final int NOT_PARSED = -1;
+
+	private Matcher mLogEntryMatcher = LOG_ENTRY_PATTERN.matcher("");
+
+	/*Parsing state of last line, processed by threadtime scanner.*/
+	private String mHeaderLine;
+	private int mLength;
+	private int mDateEnd;
+	private int mPid;
+	private int mTid;
+	private char mLevelSymbol;
+	private int mTagStart;
+	private int mTagEnd;
+	private int mMessageStart;
+	private int mMessageEnd;
+
 	protected static Calendar parseDate(String dateString) throws ParseException{
 		Calendar calendar = Calendar.getInstance();
 		calendar.setTime(LOG_DATE_FORMAT.parse(dateString));
 		return calendar;
 	}
-	
+
+	/**
+	 * Parse line in logcat "threadtime" format.
+	 * Line scanned by character offsets, regular expression used only for lines with unexpected layout.
+	 */
 	protected LogModel parseLogRecord(String line) throws ParseException {
-		Scanner mScanner = new Scanner(line);
-		
-		if(mScanner.findWithinHorizon(LOG_ENTRY_PATTERN, 0) == null)
+		return parseLogRecord(line, new LogModel());
+	}
+
+	/**
+	 * Parse line into given recycled model. Fields of line are not copied : model extracts them
+	 * from line only when they will be requested.
+	 */
+	protected LogModel parseLogRecord(String line, LogModel model) throws ParseException {
+		if (!scanThreadTimeLine(line)){
+			return parseLogRecordByPattern(line, model);
+		}
+
+		model.reset();
+		model.setSourceLine(line, mDateEnd, mTagStart, mTagEnd, mMessageStart, mMessageEnd);
+		model.setPid(mPid);
+		model.setTid(mTid);
+		model.setLevelSymbol(mLevelSymbol);
+
+		return model;
+	}
+
+	protected LogModel parseLogRecordByPattern(String line) throws ParseException {
+		return parseLogRecordByPattern(line, new LogModel());
+	}
+
+	protected LogModel parseLogRecordByPattern(String line, LogModel model) throws ParseException {
+		Matcher match = mLogEntryMatcher.reset(line);
+
+		if(!match.find())
             throw new ParseException("Unable to parse: " + line, 0);
-        
-        MatchResult match = mScanner.match();
-        
-        LogModel model = new LogModel();
+
+        model.reset();
         model.setFormattedDate(match.group(RECORD_POS_DATE));
-        model.setPid(Integer.parseInt(match.group(RECORD_POS_PID).replaceAll("\\s","")));
-        model.setTid(Integer.parseInt(match.group(RECORD_POS_TID).replaceAll("\\s", "")));
+        model.setPid(Integer.parseInt(match.group(RECORD_POS_PID)));
+        model.setTid(Integer.parseInt(match.group(RECORD_POS_TID)));
         model.setLevelSymbol(match.group(RECORD_POS_PRIORITY).charAt(0));
         model.setTag(match.group(RECORD_POS_TAG));
         model.setMessage(match.group(RECORD_POS_MESSAGE));
-        
+
         if(model.getMessage().endsWith("\r\n")){
         	model.setMessage(model.getMessage().substring(0, model.getMessage().length() - 2));
         } else if(model.getMessage().endsWith("\n")) {
         	model.setMessage(model.getMessage().substring(0, model.getMessage().length() - 1));
         }
-        
+
         model.setFullLogRecord(line);
-        
+
         return model;
 	}
 
+	/**
+	 * Scan only date, pid, tid and level columns of line in logcat "threadtime" format, without any allocation,
+	 * so line could be filtered before it is parsed. If line is parsed right after it was scanned, its columns
+	 * are not scanned again.
+	 *
+	 * @return true if columns were scanned, so {@link #getScannedPid()} and {@link #getScannedLevelSymbol()}
+	 * return values of this line, false if line has unexpected layout.
+	 */
+	protected boolean scanLineHeader(String line){
+		mHeaderLine = null;
+		int length = stripLineTerminator(line);
+
+		if (length <= DATE_MILLIS_OFFSET || !isDatePrefix(line)){
+			return false;
+		}
+
+		int pos = skipDigits(line, DATE_MILLIS_OFFSET, length);
+		if (pos == DATE_MILLIS_OFFSET){
+			return false;
+		}
+		mDateEnd = pos;
+
+		pos = skipSpaces(line, pos, length);
+		mPid = parseId(line, pos, length);
+		if (mPid == NOT_PARSED){
+			return false;
+		}
+		pos = skipDigits(line, pos, length);
+
+		pos = skipSpaces(line, pos, length);
+		mTid = parseId(line, pos, length);
+		if (mTid == NOT_PARSED){
+			return false;
+		}
+		pos = skipDigits(line, pos, length);
+
+		if (pos + 3 > length || !isSpace(line.charAt(pos)) || !isLevelSymbol(line.charAt(pos + 1)) || !isSpace(line.charAt(pos + 2))){
+			return false;
+		}
+		mLevelSymbol = line.charAt(pos + 1);
+		mTagStart = pos + 3;
+		mLength = length;
+		mHeaderLine = line;
+		return true;
+	}
+
+	protected int getScannedPid(){
+		return mPid;
+	}
+
+	protected char getScannedLevelSymbol(){
+		return mLevelSymbol;
+	}
+
+	/*
+	 * Scans line of layout "MM-dd HH:mm:ss.SSS  PID  TID L TAG: MESSAGE" and stores offsets of fields.
+	 * Return false if line has any unexpected layout, so it should be parsed by LOG_ENTRY_PATTERN.
+	 */
+	private boolean scanThreadTimeLine(String line){
+		if (line != mHeaderLine && !scanLineHeader(line)){
+			return false;
+		}
+		mHeaderLine = null;
+		int length = mLength;
+
+		mTagEnd = NOT_PARSED;
+		for (int i = mTagStart; i < length; i++){
+			char character = line.charAt(i);
+			if (isLineTerminator(character)){
+				return false;
+			}
+			if (mTagEnd == NOT_PARSED && character == ':' && i + 1 < length && isSpace(line.charAt(i + 1))){
+				mTagEnd = i;
+				mMessageStart = skipSpaces(line, i + 1, length);
+			}
+		}
+
+		mMessageEnd = length;
+		return mTagEnd != NOT_PARSED;
+	}
+
+	/*Return length of line without one trailing line terminator, as it would be excluded by '$' of LOG_ENTRY_PATTERN.*/
+	private static int stripLineTerminator(String line){
+		int length = line.length();
+		if (line.endsWith("\r\n")){
+			return length - 2;
+		}
+		if (length > 0 && isLineTerminator(line.charAt(length - 1))){
+			return length - 1;
+		}
+		return length;
+	}
+
+	private static boolean isDatePrefix(String line){
+		return isDigit(line.charAt(0)) && isDigit(line.charAt(1)) && line.charAt(2) == '-' &&
+			   isDigit(line.charAt(3)) && isDigit(line.charAt(4)) && isSpace(line.charAt(5)) &&
+			   isDigit(line.charAt(6)) && isDigit(line.charAt(7)) && line.charAt(8) == ':' &&
+			   isDigit(line.charAt(9)) && isDigit(line.charAt(10)) && line.charAt(11) == ':' &&
+			   isDigit(line.charAt(12)) && isDigit(line.charAt(13)) && line.charAt(14) == '.';
+	}
+
+	/*Parse pid/tid directly from chars. Return NOT_PARSED if there is no digits or value could overflow int.*/
+	private static int parseId(String line, int start, int length){
+		int value = 0;
+		int pos = start;
+		while (pos < length && isDigit(line.charAt(pos))){
+			if (pos - start == MAX_ID_DIGITS){
+				return NOT_PARSED;
+			}
+			value = value * 10 + (line.charAt(pos) - '0');
+			pos++;
+		}
+		return pos == start ? NOT_PARSED : value;
+	}
+
+	private static int skipDigits(String line, int pos, int length){
+		while (pos < length && isDigit(line.charAt(pos))){
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int skipSpaces(String line, int pos, int length){
+		while (pos < length && isSpace(line.charAt(pos))){
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isDigit(char character){
+		return character >= '0' && character <= '9';
+	}
+
+	/*Same set of characters as '\s' in java.util.regex.*/
+	private static boolean isSpace(char character){
+		return character == ' ' || character == '\t' || character == '\n' ||
+			   character == '\u000B' || character == '\f' || character == '\r';
+	}
+
+	/*Characters, that are not matched by '.' in java.util.regex.*/
+	private static boolean isLineTerminator(char character){
+		return character == '\n' || character == '\r' || character == '\u0085' ||
+			   character == '\u2028' || character == '\u2029';
+	}
+
+	private static boolean isLevelSymbol(char character){
+		switch (character){
+			case 'V':
+			case 'D':
+			case 'I':
+			case 'W':
+			case 'E':
+			case 'A':
+			case 'F':
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
 }
@@ -1,7 +1,9 @@
 package com.logtracking.lib.internal;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 
 class LogProvider {
@@ -21,6 +23,27 @@ class LogProvider {
 	protected static final String SIZE_OF_LOG_BUFFER = " -g ";
 	protected static final String SET_DEFAULT_FILTER = " -s ";
 	protected static final String FORMAT = " -v ";
+	protected static final String BINARY_OUTPUT = " -B";
+	protected static final String PID_FILTER = " --pid=";
+	protected static final String UID_FILTER = " --uid=";
+	private static final String HELP = "--help";
+
+	private static final int BINARY_BUFFER_SIZE = 64 * 1024;
+
+	/*Usage of platform logcat, options are detected by it only once.*/
+	private static volatile String sUsage;
+
+	private static final LogSourceFactory LOGCAT_SOURCE_FACTORY = new LogSourceFactory() {
+		@Override
+		public LogSource openLogSource(boolean binaryOutput, String... arguments) throws IOException{
+			if (binaryOutput){
+				return new LogcatBinarySource(executeBinaryLogcat(arguments));
+			}
+			return new ThreadTimeLogSource(executeLogcat(arguments));
+		}
+	};
+
+	private static volatile LogSourceFactory sLogSourceFactory = LOGCAT_SOURCE_FACTORY;
 	
 	/**
 	 * Display all metadata fields and separate messages with blank lines.
@@ -58,13 +81,92 @@ class LogProvider {
 	protected static final String THREADTIME_FORMAT = "threadtime";
 	
 	protected static BufferedReader executeLogcat(String... arguments) throws IOException{
+        Process process = startLogcat(arguments);
+        return new BufferedReader(new InputStreamReader(process.getInputStream()));
+	}
+
+	/**
+	 * Execute logcat with {@link #BINARY_OUTPUT} argument, which is added to given arguments.
+	 *
+	 * @return stream of binary log entries, which should be read by {@link LogcatBinaryDecoder}.
+	 */
+	protected static InputStream executeBinaryLogcat(String... arguments) throws IOException{
+		String[] binaryArguments = new String[arguments.length + 1];
+		System.arraycopy(arguments, 0, binaryArguments, 0, arguments.length);
+		binaryArguments[arguments.length] = BINARY_OUTPUT;
+
+		Process process = startLogcat(binaryArguments);
+		return new BufferedInputStream(process.getInputStream(), BINARY_BUFFER_SIZE);
+	}
+
+	/**
+	 * Open source of logcat records by current factory, which executes logcat by default.
+	 */
+	protected static LogSource openLogSource(boolean binaryOutput, String... arguments) throws IOException{
+		return sLogSourceFactory.openLogSource(binaryOutput, arguments);
+	}
+
+	/**
+	 * Replace logcat by other source of records, e.g. replayed or synthetic log. Affects log saving tasks,
+	 * which are started after this call.
+	 *
+	 * @param factory factory of sources, or null to read records from logcat again.
+	 */
+	static void setLogSourceFactory(LogSourceFactory factory){
+		sLogSourceFactory = factory != null ? factory : LOGCAT_SOURCE_FACTORY;
+	}
+
+	/**
+	 * @return true if platform logcat filters records by pid itself (Android 7.0 and higher).
+	 */
+	protected static boolean isPidFilterSupported(){
+		return getUsage().contains(PID_FILTER.trim());
+	}
+
+	/**
+	 * @return true if platform logcat filters records by uid itself.
+	 */
+	protected static boolean isUidFilterSupported(){
+		return getUsage().contains(UID_FILTER.trim());
+	}
+
+	private static Process startLogcat(String... arguments) throws IOException{
         StringBuilder commandLine = new StringBuilder(LOGCAT);
         if (null != arguments){
         	for (String argument : arguments)
         		commandLine.append(argument);
         }
-        
-        Process process = Runtime.getRuntime().exec(commandLine.toString());
-        return new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+        return Runtime.getRuntime().exec(commandLine.toString());
+	}
+
+	private static String getUsage(){
+		String usage = sUsage;
+		if (usage == null){
+			usage = readUsage();
+			sUsage = usage;
+		}
+		return usage;
+	}
+
+	/*Logcat of every version prints usage for unknown option, so usage is read even if there is no help option.*/
+	private static String readUsage(){
+		StringBuilder usage = new StringBuilder();
+		try {
+			Process process = new ProcessBuilder(LOGCAT, HELP).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null){
+					usage.append(line).append('\n');
+				}
+			} finally {
+				reader.close();
+				process.destroy();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return usage.toString();
 	}
 }
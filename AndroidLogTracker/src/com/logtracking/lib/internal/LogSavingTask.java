@@ -1,35 +1,40 @@
 package com.logtracking.lib.internal;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileDescriptor;
 import java.io.IOException;
-import java.text.ParseException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.logtracking.lib.api.Log;
 import com.logtracking.lib.api.config.LogConfiguration;
 
 import static com.logtracking.lib.internal.LogProvider.*;
 
+/*
+ * Reader thread of task parses logcat output, or takes own records from in-process queue, and passes them
+ * to log storage, which is configured by task. Storage writes them in log file by its own writer thread.
+ */
 class LogSavingTask extends BaseLogTask {
 
-	private static final int MAX_BUFFER_SIZE = 100 * 1024;
-		
+	private static final String FILE_CREATION_TIME = "log_file_creation_time";
+
 	private List<LogModel> mPrintedCrashStack;
-	private StringBuffer mBuffer;
-	private LogParser mLogParser;
 	private LogFilter mLogFilter;
-	
+	private LogCaptureEngine mCaptureEngine;
+	private InProcessLogQueue mInProcessLogQueue;
+	private LogSegmentManager mSegmentManager;
+
+	/*Storage is created before task is executed, when log file and mode of task are set.*/
+	private volatile LogStorage mStorage;
 	private volatile boolean mCanWriteInFile;
 	private boolean  mSaveDump;
 	
 	public LogSavingTask(LogContext logContext) {
 		super(logContext);
-		mLogParser = new LogParser();
-		mBuffer = new StringBuffer();
-		mLogFile = new File(mLogConfiguration.getLogFileName() + mFileFormatter.getFileExtension());
+		mLogFile = new File(getCurrentLogFileName());
 		mLogFilter = LogFilter.getInstance();
+		mInProcessLogQueue = InProcessLogQueue.getInstance();
+		mSegmentManager = new LogSegmentManager(new File(mLogConfiguration.getLogFileName()), mLogConfiguration.getRetentionPolicy());
 		mCanWriteInFile = true;
 	}
 	
@@ -39,28 +44,48 @@ class LogSavingTask extends BaseLogTask {
 	
 	public void setCaWriteInFile(boolean canWriteInFile){
 		mCanWriteInFile = canWriteInFile;
+		LogStorage storage = mStorage;
+		if (storage != null){
+			storage.setCanWriteInFile(canWriteInFile);
+		}
 	}
 	
 	public void setCrashStack(List<LogModel> crashStack){
 		mPrintedCrashStack = crashStack;
 	}
+
+	/**
+	 * @return count of log lines, that were read from logcat, but were not written in log file.
+	 */
+	public long getDroppedLinesCount(){
+		LogStorage storage = mStorage;
+		return storage != null ? storage.getDroppedRecordsCount() : 0;
+	}
+
+	/**
+	 * @return count of log lines, that were read from logcat, but were rejected by pid or level filter before parsing.
+	 */
+	public long getSkippedLinesCount(){
+		LogCaptureEngine captureEngine = mCaptureEngine;
+		return captureEngine != null ? captureEngine.getSkippedRecordsCount() : 0;
+	}
 	
+	/*Writes all collected records with crash stack, if it is set, from calling thread.*/
 	public void flush(){
-		try {
-            writeCrashToBuffer();
-			writeBufferToFile();
-			FileDescriptor descriptor = mRandomAccessFile.getFD();
-			descriptor.sync();
-		} catch (IOException e) {
-			e.printStackTrace();
+		LogStorage storage = mStorage;
+		if (storage != null){
+			storage.flush(takeCrashStack());
 		}
 	}
 	
 	@Override
 	protected void onPreExecute() {
 		super.onPreExecute();
+		mStorage = createStorage();
+		mStorage.setCanWriteInFile(mCanWriteInFile);
+		mCaptureEngine = new LogCaptureEngine(mLogFilter, mStorage);
 		try {
-			if (!mSaveDump){
+			if (!mSaveDump && !isInProcessCapture()){
 				LogProvider.executeLogcat(LogProvider.CLEAR_ENTIRE_LOGS);
 			}
 		} catch (IOException e) {
@@ -72,34 +97,11 @@ class LogSavingTask extends BaseLogTask {
 	protected File doInBackground(Void... arg) {
 		try{
 			
-			createNewLogFile();
+			mStorage.open();
 			
-        	String shellArguments = prepareShellArguments();
-            BufferedReader bufferedReader = LogProvider.executeLogcat(shellArguments);
-            
-            String line;
+			saveRecords();
             
-            while ( (line = bufferedReader.readLine()) != null ){ 
-            	
-            		if (mBuffer.length() >= MAX_BUFFER_SIZE){
-            			
-            			if (mCanWriteInFile){
-                			writeBufferToFile();
-                			if (needRotateLogFile()){
-                				rotateLogFile();
-                			}
-            			} else {
-                            //TODO : change this part : buffer should be save in temp file,not just cleared!!!
-            				clearBuffer();
-            			}
-            			
-            		} else {
-            			writeLogRecordToBuffer(line);
-            		}
-            } 
-            
-            writeBufferToFile();
-            writeCrashToBuffer();
+            mStorage.writeRemainingRecords(takeCrashStack());
             
             return mSaveDump ? packLogDumpInArchive() : mLogFile;
 			
@@ -107,22 +109,94 @@ class LogSavingTask extends BaseLogTask {
             e.printStackTrace();
             return null;
         } finally {
-        	closeAccessToFile();
+        	mStorage.close();
         }
 	}
 	
 	@Override
 	protected void onCancelled() {
+		/*Remaining records are written by task thread, which finishes saving, when it is interrupted.*/
+		mStorage.close();
+		super.onCancelled();
+	}
+
+	/*
+	 * In append-only and binary modes file has no envelope, it is written by ReportPreparationTask, and in ring buffer
+	 * mode file is mapped. Log dump is packed in report right away, so it is always written in text format with envelope
+	 * and it is neither rotated, nor indexed.
+	 */
+	private LogStorage createStorage(){
+		LogStorage.Builder builder = new LogStorage.Builder(mLogFile, mFileFormatter)
+				.setFlushPolicy(mLogConfiguration.getFlushPolicy())
+				.setBackPressurePolicy(mLogConfiguration.getBackPressurePolicy())
+				.setEnvelope(mReportMessage, mLogConfiguration.getMetaData());
+		if (mSaveDump){
+			return builder.build();
+		}
+
+		if (mLogConfiguration.getLogSavingMode() == LogConfiguration.LogSavingMode.SAVE_IN_RING_BUFFER){
+			builder.setRingBufferSize(mLogConfiguration.getRingBufferSize());
+		} else {
+			builder.setBinary(mLogConfiguration.getLogFileFormat() == LogConfiguration.LogFileFormat.BINARY)
+					.setAppendOnly(mLogConfiguration.isAppendOnlyLogFile())
+					.setRotation(mSegmentManager, getRotationSize(), getRotationTime());
+		}
+		return builder.setTimeIndexed(true)
+				.setCreationTimeStore(new LogStorage.CreationTimeStore() {
+					@Override
+					public void saveCreationTime(long time) {
+						mPreferences.saveLong(FILE_CREATION_TIME, time);
+					}
+
+					@Override
+					public long getCreationTime(long defaultTime) {
+						return mPreferences.getLong(FILE_CREATION_TIME, defaultTime);
+					}
+				})
+				.build();
+	}
+
+	private long getRotationSize(){
+		return mLogConfiguration.getLogFileRotationType() == LogConfiguration.LogFileRotationType.ROTATION_BY_SIZE ?
+			   mLogConfiguration.getLogFileRotationSize() : LogStorage.NO_ROTATION;
+	}
+
+	private long getRotationTime(){
+		return mLogConfiguration.getLogFileRotationType() == LogConfiguration.LogFileRotationType.ROTATION_BY_TIME ?
+			   mLogConfiguration.getLogFileRotationTime() : LogStorage.NO_ROTATION;
+	}
+
+	/*Crash stack is written only once, by flush or at the end of saving.*/
+	private List<LogModel> takeCrashStack(){
+		List<LogModel> crashStack = mPrintedCrashStack;
+		mPrintedCrashStack = null;
+		return crashStack;
+	}
+
+	private void saveRecords() throws IOException{
+		LogSource source = openLogSource();
 		try {
-			writeBufferToFile();
-		} catch (IOException e) {
-			e.printStackTrace();
+			mCaptureEngine.capture(source);
+		} finally {
+			source.close();
 		}
-		closeAccessToFile();
-		super.onCancelled();
 	}
-	
-	
+
+	/*Records of own process are taken from in-process queue, until task is cancelled and its thread is interrupted.*/
+	private LogSource openLogSource() throws IOException{
+		if (isInProcessCapture()){
+			return new InProcessLogSource(mInProcessLogQueue,
+										TimeUnit.MILLISECONDS.toNanos(mLogConfiguration.getFlushPolicy().getMaxLatency()));
+		}
+
+        return LogProvider.openLogSource(mLogConfiguration.isLogcatBinaryOutput(), prepareShellArguments());
+	}
+
+	/*Own records could be taken in process only for continuous saving, logcat dump contains records written before start.*/
+	private boolean isInProcessCapture(){
+		return mLogConfiguration.isFilterOnlyOwnRecord() && !mSaveDump;
+	}
+
 	private String prepareShellArguments(){
         StringBuilder arguments = new StringBuilder();
 
@@ -132,6 +206,7 @@ class LogSavingTask extends BaseLogTask {
 
         arguments.append(FORMAT);
         arguments.append(THREADTIME_FORMAT);
+        arguments.append(prepareProcessFilterArgument());
 
         if(mLogConfiguration.getTagFilter().size()>0) {
 
@@ -155,82 +230,28 @@ class LogSavingTask extends BaseLogTask {
 
     	return arguments.toString();
 	}
-	
-	private boolean needRotateLogFile(){
-		LogConfiguration.LogFileRotationType rotationType = mLogConfiguration.getLogFileRotationType();
-		switch (rotationType) {
-		
-			case ROTATION_BY_SIZE:
-				return mLogFile.length() >= mLogConfiguration.getLogFileRotationSize();
-			
-			case ROTATION_BY_TIME:
-				return System.currentTimeMillis() - mFileCreationTime >= mLogConfiguration.getLogFileRotationTime();
-				
-			case NONE:
-				return false;
-				
-			default:
-				return false;
-		}
-		
-	}
-	
-	private void rotateLogFile() throws IOException{
-		String previousTempFileName = mPreferences.getString(TEMP_FILE_NAME, null);
-		if (previousTempFileName != null){
-			File previousTempFile = new File(previousTempFileName);
-			previousTempFile.delete();
-		}
-		
-		String tempFileNamePrefix = TEMP_FILE_PREFIX + System.currentTimeMillis();
-		String tempLogFilePath = mLogConfiguration.getLogFileName() + tempFileNamePrefix + mFileFormatter.getFileExtension();
-		mLogFile.renameTo(new File(tempLogFilePath));
 
-        mPreferences.saveString(TEMP_FILE_NAME, tempLogFilePath);
-
-		closeAccessToFile();
-		createNewLogFile();
-	}
-	
-	private void writeBufferToFile() throws IOException{
-		if (!mLogFile.exists()){
-			createNewLogFile();
-		}
-		
-		seekFilePointerBeforeCloseTags();
-		mRandomAccessFile.writeBytes(mBuffer.toString());
-		writeClosingTags();
-		clearBuffer();
-	}
-	
-	private void clearBuffer(){
-		mBuffer.delete(0, mBuffer.length());
-	}
-	
-	private void writeCrashToBuffer(){
-		if (mPrintedCrashStack == null)
-			return;
-		for (LogModel record : mPrintedCrashStack){
-			appendRecordToBuffer(record);
+	/*
+	 * Package filter is passed to logcat, if platform logcat supports it, so records of other processes are not even
+	 * written to pipe. Records, passed by logcat, are still checked by package filter.
+	 */
+	private String prepareProcessFilterArgument(){
+		if (mLogFilter.isOnlyOwnProcessFiltered() && isPidFilterSupported()){
+			return PID_FILTER + android.os.Process.myPid();
 		}
-	}
-	
-	private void appendRecordToBuffer(LogModel record){
-		mBuffer.append(mFileFormatter.formatLogRecord(record));
-		mBuffer.append(LINE_SEPARATOR);
-	}
-	
-	private void writeLogRecordToBuffer(String line) throws IOException{
-		try {
-			LogModel record = mLogParser.parseLogRecord(line);
-			record.setPackageName(mLogFilter.packageNameByPid(record.getPid()));
-			boolean needToFilter = mLogFilter.filterAvailable();
-			if (!needToFilter || mLogFilter.passFilterRecord(record)) {
-					appendRecordToBuffer(record);
+
+		int[] uidFilter = mLogFilter.getUidFilter();
+		if (uidFilter != null && isUidFilterSupported()){
+			StringBuilder argument = new StringBuilder(UID_FILTER);
+			for (int i = 0; i < uidFilter.length; i++){
+				if (i > 0){
+					argument.append(',');
+				}
+				argument.append(uidFilter[i]);
 			}
-		} catch (ParseException e) {
-			e.printStackTrace();
+			return argument.toString();
 		}
+		return "";
 	}
 	
 	private File packLogDumpInArchive() throws IOException{
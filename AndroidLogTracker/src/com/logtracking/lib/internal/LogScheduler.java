@@ -0,0 +1,316 @@
+package com.logtracking.lib.internal;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Library-wide scheduler of background work. Work is split in lanes, every lane has its own bounded pool of daemon threads
+ * with its own priority and bounded queue, so e.g. compression of report never delays capture of log messages.
+ * Idle threads of lane are stopped after keep alive time, so scheduler doesn't keep threads, while there is no work.
+ * Lane is created again on first use after {@link #shutdown(long)}.
+ * Task, rejected by full lane, is never dropped silently : it is run by calling thread on lanes, which are used only
+ * from background threads, otherwise {@link RejectedExecutionException} is thrown, so caller could fail its work.
+ * Rejected tasks are counted, statistics of lanes are published by {@link LogMetrics}.
+ * Thread safe.
+ */
+final class LogScheduler {
+
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	enum Lane {
+
+		/*Reading of logcat, which runs while log is saved, and log dumps. Started from UI thread, so rejection fails task.*/
+		CAPTURE(4, 4, Thread.NORM_PRIORITY, false),
+
+		/*Preparation of report archives. Started from UI thread, so rejection fails report.*/
+		REPORT(2, 16, Thread.NORM_PRIORITY - 1, false),
+
+		/*Compression of report entries, submitted only from background threads, so caller could do work of full lane.*/
+		COMPRESSION(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 64, Thread.MIN_PRIORITY, true),
+
+		/*Sending of reports. Started from UI thread, where network is not allowed, so rejection fails sending.*/
+		UPLOAD(3, 16, Thread.NORM_PRIORITY - 1, false),
+
+		/*
+		 * Maintenance of log segments, refresh of process list and saving of snapshots. These tasks are short
+		 * and should not be lost, so caller does work of full lane : snapshot is saved in UI thread then.
+		 */
+		MAINTENANCE(2, 64, Thread.MIN_PRIORITY, true);
+
+		final int mThreadsCount;
+		final int mQueueLimit;
+		final int mPriority;
+		final boolean mCallerRunsWhenFull;
+
+		Lane(int threadsCount, int queueLimit, int priority, boolean callerRunsWhenFull){
+			mThreadsCount = threadsCount;
+			mQueueLimit = queueLimit;
+			mPriority = priority;
+			mCallerRunsWhenFull = callerRunsWhenFull;
+		}
+	}
+
+	/**
+	 * Statistics of lane at some moment. Times are in nanoseconds.
+	 * Object of {@link LaneStatistics} is immutable.
+	 */
+	static final class LaneStatistics {
+
+		final int mActiveCount;
+		final int mQueuedCount;
+		final long mCompletedCount;
+		final long mRejectedCount;
+		final long mAverageWaitTime;
+		final long mMaxWaitTime;
+		final long mAverageRunTime;
+
+		LaneStatistics(int activeCount, int queuedCount, long completedCount, long rejectedCount,
+					   long averageWaitTime, long maxWaitTime, long averageRunTime){
+			mActiveCount = activeCount;
+			mQueuedCount = queuedCount;
+			mCompletedCount = completedCount;
+			mRejectedCount = rejectedCount;
+			mAverageWaitTime = averageWaitTime;
+			mMaxWaitTime = maxWaitTime;
+			mAverageRunTime = averageRunTime;
+		}
+
+		@Override
+		public String toString(){
+			return "active=" + mActiveCount + " queued=" + mQueuedCount + " completed=" + mCompletedCount +
+				   " rejected=" + mRejectedCount + " avgWaitNs=" + mAverageWaitTime + " maxWaitNs=" + mMaxWaitTime +
+				   " avgRunNs=" + mAverageRunTime;
+		}
+	}
+
+	/*Guarded by class. Executor of lane is created on first use.*/
+	private static final Map<Lane, LaneExecutor> sExecutors = new EnumMap<Lane, LaneExecutor>(Lane.class);
+
+	/**
+	 * Cannot be instantiated
+	 */
+	private LogScheduler(){
+	}
+
+	/**
+	 * @return executor of given lane. Its execute method throws {@link RejectedExecutionException},
+	 * if lane is full and doesn't allow caller to run task, or if executor was shut down.
+	 */
+	static ExecutorService getExecutor(Lane lane){
+		return getLaneExecutor(lane);
+	}
+
+	private static synchronized LaneExecutor getLaneExecutor(Lane lane){
+		LaneExecutor executor = sExecutors.get(lane);
+		if (executor == null || executor.isShutdown()){
+			executor = new LaneExecutor(lane);
+			sExecutors.put(lane, executor);
+		}
+		return executor;
+	}
+
+	/**
+	 * @return executor, which runs tasks on given lane one by one, in order of submission.
+	 * Lane should allow caller to run task, so task is never lost, when lane is full.
+	 */
+	static Executor newSerialExecutor(Lane lane){
+		if (!lane.mCallerRunsWhenFull)
+			throw new IllegalArgumentException("Serial executor needs lane, where caller runs task when lane is full : " + lane);
+		return new SerialExecutor(lane);
+	}
+
+	/**
+	 * @return statistics of every lane, which was used since start or last shutdown.
+	 */
+	static synchronized Map<Lane, LaneStatistics> getStatistics(){
+		Map<Lane, LaneStatistics> statistics = new EnumMap<Lane, LaneStatistics>(Lane.class);
+		for (Map.Entry<Lane, LaneExecutor> entry : sExecutors.entrySet()){
+			statistics.put(entry.getKey(), entry.getValue().getStatistics());
+		}
+		return statistics;
+	}
+
+	/**
+	 * Stop accepting tasks and wait until already accepted tasks are finished, but not longer than given time.
+	 * Tasks, which are still running after this time, are interrupted. Lanes are created again on next use.
+	 *
+	 * @return true if all tasks were finished in time.
+	 */
+	static boolean shutdown(long timeoutMillis) throws InterruptedException{
+		LaneExecutor[] executors;
+		synchronized (LogScheduler.class){
+			executors = sExecutors.values().toArray(new LaneExecutor[sExecutors.size()]);
+			sExecutors.clear();
+		}
+
+		for (LaneExecutor executor : executors){
+			executor.shutdown();
+		}
+
+		boolean terminated = true;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (LaneExecutor executor : executors){
+			if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)){
+				executor.shutdownNow();
+				terminated = false;
+			}
+		}
+		return terminated;
+	}
+
+	private static final class LaneExecutor extends ThreadPoolExecutor {
+
+		private final Lane mLane;
+		private final AtomicLong mRejectedCount = new AtomicLong();
+		private final AtomicLong mStartedCount = new AtomicLong();
+		private final AtomicLong mTotalWaitTime = new AtomicLong();
+		private final AtomicLong mMaxWaitTime = new AtomicLong();
+		private final AtomicLong mFinishedCount = new AtomicLong();
+		private final AtomicLong mTotalRunTime = new AtomicLong();
+
+		LaneExecutor(Lane lane){
+			super(lane.mThreadsCount, lane.mThreadsCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				  new ArrayBlockingQueue<Runnable>(lane.mQueueLimit), new LaneThreadFactory(lane), new AbortPolicy());
+			mLane = lane;
+			allowCoreThreadTimeOut(true);
+		}
+
+		/*
+		 * Task, rejected by full lane, is run by caller or rejection is thrown to caller, it is never dropped.
+		 * Task, rejected by executor, which was shut down, is always thrown to caller, no work is done after shutdown.
+		 */
+		@Override
+		public void execute(Runnable command){
+			try {
+				super.execute(new TimedTask(command, this));
+			} catch (RejectedExecutionException e) {
+				mRejectedCount.incrementAndGet();
+				if (!mLane.mCallerRunsWhenFull || isShutdown())
+					throw e;
+				command.run();
+			}
+		}
+
+		void onStarted(long waitTime){
+			mStartedCount.incrementAndGet();
+			mTotalWaitTime.addAndGet(waitTime);
+			long maxWaitTime;
+			while (waitTime > (maxWaitTime = mMaxWaitTime.get()) && !mMaxWaitTime.compareAndSet(maxWaitTime, waitTime));
+		}
+
+		void onFinished(long runTime){
+			mFinishedCount.incrementAndGet();
+			mTotalRunTime.addAndGet(runTime);
+		}
+
+		LaneStatistics getStatistics(){
+			long startedCount = mStartedCount.get();
+			long finishedCount = mFinishedCount.get();
+			return new LaneStatistics(getActiveCount(), getQueue().size(), finishedCount, mRejectedCount.get(),
+									  startedCount > 0 ? mTotalWaitTime.get() / startedCount : 0, mMaxWaitTime.get(),
+									  finishedCount > 0 ? mTotalRunTime.get() / finishedCount : 0);
+		}
+	}
+
+	/*Measures time of task in queue and time of its run.*/
+	private static final class TimedTask implements Runnable {
+
+		private final Runnable mTask;
+		private final LaneExecutor mExecutor;
+		private final long mSubmitTime;
+
+		TimedTask(Runnable task, LaneExecutor executor){
+			mTask = task;
+			mExecutor = executor;
+			mSubmitTime = System.nanoTime();
+		}
+
+		@Override
+		public void run(){
+			long startTime = System.nanoTime();
+			mExecutor.onStarted(startTime - mSubmitTime);
+			try {
+				mTask.run();
+			} finally {
+				mExecutor.onFinished(System.nanoTime() - startTime);
+			}
+		}
+	}
+
+	private static final class LaneThreadFactory implements ThreadFactory {
+
+		private final Lane mLane;
+		private final AtomicInteger mThreadNumber = new AtomicInteger();
+
+		LaneThreadFactory(Lane lane){
+			mLane = lane;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable){
+			Thread thread = new Thread(runnable, "LogScheduler-" + mLane.name() + "-" + mThreadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(mLane.mPriority);
+			return thread;
+		}
+	}
+
+	/*
+	 * Passes next task to lane only when previous one is finished. Task, rejected by full lane, is run by thread,
+	 * which passes it, outside of lock, so other tasks could be added meanwhile.
+	 */
+	private static final class SerialExecutor implements Executor {
+
+		private final Lane mLane;
+		/*Guarded by this.*/
+		private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+		private boolean mRunning;
+
+		SerialExecutor(Lane lane){
+			mLane = lane;
+		}
+
+		@Override
+		public void execute(final Runnable task){
+			boolean idle;
+			synchronized (this){
+				mTasks.offer(new Runnable() {
+					@Override
+					public void run(){
+						try {
+							task.run();
+						} finally {
+							scheduleNext();
+						}
+					}
+				});
+				idle = !mRunning;
+				mRunning = true;
+			}
+			if (idle){
+				scheduleNext();
+			}
+		}
+
+		private void scheduleNext(){
+			Runnable task;
+			synchronized (this){
+				task = mTasks.poll();
+				mRunning = task != null;
+			}
+			if (task != null){
+				getLaneExecutor(mLane).execute(task);
+			}
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package com.logtracking.lib.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+import com.logtracking.lib.api.config.LogRetentionPolicy;
+
+/**
+ * Manages rotated segments of log file : compresses them, keeps them within limits of retention policy
+ * and keeps on-disk index of time ranges of their records, so only segments of required time could be read.
+ * Rotated log file is named as log file with temp prefix and time of rotation, so segments are ordered by this time.
+ * Segment is compressed into partial file, which is renamed only when it is complete, so compressed segment
+ * is never read partially, and uncompressed file is removed after that.
+ * All changes of segments are done in background, one by one, so capture thread is never slowed down.
+ */
+class LogSegmentManager {
+
+	static final String TEMP_FILE_PREFIX = "_temp_";
+	static final String COMPRESSED_FILE_EXTENSION = ".gz";
+	private static final String PARTIAL_FILE_EXTENSION = ".part";
+	private static final String INDEX_FILE_SUFFIX = "_segments.idx";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/*Segments are changed one by one, with low priority, so capture and UI threads are not slowed down.*/
+	private static final Executor sExecutor = LogScheduler.newSerialExecutor(LogScheduler.Lane.MAINTENANCE);
+
+	/**
+	 * Time range of records of segment. Start time is unknown for segments, rotated before index was written.
+	 */
+	static class TimeRange {
+
+		static final long UNKNOWN_TIME = -1;
+
+		final long mStartTime;
+		final long mEndTime;
+
+		TimeRange(long startTime, long endTime){
+			mStartTime = startTime;
+			mEndTime = endTime;
+		}
+	}
+
+	private final File mLogDirectory;
+	private final String mLogFileName;
+	private final String mSegmentPrefix;
+	private final File mIndexFile;
+	private final LogRetentionPolicy mRetentionPolicy;
+
+	/**
+	 * @param logFile log file without extension, current log file and its segments are named after it.
+	 */
+	LogSegmentManager(File logFile, LogRetentionPolicy retentionPolicy){
+		mLogDirectory = logFile.getParentFile();
+		mLogFileName = logFile.getName();
+		mSegmentPrefix = mLogFileName + TEMP_FILE_PREFIX;
+		mIndexFile = new File(logFile.getPath() + INDEX_FILE_SUFFIX);
+		mRetentionPolicy = retentionPolicy;
+	}
+
+	/**
+	 * @return file, in which current log file is renamed, when it is rotated at given time. Segment keeps extension
+	 * of current log file, so it is merged according to its format.
+	 */
+	File getSegmentFile(File currentLogFile, long rotationTime){
+		String extension = currentLogFile.getName().substring(mLogFileName.length());
+		return new File(currentLogFile.getParentFile(), mSegmentPrefix + rotationTime + extension);
+	}
+
+	/**
+	 * Add rotated segment, which contains records of given time range, to index, compress it,
+	 * and remove the oldest segments over limits of retention policy.
+	 */
+	void addSegmentInBackground(final File segment, final long startTime, final long endTime){
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Map<String, TimeRange> index = readIndex();
+					index.put(segment.getName(), new TimeRange(startTime, endTime));
+					maintainSegments(index);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compress segments, which are not compressed yet, e.g. because process was killed, and remove the oldest segments
+	 * over limits of retention policy.
+	 */
+	void maintainSegmentsInBackground(){
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					maintainSegments(readIndex());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return rotated segments from the oldest to the newest. If segment was compressed, but its uncompressed file
+	 * is not removed yet, only compressed file is returned.
+	 */
+	List<File> listSegments(){
+		File[] files = mLogDirectory != null ? mLogDirectory.listFiles() : null;
+		if (files == null)
+			return new ArrayList<File>();
+
+		Map<String, File> segments = new LinkedHashMap<String, File>();
+		for (File file : files){
+			String name = file.getName();
+			if (!name.startsWith(mSegmentPrefix) || name.endsWith(PARTIAL_FILE_EXTENSION) ||
+				name.endsWith(LogTimeIndex.INDEX_FILE_EXTENSION))
+				continue;
+
+			String uncompressedName = getUncompressedName(name);
+			if (isCompressed(file) || !segments.containsKey(uncompressedName)){
+				segments.put(uncompressedName, file);
+			}
+		}
+
+		List<File> sortedSegments = new ArrayList<File>(segments.values());
+		Collections.sort(sortedSegments, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				long firstTime = getRotationTime(first);
+				long secondTime = getRotationTime(second);
+				return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+			}
+		});
+		return sortedSegments;
+	}
+
+	/**
+	 * @return rotated segments from the oldest to the newest, which could contain records not older than given time.
+	 */
+	List<File> listSegments(long fromTime){
+		List<File> segments = listSegments();
+		Map<String, TimeRange> index = readIndexQuietly();
+
+		List<File> requiredSegments = new ArrayList<File>();
+		for (File segment : segments){
+			if (getTimeRange(segment, index).mEndTime >= fromTime){
+				requiredSegments.add(segment);
+			}
+		}
+		return requiredSegments;
+	}
+
+	/**
+	 * @return time range of records of segment. If segment is not in index, only end time of range is known.
+	 */
+	TimeRange getTimeRange(File segment){
+		return getTimeRange(segment, readIndexQuietly());
+	}
+
+	/**
+	 * @return sidecar file of time index of segment. Compressed segment has index of its uncompressed records.
+	 */
+	static File getTimeIndexFile(File segment){
+		File uncompressedSegment = new File(segment.getParentFile(), getUncompressedName(segment.getName()));
+		return LogTimeIndex.getIndexFile(uncompressedSegment);
+	}
+
+	static boolean isCompressed(File segment){
+		return segment.getName().endsWith(COMPRESSED_FILE_EXTENSION);
+	}
+
+	static String getUncompressedName(String name){
+		return name.endsWith(COMPRESSED_FILE_EXTENSION) ?
+			   name.substring(0, name.length() - COMPRESSED_FILE_EXTENSION.length()) : name;
+	}
+
+	private TimeRange getTimeRange(File segment, Map<String, TimeRange> index){
+		TimeRange timeRange = index.get(getUncompressedName(segment.getName()));
+		return timeRange != null ? timeRange : new TimeRange(TimeRange.UNKNOWN_TIME, getRotationTime(segment));
+	}
+
+	/*Should be called only by background thread.*/
+	private void maintainSegments(Map<String, TimeRange> index) throws IOException{
+		for (File segment : listSegments()){
+			if (!isCompressed(segment)){
+				compress(segment);
+			} else {
+				/*Process could be killed after compressed segment was renamed, but before uncompressed one was removed.*/
+				new File(segment.getParentFile(), getUncompressedName(segment.getName())).delete();
+			}
+		}
+		applyRetentionPolicy(index);
+	}
+
+	private void compress(File segment) throws IOException{
+		File compressedSegment = new File(segment.getPath() + COMPRESSED_FILE_EXTENSION);
+		File partialSegment = new File(compressedSegment.getPath() + PARTIAL_FILE_EXTENSION);
+
+		InputStream input = new FileInputStream(segment);
+		try {
+			OutputStream output = new GZIPOutputStream(new FileOutputStream(partialSegment), BUFFER_SIZE);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int count;
+				while ((count = input.read(buffer)) > 0){
+					output.write(buffer, 0, count);
+				}
+			} finally {
+				output.close();
+			}
+		} catch (IOException e) {
+			partialSegment.delete();
+			throw e;
+		} finally {
+			input.close();
+		}
+
+		if (!partialSegment.renameTo(compressedSegment)){
+			partialSegment.delete();
+			throw new IOException("Unable to rename compressed segment " + partialSegment);
+		}
+		segment.delete();
+	}
+
+	/*
+	 * The newest segments are kept, while they fit in limits of count, total size and age, the oldest ones are removed.
+	 * Index keeps only ranges of kept segments.
+	 */
+	private void applyRetentionPolicy(Map<String, TimeRange> index) throws IOException{
+		List<File> segments = listSegments();
+		long oldestEndTime = System.currentTimeMillis() - mRetentionPolicy.getMaxAge();
+		Map<String, TimeRange> keptIndex = new HashMap<String, TimeRange>();
+		long totalSize = 0;
+		int keptSegmentsCount = 0;
+
+		for (int i = segments.size() - 1; i >= 0; i--){
+			File segment = segments.get(i);
+			TimeRange timeRange = getTimeRange(segment, index);
+			totalSize += segment.length();
+
+			if (keptSegmentsCount < mRetentionPolicy.getMaxSegmentsCount() &&
+				totalSize <= mRetentionPolicy.getMaxTotalSize() &&
+				timeRange.mEndTime >= oldestEndTime){
+
+				keptSegmentsCount++;
+				keptIndex.put(getUncompressedName(segment.getName()), timeRange);
+			} else {
+				segment.delete();
+				getTimeIndexFile(segment).delete();
+			}
+		}
+		writeIndex(keptIndex);
+	}
+
+	private Map<String, TimeRange> readIndexQuietly(){
+		try {
+			return readIndex();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new HashMap<String, TimeRange>();
+		}
+	}
+
+	/*Each line of index is name of uncompressed segment, start and end time of its records, separated by spaces.*/
+	private Map<String, TimeRange> readIndex() throws IOException{
+		Map<String, TimeRange> index = new HashMap<String, TimeRange>();
+		if (!mIndexFile.exists())
+			return index;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mIndexFile), UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null){
+				String[] fields = line.split(" ");
+				if (fields.length != 3)
+					continue;
+				try {
+					index.put(fields[0], new TimeRange(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+				} catch (NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return index;
+	}
+
+	/*Index is written in partial file and then renamed, so readers always see complete index.*/
+	private void writeIndex(Map<String, TimeRange> index) throws IOException{
+		File partialIndexFile = new File(mIndexFile.getPath() + PARTIAL_FILE_EXTENSION);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(partialIndexFile), UTF_8);
+		try {
+			for (Map.Entry<String, TimeRange> entry : index.entrySet()){
+				writer.write(entry.getKey() + " " + entry.getValue().mStartTime + " " + entry.getValue().mEndTime + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+
+		if (!partialIndexFile.renameTo(mIndexFile)){
+			partialIndexFile.delete();
+			throw new IOException("Unable to rename index of segments " + partialIndexFile);
+		}
+	}
+
+	/*Return time of rotation from name of segment, or 0 if name has no time.*/
+	private long getRotationTime(File segment){
+		String name = segment.getName();
+		int timeEnd = mSegmentPrefix.length();
+		while (timeEnd < name.length() && Character.isDigit(name.charAt(timeEnd))){
+			timeEnd++;
+		}
+		try {
+			return Long.parseLong(name.substring(mSegmentPrefix.length(), timeEnd));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
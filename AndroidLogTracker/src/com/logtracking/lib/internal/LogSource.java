@@ -0,0 +1,29 @@
+package com.logtracking.lib.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of records for {@link LogCaptureEngine} : logcat process, recorded log file, in-memory lines or
+ * in-process queue. Source, which decodes records from raw entries, checks pid and level of entry by header filter
+ * before entry is decoded, so rejected entries are skipped without building records.
+ * Source is read by one thread.
+ */
+interface LogSource extends Closeable {
+
+	/**
+	 * Filter of pid and level of entry, applied before entry is decoded into record.
+	 */
+	interface HeaderFilter {
+
+		boolean passHeader(int pid, char levelSymbol);
+	}
+
+	/**
+	 * Read next record, which passes header filter. Record could be decoded into given recycled model,
+	 * so returned record is valid only until next read.
+	 *
+	 * @return next record, or null if source is ended.
+	 */
+	LogModel read(LogModel recycledRecord, HeaderFilter headerFilter) throws IOException;
+}
@@ -0,0 +1,17 @@
+package com.logtracking.lib.internal;
+
+import java.io.IOException;
+
+/**
+ * Opens source of logcat records for {@link LogSavingTask}. By default records are read from logcat process,
+ * other factory could be set by {@link LogProvider#setLogSourceFactory(LogSourceFactory)}, e.g. to replay
+ * captured log or to generate synthetic log, while whole saving pipeline is tested.
+ */
+interface LogSourceFactory {
+
+	/**
+	 * @param binaryOutput true if records should be read from binary logcat output.
+	 * @param arguments arguments of logcat command.
+	 */
+	LogSource openLogSource(boolean binaryOutput, String... arguments) throws IOException;
+}
@@ -0,0 +1,857 @@
+package com.logtracking.lib.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.logtracking.lib.api.config.BackPressurePolicy;
+import com.logtracking.lib.api.config.LogFlushPolicy;
+import com.logtracking.lib.internal.format.LogFileFormatter;
+
+/*
+ * Storage of captured records in log file, which doesn't depend on Android platform, so log saving task only adapts
+ * it to configuration and the same storage is run on JVM by stress runner.
+ * Capture thread fills current buffer, while writer thread writes other buffer in log file.
+ * Buffers are exchanged through atomic references instead of storage monitor. Current buffer is taken out of its reference
+ * by thread, which owns it for a moment : capture thread for appending record, writer for handing over expired buffer,
+ * or thread of flush. Filled buffer is handed over to writer and drained buffer is given back through other references.
+ * Only flush writes log file while it owns current buffer, so capture thread waits for writer only if both buffers
+ * are busy and back-pressure policy says to block.
+ */
+class LogStorage implements LogCaptureEngine.RecordSink {
+
+	static final long NO_ROTATION = -1;
+
+	private static final String LINE_SEPARATOR = LogFileFormatter.LINE_SEPARATOR;
+	private static final String SPILL_FILE_EXTENSION = ".spill";
+
+	/*Capture thread rechecks free buffer after this timeout, even if writer didn't wake it up.*/
+	private static final long BUFFER_WAITING_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/*Current buffer is owned only for short time, so thread, which waits for it, rechecks it often.*/
+	private static final long BUFFER_OWNER_WAITING_TIMEOUT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/**
+	 * Keeps creation time of log file, which is not kept by file system, so file, created by previous run,
+	 * is rotated by time as well.
+	 */
+	interface CreationTimeStore {
+
+		void saveCreationTime(long time);
+
+		/**
+		 * @return saved creation time, or given default time if it was never saved.
+		 */
+		long getCreationTime(long defaultTime);
+	}
+
+	/**
+	 * Listens to writer of log file. It is notified while writer owns filled buffer, so both buffers are busy,
+	 * e.g. tests hold writer there to apply back-pressure policy.
+	 */
+	interface WriterListener {
+
+		/*Called under file lock, after filled buffer was taken for writing and before it is written.*/
+		void onFilledBufferTaken();
+	}
+
+	/**
+	 * Configuration of storage. Log file is written in text format with document envelope, unless other mode is set.
+	 */
+	static final class Builder {
+
+		private final File mLogFile;
+		private final LogFileFormatter mFormatter;
+		private boolean mBinary;
+		private boolean mAppendOnly;
+		private int mRingBufferSize;
+		private String mReportMessage;
+		private Map<String,String> mMetaData = Collections.emptyMap();
+		private LogFlushPolicy mFlushPolicy = new LogFlushPolicy(64 * 1024, 500);
+		private BackPressurePolicy mBackPressurePolicy = BackPressurePolicy.BLOCK;
+		private long mRotationSize = NO_ROTATION;
+		private long mRotationTime = NO_ROTATION;
+		private LogSegmentManager mSegmentManager;
+		private boolean mTimeIndexed;
+		private CreationTimeStore mCreationTimeStore;
+		private WriterListener mWriterListener;
+
+		Builder(File logFile, LogFileFormatter formatter){
+			mLogFile = logFile;
+			mFormatter = formatter;
+		}
+
+		/*Records are encoded in binary format, file has no envelope.*/
+		Builder setBinary(boolean binary){
+			mBinary = binary;
+			return this;
+		}
+
+		/*Formatted records are only appended to file, one per line, file has no envelope.*/
+		Builder setAppendOnly(boolean appendOnly){
+			mAppendOnly = appendOnly;
+			return this;
+		}
+
+		/*Formatted records are kept in mapped ring buffer of given size, file has no envelope and is never rotated.*/
+		Builder setRingBufferSize(int ringBufferSize){
+			mRingBufferSize = ringBufferSize;
+			return this;
+		}
+
+		/*Report message and meta-data are written in envelope of document.*/
+		Builder setEnvelope(String reportMessage, Map<String,String> metaData){
+			mReportMessage = reportMessage;
+			mMetaData = metaData;
+			return this;
+		}
+
+		Builder setFlushPolicy(LogFlushPolicy flushPolicy){
+			mFlushPolicy = flushPolicy;
+			return this;
+		}
+
+		Builder setBackPressurePolicy(BackPressurePolicy backPressurePolicy){
+			mBackPressurePolicy = backPressurePolicy;
+			return this;
+		}
+
+		/*File is rotated by size or by time only if segment manager is set, which takes rotated segments.*/
+		Builder setRotation(LogSegmentManager segmentManager, long rotationSize, long rotationTime){
+			mSegmentManager = segmentManager;
+			mRotationSize = rotationSize;
+			mRotationTime = rotationTime;
+			return this;
+		}
+
+		/*Written blocks of records are indexed by time of their first record.*/
+		Builder setTimeIndexed(boolean timeIndexed){
+			mTimeIndexed = timeIndexed;
+			return this;
+		}
+
+		Builder setCreationTimeStore(CreationTimeStore creationTimeStore){
+			mCreationTimeStore = creationTimeStore;
+			return this;
+		}
+
+		Builder setWriterListener(WriterListener writerListener){
+			mWriterListener = writerListener;
+			return this;
+		}
+
+		LogStorage build(){
+			return new LogStorage(this);
+		}
+	}
+
+	private final File mLogFile;
+	private final LogFileFormatter mFormatter;
+	private final boolean mBinary;
+	private final boolean mAppendOnly;
+	private final int mRingBufferSize;
+	private final String mReportMessage;
+	private final Map<String,String> mMetaData;
+	private final BackPressurePolicy mBackPressurePolicy;
+	private final int mFlushSizeThreshold;
+	private final long mFlushMaxLatencyNanos;
+	private final long mRotationSize;
+	private final long mRotationTime;
+	private final LogSegmentManager mSegmentManager;
+	private final boolean mTimeIndexed;
+	private final CreationTimeStore mCreationTimeStore;
+	private final WriterListener mWriterListener;
+
+	/*Current buffer, it is null while it is owned by some thread, see acquireBuffer().*/
+	private final AtomicReference<Utf8RecordBuffer> mBuffer = new AtomicReference<Utf8RecordBuffer>();
+	private final AtomicReference<Utf8RecordBuffer> mFilledBuffer = new AtomicReference<Utf8RecordBuffer>();
+	private final AtomicReference<Utf8RecordBuffer> mFreeBuffer = new AtomicReference<Utf8RecordBuffer>();
+	private final AtomicLong mDroppedRecordsCount = new AtomicLong();
+	/*Time of appending first record to current buffer, accessed only by owner of current buffer.*/
+	private long mBufferStartTime;
+	private final BinaryLogEncoder mBinaryEncoder = new BinaryLogEncoder();
+
+	private volatile boolean mCanWriteInFile = true;
+
+	private volatile Thread mCaptureThread;
+	private LogWriterThread mWriterThread;
+
+	/*Guards log file, which is written by writer thread and flushed from other threads.*/
+	private final Object mFileLock = new Object();
+	/*Records are kept in buffers until log file is opened and after it is closed.*/
+	private boolean mOpened;
+	private RandomAccessFile mRandomAccessFile;
+	private long mFileCreationTime;
+
+	/*Guards spill file and hand over of filled buffer, so spilled records are never written after newer buffer.*/
+	private final Object mSpillLock = new Object();
+	private File mSpillFile;
+	private RandomAccessFile mSpillRandomAccessFile;
+	/*Time of the first record and offset in spill file of every spilled buffer, to index them when they are moved.*/
+	private final List<long[]> mSpilledBlocks = new ArrayList<long[]>();
+
+	private LogTimeIndex mTimeIndex;
+
+	private MappedRingBuffer mRingBuffer;
+
+	private LogStorage(Builder builder){
+		mLogFile = builder.mLogFile;
+		mFormatter = builder.mFormatter;
+		mBinary = builder.mBinary;
+		mAppendOnly = builder.mAppendOnly;
+		mRingBufferSize = builder.mRingBufferSize;
+		mReportMessage = builder.mReportMessage;
+		mMetaData = builder.mMetaData;
+		mBackPressurePolicy = builder.mBackPressurePolicy;
+		mFlushSizeThreshold = builder.mFlushPolicy.getSizeThreshold();
+		mFlushMaxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(builder.mFlushPolicy.getMaxLatency());
+		mRotationSize = builder.mRotationSize;
+		mRotationTime = builder.mRotationTime;
+		mSegmentManager = builder.mSegmentManager;
+		mTimeIndexed = builder.mTimeIndexed;
+		mCreationTimeStore = builder.mCreationTimeStore;
+		mWriterListener = builder.mWriterListener;
+		mBuffer.set(new Utf8RecordBuffer(mFlushSizeThreshold * 2));
+		mFreeBuffer.set(new Utf8RecordBuffer(mFlushSizeThreshold * 2));
+	}
+
+	File getLogFile(){
+		return mLogFile;
+	}
+
+	/**
+	 * @return count of records, that were passed to storage, but were not written in log file.
+	 */
+	long getDroppedRecordsCount(){
+		return mDroppedRecordsCount.get();
+	}
+
+	/*While records can't be written, filled buffers are dropped, e.g. while report is prepared from log file.*/
+	void setCanWriteInFile(boolean canWriteInFile){
+		mCanWriteInFile = canWriteInFile;
+	}
+
+	/**
+	 * Open log file and start writer thread. Calling thread becomes capture thread, which is the only one,
+	 * that writes records in storage.
+	 */
+	void open() throws IOException{
+		synchronized (mFileLock){
+			createNewLogFile();
+			mOpened = true;
+		}
+		if (mSegmentManager != null){
+			/*Segments, rotated before process was killed, could be left uncompressed.*/
+			mSegmentManager.maintainSegmentsInBackground();
+		}
+		mCaptureThread = Thread.currentThread();
+		mWriterThread = new LogWriterThread();
+		mWriterThread.start();
+	}
+
+	/*Record is encoded straight into current buffer, which is handed over to writer, when it is filled.*/
+	@Override
+	public void write(LogModel record) throws IOException{
+		Utf8RecordBuffer buffer = acquireBuffer();
+		try {
+			if (appendRecordToBuffer(record, buffer)){
+				buffer = handOverFilledBuffer(buffer);
+			}
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	/*Writes given records after all collected records from calling thread, while capture and writer threads wait for it.*/
+	void flush(List<LogModel> records){
+		Utf8RecordBuffer buffer = acquireBuffer();
+		try {
+			appendRecordsToBuffer(records, buffer);
+			synchronized (mFileLock){
+				writeBuffersToFile(buffer);
+				syncLogFile();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	/*Stop writer thread and write remaining records with given ones by calling thread.*/
+	void writeRemainingRecords(List<LogModel> records) throws IOException{
+		stopWriterThread();
+		Utf8RecordBuffer buffer = acquireBuffer();
+		try {
+			appendRecordsToBuffer(records, buffer);
+			writeRemainingBuffers(buffer);
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	void close(){
+		stopWriterThread();
+		synchronized (mFileLock){
+			mOpened = false;
+			closeAccessToFile();
+		}
+		closeSpillFile();
+	}
+
+	/*
+	 * In append-only and binary modes file is only opened at the end and in ring buffer mode file is mapped, envelope
+	 * of document is written by report preparation.
+	 */
+	private void createNewLogFile() throws IOException{
+		if (isRingBufferMode()){
+			mRingBuffer = MappedRingBuffer.open(mLogFile, mRingBufferSize);
+			return;
+		}
+
+		boolean hasRecords = mLogFile.length() > 0;
+		openLogFile();
+		if (mBinary && hasRecords){
+			cutTornBinaryRecord();
+		}
+		if (mAppendOnly && hasRecords){
+			cutTornLine();
+		}
+		if (mBinary && mRandomAccessFile.length() == 0){
+			mRandomAccessFile.write(BinaryLogEncoder.getFileHeader());
+		}
+		if (hasDocumentEnvelope() && mRandomAccessFile.length() == 0){
+			writeLines(DocumentEnvelope.getOpeningLines(mFormatter, mReportMessage, mMetaData));
+			writeLines(DocumentEnvelope.getClosingLines(mFormatter));
+		}
+		mRandomAccessFile.seek(mRandomAccessFile.length());
+
+		if (mTimeIndexed){
+			openTimeIndex(hasRecords);
+		}
+	}
+
+	/*
+	 * Last record could be written only partially, if application was killed during writing. Records, appended after it,
+	 * would be read as its continuation, so it is cut off. Only the last indexed block is decoded, if file is indexed.
+	 */
+	private void cutTornBinaryRecord() throws IOException{
+		long lastBlockOffset = LogTimeIndex.findOffset(mLogFile, Long.MAX_VALUE);
+		long completeRecordsEnd = BinaryLogDecoder.findCompleteRecordsEnd(mLogFile, lastBlockOffset);
+		if (completeRecordsEnd < mRandomAccessFile.length()){
+			mRandomAccessFile.setLength(completeRecordsEnd);
+		}
+	}
+
+	/*Last line could be written only partially as well, records appended after it would continue it.*/
+	private void cutTornLine() throws IOException{
+		long completeLinesEnd = ReportMergeHelper.findCompleteLinesEnd(mRandomAccessFile.getChannel());
+		if (completeLinesEnd < mRandomAccessFile.length()){
+			mRandomAccessFile.setLength(completeLinesEnd);
+		}
+	}
+
+	/*Create log file if it not exist yet and open it for writing, without writing anything.*/
+	private void openLogFile() throws IOException{
+		File parentDirectory = mLogFile.getAbsoluteFile().getParentFile();
+		if (!parentDirectory.exists()){
+			parentDirectory.mkdirs();
+		}
+
+		long now = System.currentTimeMillis();
+		if (!mLogFile.exists()){
+			mLogFile.createNewFile();
+			if (mCreationTimeStore != null){
+				mCreationTimeStore.saveCreationTime(now);
+			}
+		}
+		/*File could be created by previous run, so its creation time is always restored.*/
+		mFileCreationTime = mCreationTimeStore != null ? mCreationTimeStore.getCreationTime(now) : now;
+
+		mRandomAccessFile = new RandomAccessFile(mLogFile, "rw");
+	}
+
+	private void writeLines(List<String> lines) throws IOException{
+		mRandomAccessFile.write(DocumentEnvelope.getBytes(lines));
+	}
+
+	private void closeAccessToFile(){
+		if (mRandomAccessFile != null){
+			try {
+				mRandomAccessFile.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mRandomAccessFile = null;
+		}
+		if (mRingBuffer != null){
+			try {
+				mRingBuffer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mRingBuffer = null;
+		}
+		closeTimeIndex();
+	}
+
+	private void openTimeIndex(boolean hasRecords) throws IOException{
+		closeTimeIndex();
+		mTimeIndex = LogTimeIndex.open(mLogFile, hasRecords);
+	}
+
+	private void closeTimeIndex(){
+		if (mTimeIndex != null){
+			try {
+				mTimeIndex.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mTimeIndex = null;
+		}
+	}
+
+	/*Should be called with file lock held, before buffer is written at given offset.*/
+	private void indexBlock(long firstRecordTime, long offset) throws IOException{
+		if (mTimeIndex != null){
+			mTimeIndex.add(firstRecordTime, offset);
+		}
+	}
+
+	private boolean isRingBufferMode(){
+		return mRingBufferSize > 0;
+	}
+
+	private boolean hasDocumentEnvelope(){
+		return !mAppendOnly && !mBinary && !isRingBufferMode();
+	}
+
+	private void syncLogFile() throws IOException{
+		if (mRingBuffer != null){
+			mRingBuffer.force();
+		} else if (mRandomAccessFile != null){
+			mRandomAccessFile.getFD().sync();
+		}
+	}
+
+	private void stopWriterThread(){
+		LogWriterThread writerThread = mWriterThread;
+		if (writerThread == null || writerThread == Thread.currentThread())
+			return;
+
+		writerThread.finish();
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*Should be called by owner of given current buffer.*/
+	private void writeRemainingBuffers(Utf8RecordBuffer buffer) throws IOException{
+		synchronized (mFileLock){
+			writeBuffersToFile(buffer);
+		}
+	}
+
+	/*Called only by capture thread, which owns given filled buffer. Return buffer, which is current after hand over.*/
+	private Utf8RecordBuffer handOverFilledBuffer(Utf8RecordBuffer buffer) throws IOException{
+		if (mCanWriteInFile){
+			return handOverBuffer(buffer);
+		}
+		dropRecords(buffer);
+		return buffer;
+	}
+
+	private boolean needRotateLogFile(){
+		if (mSegmentManager == null || isRingBufferMode())
+			return false;
+
+		if (mRotationSize != NO_ROTATION && mLogFile.length() >= mRotationSize)
+			return true;
+		return mRotationTime != NO_ROTATION && System.currentTimeMillis() - mFileCreationTime >= mRotationTime;
+	}
+
+	/*Rotated file is indexed and compressed in background, so writer thread only renames it.*/
+	private void rotateLogFile() throws IOException{
+		long rotationTime = System.currentTimeMillis();
+		File segment = mSegmentManager.getSegmentFile(mLogFile, rotationTime);
+		closeAccessToFile();
+		mLogFile.renameTo(segment);
+		LogTimeIndex.getIndexFile(mLogFile).renameTo(LogTimeIndex.getIndexFile(segment));
+		mSegmentManager.addSegmentInBackground(segment, mFileCreationTime, rotationTime);
+		createNewLogFile();
+		LogMetrics.ROTATIONS.increment();
+	}
+
+	/*
+	 * Take current buffer out of its reference, so calling thread owns it until it is released. Buffer is owned
+	 * only for appending record, exchanging buffers or flush, so calling thread waits only for short time.
+	 */
+	private Utf8RecordBuffer acquireBuffer(){
+		Utf8RecordBuffer buffer;
+		while ((buffer = mBuffer.getAndSet(null)) == null){
+			LockSupport.parkNanos(this, BUFFER_OWNER_WAITING_TIMEOUT_NANOS);
+		}
+		return buffer;
+	}
+
+	/*Give back current buffer, which could be other buffer than acquired one, if buffers were exchanged.*/
+	private void releaseBuffer(Utf8RecordBuffer buffer){
+		mBuffer.set(buffer);
+	}
+
+	/*
+	 * Called only by capture thread, when its buffer is full. Filled buffer is exchanged with drained one,
+	 * otherwise back-pressure policy is applied. Writer thread drains and gives back buffers without owning current one,
+	 * so capture thread could wait for free buffer while it owns current buffer.
+	 */
+	private Utf8RecordBuffer handOverBuffer(Utf8RecordBuffer buffer) throws IOException{
+		Utf8RecordBuffer freeBuffer = mFreeBuffer.getAndSet(null);
+		if (freeBuffer == null){
+			freeBuffer = applyBackPressurePolicy(buffer);
+			if (freeBuffer == null)
+				return buffer;
+		}
+		return swapBuffer(buffer, freeBuffer);
+	}
+
+	/*
+	 * Called only by writer thread, when it has nothing to write. Current buffer is handed over, if its first record
+	 * waits longer then flush max latency. Return time in nanos to wait before next check, or 0 if buffer was handed over.
+	 */
+	private long handOverExpiredBuffer(){
+		if (!mCanWriteInFile)
+			return mFlushMaxLatencyNanos;
+
+		Utf8RecordBuffer buffer = mBuffer.getAndSet(null);
+		if (buffer == null)
+			return BUFFER_OWNER_WAITING_TIMEOUT_NANOS;
+
+		try {
+			if (buffer.getRecordsCount() == 0)
+				return mFlushMaxLatencyNanos;
+
+			long expirationDelay = mBufferStartTime + mFlushMaxLatencyNanos - System.nanoTime();
+			if (expirationDelay > 0)
+				return expirationDelay;
+
+			Utf8RecordBuffer freeBuffer = mFreeBuffer.getAndSet(null);
+			if (freeBuffer == null)
+				return mFlushMaxLatencyNanos;
+
+			buffer = swapBuffer(buffer, freeBuffer);
+			return 0;
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	/*Return free buffer, which becomes current one.*/
+	private Utf8RecordBuffer swapBuffer(Utf8RecordBuffer filledBuffer, Utf8RecordBuffer freeBuffer){
+		mFilledBuffer.set(filledBuffer);
+		LockSupport.unpark(mWriterThread);
+		return freeBuffer;
+	}
+
+	/*Return free buffer, or null if records of filled buffer were dropped or spilled, so it could be reused.*/
+	private Utf8RecordBuffer applyBackPressurePolicy(Utf8RecordBuffer buffer) throws IOException{
+		switch (mBackPressurePolicy) {
+
+			case DROP_OLDEST:
+				return dropFilledBuffer(buffer);
+
+			case SPILL_TO_DISK:
+				if (!isRingBufferMode() && spillBuffer(buffer)){
+					return null;
+				}
+				return waitFreeBuffer(buffer);
+
+			case BLOCK:
+			default:
+				return waitFreeBuffer(buffer);
+		}
+	}
+
+	private Utf8RecordBuffer waitFreeBuffer(Utf8RecordBuffer buffer) throws IOException{
+		Utf8RecordBuffer freeBuffer;
+		while ((freeBuffer = mFreeBuffer.getAndSet(null)) == null){
+			if (mWriterThread == null || mWriterThread.isFinished()){
+				/*Nobody else will drain filled buffer, so both buffers are written by capture thread and current one is reused.*/
+				writeRemainingBuffers(buffer);
+				return null;
+			}
+			LockSupport.parkNanos(this, BUFFER_WAITING_TIMEOUT_NANOS);
+		}
+		return freeBuffer;
+	}
+
+	/*
+	 * Spilled records should be written after buffer, which is already handed over to writer,
+	 * so if writer didn't take it yet, records can't be spilled. Only owner of current buffer hands over buffers,
+	 * so filled buffer can't be handed over while records are spilled by capture thread.
+	 */
+	private boolean spillBuffer(Utf8RecordBuffer buffer) throws IOException{
+		synchronized (mSpillLock){
+			if (mFilledBuffer.get() != null)
+				return false;
+
+			if (mSpillRandomAccessFile == null){
+				mSpillFile = new File(mLogFile.getAbsolutePath() + SPILL_FILE_EXTENSION);
+				mSpillRandomAccessFile = new RandomAccessFile(mSpillFile, "rw");
+				mSpillRandomAccessFile.setLength(0);
+			}
+			FileChannel spillChannel = mSpillRandomAccessFile.getChannel();
+			mSpilledBlocks.add(new long[]{buffer.getFirstRecordTime(), spillChannel.position()});
+			buffer.writeTo(spillChannel);
+			return true;
+		}
+	}
+
+	/*Should be called with file lock held.*/
+	private void writeBuffersToFile(Utf8RecordBuffer currentBuffer) throws IOException{
+		if (!mOpened)
+			return;
+
+		long startNanos = System.nanoTime();
+		try {
+			if (isRingBufferMode()){
+				writeBuffersToRingBuffer(currentBuffer);
+			} else {
+				writeBuffersToLogFile(currentBuffer);
+			}
+		} finally {
+			LogMetrics.FLUSH.stop(startNanos);
+		}
+	}
+
+	/*File could be removed meanwhile, e.g. by clearing log directory, then it is created again.*/
+	private void writeBuffersToLogFile(Utf8RecordBuffer currentBuffer) throws IOException{
+		if (!mLogFile.exists()){
+			closeAccessToFile();
+			createNewLogFile();
+		}
+
+		if (hasDocumentEnvelope()){
+			seekFilePointerBeforeCloseTags();
+		}
+		FileChannel fileChannel = mRandomAccessFile.getChannel();
+
+		Utf8RecordBuffer filledBuffer;
+		synchronized (mSpillLock){
+			filledBuffer = mFilledBuffer.getAndSet(null);
+			moveSpilledRecords(fileChannel);
+		}
+
+		try {
+			if (filledBuffer != null && mWriterListener != null){
+				mWriterListener.onFilledBufferTaken();
+			}
+			if (filledBuffer != null){
+				writeBlock(filledBuffer, fileChannel);
+			}
+			if (currentBuffer != null){
+				writeBlock(currentBuffer, fileChannel);
+			}
+		} finally {
+			if (filledBuffer != null){
+				recycleBuffer(filledBuffer);
+			}
+		}
+		if (hasDocumentEnvelope()){
+			writeLines(DocumentEnvelope.getClosingLines(mFormatter));
+		}
+	}
+
+	private void seekFilePointerBeforeCloseTags() throws IOException{
+		long closeTagsLength = DocumentEnvelope.getBytes(DocumentEnvelope.getClosingLines(mFormatter)).length;
+		mRandomAccessFile.seek(mRandomAccessFile.length() - closeTagsLength);
+	}
+
+	private void writeBlock(Utf8RecordBuffer buffer, FileChannel fileChannel) throws IOException{
+		if (buffer.getRecordsCount() == 0)
+			return;
+
+		indexBlock(buffer.getFirstRecordTime(), fileChannel.position());
+		LogMetrics.BYTES_WRITTEN.add(buffer.size());
+		buffer.writeTo(fileChannel);
+	}
+
+	/*Should be called with file lock held. Records are never spilled in ring buffer mode, copying to mapping is cheap enough.*/
+	private void writeBuffersToRingBuffer(Utf8RecordBuffer currentBuffer) throws IOException{
+		if (mRingBuffer == null){
+			createNewLogFile();
+		}
+
+		Utf8RecordBuffer filledBuffer = mFilledBuffer.getAndSet(null);
+		if (filledBuffer != null){
+			LogMetrics.BYTES_WRITTEN.add(filledBuffer.size());
+			filledBuffer.writeTo(mRingBuffer);
+			recycleBuffer(filledBuffer);
+		}
+		if (currentBuffer != null){
+			LogMetrics.BYTES_WRITTEN.add(currentBuffer.size());
+			currentBuffer.writeTo(mRingBuffer);
+		}
+	}
+
+	/*Should be called with spill lock held.*/
+	private void moveSpilledRecords(FileChannel fileChannel) throws IOException{
+		if (mSpillRandomAccessFile == null)
+			return;
+
+		FileChannel spillChannel = mSpillRandomAccessFile.getChannel();
+		long spilledBytesCount = spillChannel.size();
+		long position = fileChannel.position();
+		long transferredBytesCount = 0;
+
+		spillChannel.position(0);
+		while (transferredBytesCount < spilledBytesCount){
+			transferredBytesCount += fileChannel.transferFrom(spillChannel, position + transferredBytesCount,
+															  spilledBytesCount - transferredBytesCount);
+		}
+		fileChannel.position(position + spilledBytesCount);
+		spillChannel.truncate(0);
+		LogMetrics.BYTES_WRITTEN.add(spilledBytesCount);
+
+		for (long[] spilledBlock : mSpilledBlocks){
+			indexBlock(spilledBlock[0], position + spilledBlock[1]);
+		}
+		mSpilledBlocks.clear();
+	}
+
+	/*Return drained buffer to capture thread. Records, that were not written because of error, counted as dropped.*/
+	private void recycleBuffer(Utf8RecordBuffer buffer){
+		dropRecords(buffer);
+		mFreeBuffer.set(buffer);
+		LockSupport.unpark(mCaptureThread);
+	}
+
+	/*
+	 * Records of filled buffer, which writer didn't take yet, are older than records of current buffer, so they are
+	 * dropped and filled buffer is reused as free one. If writer already writes it, records of current buffer are
+	 * the oldest ones, which are not written yet, so they are dropped instead.
+	 */
+	private Utf8RecordBuffer dropFilledBuffer(Utf8RecordBuffer buffer){
+		Utf8RecordBuffer filledBuffer = mFilledBuffer.getAndSet(null);
+		if (filledBuffer == null){
+			dropRecords(buffer);
+			return null;
+		}
+		dropRecords(filledBuffer);
+		return filledBuffer;
+	}
+
+	private void dropRecords(Utf8RecordBuffer buffer){
+		mDroppedRecordsCount.addAndGet(buffer.getRecordsCount());
+		LogMetrics.LINES_DROPPED.add(buffer.getRecordsCount());
+		buffer.clear();
+	}
+
+	private void closeSpillFile(){
+		synchronized (mSpillLock){
+			if (mSpillRandomAccessFile == null)
+				return;
+
+			try {
+				mSpillRandomAccessFile.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mSpillRandomAccessFile = null;
+			mSpillFile.delete();
+			mSpilledBlocks.clear();
+		}
+	}
+
+	private void appendRecordsToBuffer(List<LogModel> records, Utf8RecordBuffer buffer) throws IOException{
+		if (records == null)
+			return;
+		for (LogModel record : records){
+			appendRecordToBuffer(record, buffer);
+		}
+	}
+
+	/*Record is encoded straight into current buffer, owned by calling thread. Return true if buffer is filled.*/
+	private boolean appendRecordToBuffer(LogModel record, Utf8RecordBuffer buffer) throws IOException{
+		if (buffer.getRecordsCount() == 0){
+			mBufferStartTime = System.nanoTime();
+		}
+		if (mBinary){
+			mBinaryEncoder.encode(record, buffer);
+		} else {
+			mFormatter.formatLogRecord(record, buffer);
+			buffer.append(LINE_SEPARATOR);
+		}
+		buffer.endRecord(record.getTimeMillis());
+		return buffer.size() >= mFlushSizeThreshold;
+	}
+
+	/*
+	 * Writes buffers handed over by capture thread. Log file is rotated only by this thread,
+	 * so capture thread is never stalled by file operations.
+	 */
+	private class LogWriterThread extends Thread {
+
+		private volatile boolean mFinished;
+
+		LogWriterThread(){
+			super("LogWriterThread");
+			setDaemon(true);
+		}
+
+		void finish(){
+			mFinished = true;
+			LockSupport.unpark(this);
+		}
+
+		boolean isFinished(){
+			return mFinished;
+		}
+
+		@Override
+		public void run() {
+			while (!mFinished){
+				if (mFilledBuffer.get() == null){
+					long expirationDelay = handOverExpiredBuffer();
+					if (expirationDelay > 0){
+						LockSupport.parkNanos(this, expirationDelay);
+						continue;
+					}
+				}
+
+				synchronized (mFileLock){
+					try {
+						writeFilledBuffer();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+
+		private void writeFilledBuffer() throws IOException{
+			if (!mCanWriteInFile){
+				Utf8RecordBuffer filledBuffer = mFilledBuffer.getAndSet(null);
+				if (filledBuffer != null){
+					recycleBuffer(filledBuffer);
+				}
+				return;
+			}
+
+			writeBuffersToFile(null);
+			if (needRotateLogFile()){
+				rotateLogFile();
+			}
+		}
+	}
+}
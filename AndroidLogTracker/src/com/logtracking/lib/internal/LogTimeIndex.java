@@ -0,0 +1,112 @@
+package com.logtracking.lib.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sparse index of log file, kept in sidecar file near it. Every entry maps time of the first record of written block
+ * of records to offset of this block in log file, so records of required time could be read without reading
+ * whole file. Offsets of blocks are offsets of records start, so reading could be started from any of them.
+ * Not thread safe.
+ */
+class LogTimeIndex {
+
+	static final String INDEX_FILE_EXTENSION = ".tidx";
+
+	/*No entry in index, so whole file should be read.*/
+	static final long UNKNOWN_OFFSET = -1;
+
+	private static final int ENTRY_SIZE = 16;
+
+	private final RandomAccessFile mFile;
+	private final ByteBuffer mEntry = ByteBuffer.allocate(ENTRY_SIZE);
+
+	private LogTimeIndex(RandomAccessFile file){
+		mFile = file;
+	}
+
+	static File getIndexFile(File logFile){
+		return new File(logFile.getPath() + INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Open index of log file for adding new entries. Index of log file without records is cleared, because it could be left
+	 * from file, that was removed.
+	 *
+	 * @param hasRecords true if log file already has records.
+	 * @return index or null if log file has records, which were written without index.
+	 */
+	static LogTimeIndex open(File logFile, boolean hasRecords) throws IOException {
+		File indexFile = getIndexFile(logFile);
+		if (hasRecords && !indexFile.exists())
+			return null;
+
+		RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+		long length = hasRecords ? file.length() - file.length() % ENTRY_SIZE : 0;
+		file.setLength(length);
+		file.seek(length);
+		return new LogTimeIndex(file);
+	}
+
+	/**
+	 * Add entry of block of records, which is written at given offset of log file.
+	 */
+	void add(long timeMillis, long offset) throws IOException {
+		mEntry.clear();
+		mEntry.putLong(timeMillis);
+		mEntry.putLong(offset);
+		mEntry.flip();
+
+		FileChannel channel = mFile.getChannel();
+		while (mEntry.hasRemaining()){
+			channel.write(mEntry);
+		}
+	}
+
+	void close() throws IOException {
+		mFile.close();
+	}
+
+	/**
+	 * Find offset, from which log file should be read to get all records not older than given time.
+	 * This is offset of the last block, which starts strictly before given time, or of the first block if all blocks are newer.
+	 * Block, which starts at given time, is not enough : previous block could end with records of the same millisecond.
+	 *
+	 * @return offset in log file or {@link #UNKNOWN_OFFSET} if log file has no index.
+	 */
+	static long findOffset(File logFile, long fromTime) throws IOException {
+		File indexFile = getIndexFile(logFile);
+		if (!indexFile.exists())
+			return UNKNOWN_OFFSET;
+
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			long entriesCount = file.length() / ENTRY_SIZE;
+			if (entriesCount == 0)
+				return UNKNOWN_OFFSET;
+
+			/*Binary search of the last entry with time before given one, blocks are written in order of time.*/
+			long low = 0;
+			long high = entriesCount - 1;
+			long found = 0;
+			while (low <= high){
+				long middle = (low + high) >>> 1;
+				file.seek(middle * ENTRY_SIZE);
+				if (file.readLong() < fromTime){
+					found = middle;
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+
+			file.seek(found * ENTRY_SIZE + 8);
+			return file.readLong();
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.logtracking.lib.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes log entries, written by logcat with "-B" option.
+ * Every entry is little-endian header of logger entry, followed by payload : priority byte, tag and message,
+ * both terminated by zero byte. First version of header has no header size field and is always 20 bytes long,
+ * next versions store size of header right after size of payload.
+ * Entry is read in reusable buffer, so pid and level could be checked before tag and message are decoded into record.
+ * Message with several lines is decoded line by line, every line is separate record with header and tag of its entry,
+ * same as logcat prints it in text format.
+ * Not thread safe.
+ *
+ * @see LogProvider#executeBinaryLogcat(String...)
+ */
+class LogcatBinaryDecoder {
+
+	private static final int HEADER_V1_SIZE = 20;
+	private static final int HEADER_PID_OFFSET = 4;
+	private static final int HEADER_TID_OFFSET = 8;
+	private static final int HEADER_SEC_OFFSET = 12;
+	private static final int HEADER_NSEC_OFFSET = 16;
+
+	/*Both sizes of entry are 16-bit values.*/
+	private static final int MAX_SIZE = 0xFFFF;
+
+	private static final char[] PRIORITY_SYMBOLS = {'V', 'V', 'V', 'D', 'I', 'W', 'E', 'F'};
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final InputStream mInput;
+	private final byte[] mHeader = new byte[MAX_SIZE];
+	private final byte[] mPayload = new byte[MAX_SIZE];
+	private int mPayloadLength;
+	private int mTagStart;
+	private int mTagEnd;
+	private int mMessageEnd;
+	private int mLineStart;
+	private int mLineEnd;
+
+	LogcatBinaryDecoder(InputStream input){
+		mInput = input;
+	}
+
+	/**
+	 * Read next entry, its first line becomes current one.
+	 *
+	 * @return false if stream is ended.
+	 */
+	boolean next() throws IOException{
+		if (!readFully(mHeader, 0, 4, true))
+			return false;
+
+		mPayloadLength = readShort(mHeader, 0);
+		int headerSize = readShort(mHeader, 2);
+		if (headerSize == 0){
+			headerSize = HEADER_V1_SIZE;
+		}
+		if (headerSize < HEADER_V1_SIZE)
+			throw new IOException("Unexpected size of log entry header : " + headerSize);
+
+		readFully(mHeader, 4, headerSize - 4, false);
+		readFully(mPayload, 0, mPayloadLength, false);
+
+		mTagStart = Math.min(1, mPayloadLength);
+		mTagEnd = indexOf((byte) 0, mTagStart, mPayloadLength);
+		int messageStart = Math.min(mTagEnd + 1, mPayloadLength);
+		mMessageEnd = indexOf((byte) 0, messageStart, mPayloadLength);
+		/*Message is printed by logcat without trailing line separator.*/
+		while (mMessageEnd > messageStart && (mPayload[mMessageEnd - 1] == '\n' || mPayload[mMessageEnd - 1] == '\r')){
+			mMessageEnd--;
+		}
+		mLineStart = messageStart;
+		mLineEnd = indexOf((byte) '\n', mLineStart, mMessageEnd);
+		return true;
+	}
+
+	/**
+	 * Move to next line of current entry.
+	 *
+	 * @return false if current line is the last one of entry.
+	 */
+	boolean nextLine(){
+		if (mLineEnd >= mMessageEnd)
+			return false;
+
+		mLineStart = mLineEnd + 1;
+		mLineEnd = indexOf((byte) '\n', mLineStart, mMessageEnd);
+		return true;
+	}
+
+	int getPid(){
+		return readInt(mHeader, HEADER_PID_OFFSET);
+	}
+
+	char getLevelSymbol(){
+		int priority = mPayloadLength > 0 ? mPayload[0] : 0;
+		return priority >= 0 && priority < PRIORITY_SYMBOLS.length ? PRIORITY_SYMBOLS[priority] : 'V';
+	}
+
+	/**
+	 * Decode current line of entry into given recycled model.
+	 */
+	LogModel decode(LogModel model){
+		model.reset();
+		model.setPid(getPid());
+		model.setTid(readInt(mHeader, HEADER_TID_OFFSET) & 0xFFFFFFFFL);
+		model.setLevelSymbol(getLevelSymbol());
+
+		long seconds = readInt(mHeader, HEADER_SEC_OFFSET) & 0xFFFFFFFFL;
+		long nanos = readInt(mHeader, HEADER_NSEC_OFFSET) & 0xFFFFFFFFL;
+		model.setTimeMillis(seconds * 1000 + nanos / 1000000);
+
+		int lineEnd = mLineEnd;
+		if (lineEnd > mLineStart && mPayload[lineEnd - 1] == '\r'){
+			lineEnd--;
+		}
+
+		model.setTag(new String(mPayload, mTagStart, mTagEnd - mTagStart, UTF_8));
+		model.setMessage(new String(mPayload, mLineStart, lineEnd - mLineStart, UTF_8));
+		return model;
+	}
+
+	/*Return index of given byte in payload, or end if there is no such byte before it.*/
+	private int indexOf(byte value, int start, int end){
+		for (int i = start; i < end; i++){
+			if (mPayload[i] == value)
+				return i;
+		}
+		return end;
+	}
+
+	/*Return false, if stream is ended before first byte and it is allowed.*/
+	private boolean readFully(byte[] buffer, int offset, int length, boolean endAllowed) throws IOException{
+		int readCount = 0;
+		while (readCount < length){
+			int count = mInput.read(buffer, offset + readCount, length - readCount);
+			if (count < 0){
+				if (endAllowed && readCount == 0)
+					return false;
+				throw new EOFException("Log entry is truncated");
+			}
+			readCount += count;
+		}
+		return true;
+	}
+
+	private static int readShort(byte[] buffer, int offset){
+		return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+	}
+
+	private static int readInt(byte[] buffer, int offset){
+		return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8 |
+			   (buffer[offset + 2] & 0xFF) << 16 | (buffer[offset + 3] & 0xFF) << 24;
+	}
+}
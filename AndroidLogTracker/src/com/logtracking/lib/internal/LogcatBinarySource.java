@@ -0,0 +1,39 @@
+package com.logtracking.lib.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Source of entries, written by logcat with "-B" option. Tag and message of entry are decoded only
+ * if its pid and level pass header filter. Every line of message is read as separate record.
+ *
+ * @see LogcatBinaryDecoder
+ */
+class LogcatBinarySource implements LogSource {
+
+	private final InputStream mInput;
+	private final LogcatBinaryDecoder mDecoder;
+
+	LogcatBinarySource(InputStream input){
+		mInput = input;
+		mDecoder = new LogcatBinaryDecoder(input);
+	}
+
+	@Override
+	public LogModel read(LogModel recycledRecord, HeaderFilter headerFilter) throws IOException{
+		while (mDecoder.nextLine() || mDecoder.next()){
+			LogMetrics.LINES_READ.increment();
+			if (headerFilter.passHeader(mDecoder.getPid(), mDecoder.getLevelSymbol())){
+				LogModel record = mDecoder.decode(recycledRecord);
+				LogMetrics.LINES_PARSED.increment();
+				return record;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException{
+		mInput.close();
+	}
+}
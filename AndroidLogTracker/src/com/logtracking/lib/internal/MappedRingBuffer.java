@@ -0,0 +1,219 @@
+package com.logtracking.lib.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Fixed-size circular file of records, mapped in memory. Records are copied straight into mapping,
+ * so they are kept by kernel even if process is killed, and could be read on next start.
+ * Header holds logical offsets of head and tail : byte with logical offset N is placed at N % capacity of data area.
+ * Head always points to start of record. It is moved past records, which are going to be overwritten, before
+ * they are overwritten, and tail is moved only after record bytes are copied, so if process is killed during write,
+ * neither overwritten nor partially written bytes are read.
+ * Not thread safe.
+ */
+class MappedRingBuffer {
+
+	/*"ALTR" in ASCII.*/
+	private static final int MAGIC = 0x414C5452;
+
+	private static final int MAGIC_POSITION = 0;
+	private static final int CAPACITY_POSITION = 4;
+	private static final int HEAD_POSITION = 8;
+	private static final int TAIL_POSITION = 16;
+	private static final int HEADER_SIZE = 24;
+
+	private RandomAccessFile mFile;
+	private MappedByteBuffer mMapping;
+	private int mCapacity;
+	private long mHead;
+	private long mTail;
+
+	private MappedRingBuffer(RandomAccessFile file, int capacity) throws IOException {
+		mFile = file;
+		mCapacity = capacity;
+		mMapping = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+	}
+
+	/**
+	 * Open ring buffer file with given capacity in bytes. Records of previous run are kept, if file was
+	 * created with same capacity, otherwise file is cleared.
+	 */
+	static MappedRingBuffer open(File file, int capacity) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			boolean valid = readCapacity(randomAccessFile) == capacity;
+			randomAccessFile.setLength(HEADER_SIZE + capacity);
+
+			MappedRingBuffer ringBuffer = new MappedRingBuffer(randomAccessFile, capacity);
+			if (valid){
+				ringBuffer.readHeader();
+			} else {
+				ringBuffer.writeHeader();
+			}
+			return ringBuffer;
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open existing ring buffer file with capacity it was created.
+	 * @return ring buffer or null if file is not a valid ring buffer.
+	 */
+	static MappedRingBuffer openExisting(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			int capacity = readCapacity(randomAccessFile);
+			if (capacity <= 0){
+				randomAccessFile.close();
+				return null;
+			}
+
+			MappedRingBuffer ringBuffer = new MappedRingBuffer(randomAccessFile, capacity);
+			ringBuffer.readHeader();
+			return ringBuffer;
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/*Return capacity from header of file, or -1 if file has no valid header.*/
+	private static int readCapacity(RandomAccessFile file) throws IOException {
+		if (file.length() < HEADER_SIZE)
+			return -1;
+
+		file.seek(MAGIC_POSITION);
+		if (file.readInt() != MAGIC)
+			return -1;
+
+		int capacity = file.readInt();
+		return file.length() == HEADER_SIZE + (long) capacity ? capacity : -1;
+	}
+
+	/**
+	 * Copy remaining bytes of source, which are whole records, to the tail of ring. If source is bigger than whole ring,
+	 * only last bytes are kept. Records, which are partially overwritten, are dropped.
+	 */
+	void write(ByteBuffer source){
+		long tail = mTail + source.remaining();
+		if (source.remaining() > mCapacity){
+			/*Skipped bytes are counted as written and overwritten at once.*/
+			source.position(source.limit() - mCapacity);
+		}
+		int length = source.remaining();
+
+		long head = findRecordStart(tail - mCapacity, source, tail - length);
+		if (head > mHead){
+			mHead = head;
+			mMapping.putLong(HEAD_POSITION, mHead);
+		}
+
+		int offset = (int) ((tail - length) % mCapacity);
+		int firstPartLength = Math.min(length, mCapacity - offset);
+		copyToData(source, offset, firstPartLength);
+		copyToData(source, 0, length - firstPartLength);
+
+		mTail = tail;
+		mMapping.putLong(TAIL_POSITION, mTail);
+	}
+
+	/**
+	 * Write all records of ring to current position of channel, from oldest to newest.
+	 */
+	void readTo(WritableByteChannel channel) throws IOException {
+		int offset = (int) (mHead % mCapacity);
+		int length = (int) (mTail - mHead);
+		int firstPartLength = Math.min(length, mCapacity - offset);
+		writeData(channel, offset, firstPartLength);
+		writeData(channel, 0, length - firstPartLength);
+	}
+
+	/**
+	 * @return count of bytes of records in ring.
+	 */
+	long size(){
+		return mTail - mHead;
+	}
+
+	/**
+	 * Force written records to storage device, so they are kept even if device is powered off.
+	 */
+	void force(){
+		mMapping.force();
+	}
+
+	void close() throws IOException {
+		mFile.close();
+	}
+
+	private void readHeader(){
+		mHead = mMapping.getLong(HEAD_POSITION);
+		mTail = mMapping.getLong(TAIL_POSITION);
+		/*Tail is below head, if process was killed during write, which overwrote all records.*/
+		if (mHead < 0 || mTail < mHead || mTail - mHead > mCapacity){
+			writeHeader();
+		}
+	}
+
+	private void writeHeader(){
+		mHead = 0;
+		mTail = 0;
+		mMapping.putInt(MAGIC_POSITION, MAGIC);
+		mMapping.putInt(CAPACITY_POSITION, mCapacity);
+		mMapping.putLong(HEAD_POSITION, mHead);
+		mMapping.putLong(TAIL_POSITION, mTail);
+	}
+
+	/*
+	 * Return the first logical offset of record start, which is not below given offset, or new tail if there is
+	 * no such record. Record starts after line separator. Bytes below current tail are read from ring, which is
+	 * not overwritten yet, other bytes are read from source, which will be copied from given logical offset.
+	 */
+	private long findRecordStart(long minHead, ByteBuffer source, long sourceStart){
+		if (minHead <= mHead)
+			return mHead;
+
+		long tail = sourceStart + source.remaining();
+		for (long position = minHead - 1; position < tail - 1; position++){
+			byte value = position < mTail ? mMapping.get(HEADER_SIZE + (int) (position % mCapacity))
+										  : source.get(source.position() + (int) (position - sourceStart));
+			if (value == '\n'){
+				return position + 1;
+			}
+		}
+		return tail;
+	}
+
+	private void copyToData(ByteBuffer source, int offset, int length){
+		if (length == 0)
+			return;
+
+		ByteBuffer destination = mMapping.duplicate();
+		destination.position(HEADER_SIZE + offset);
+
+		int limit = source.limit();
+		source.limit(source.position() + length);
+		destination.put(source);
+		source.limit(limit);
+	}
+
+	private void writeData(WritableByteChannel channel, int offset, int length) throws IOException {
+		if (length == 0)
+			return;
+
+		ByteBuffer data = mMapping.duplicate();
+		data.position(HEADER_SIZE + offset);
+		data.limit(HEADER_SIZE + offset + length);
+		while (data.hasRemaining()){
+			channel.write(data);
+		}
+	}
+}
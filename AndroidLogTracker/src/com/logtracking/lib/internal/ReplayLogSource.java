@@ -0,0 +1,88 @@
+package com.logtracking.lib.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Replays records of captured logcat output : "threadtime" text, or binary entries written with "-B" option.
+ * Records are released at rate of original log, scaled by speed, so capture could be tested at production line rate.
+ * Time of text record is taken from its date, time of binary entry is exact.
+ *
+ * @see LogPacer
+ */
+class ReplayLogSource implements LogSource {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final LogSource mSource;
+	private final LogPacer mPacer;
+	private final int[] mDateFields = new int[6];
+
+	ReplayLogSource(LogSource source, double speed){
+		mSource = source;
+		mPacer = new LogPacer(speed);
+	}
+
+	/**
+	 * Open file of captured logcat output for replay.
+	 *
+	 * @param binary true if file is written by logcat with "-B" option.
+	 * @param speed see {@link LogPacer#LogPacer(double)}.
+	 */
+	static ReplayLogSource open(File file, boolean binary, double speed) throws IOException{
+		if (binary){
+			return new ReplayLogSource(new LogcatBinarySource(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)), speed);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), BUFFER_SIZE);
+		return new ReplayLogSource(new ThreadTimeLogSource(reader), speed);
+	}
+
+	@Override
+	public LogModel read(LogModel recycledRecord, HeaderFilter headerFilter) throws IOException{
+		LogModel record = mSource.read(recycledRecord, headerFilter);
+		if (record != null){
+			mPacer.await(getRecordTime(record));
+		}
+		return record;
+	}
+
+	@Override
+	public void close() throws IOException{
+		mSource.close();
+	}
+
+	LogPacer getPacer(){
+		return mPacer;
+	}
+
+	/*
+	 * Time of record in logcat date "MM-dd HH:mm:ss.SSS" without year, which is only compared with times of
+	 * other records of replay, or -1 if date is malformed.
+	 */
+	private long getRecordTime(LogModel record){
+		if (!record.hasOnlyFormattedDate())
+			return record.getTimeMillis();
+
+		String date = record.getFormattedDate();
+		if (date == null || date.length() < 18)
+			return -1;
+
+		for (int field = 0, start = 0; field < mDateFields.length; field++, start += 3){
+			int end = field == mDateFields.length - 1 ? start + 3 : start + 2;
+			int number = 0;
+			for (int i = start; i < end; i++){
+				char digit = date.charAt(i);
+				if (digit < '0' || digit > '9')
+					return -1;
+				number = number * 10 + digit - '0';
+			}
+			mDateFields[field] = number;
+		}
+		long days = mDateFields[0] * 31L + mDateFields[1];
+		return (((days * 24 + mDateFields[2]) * 60 + mDateFields[3]) * 60 + mDateFields[4]) * 1000 + mDateFields[5];
+	}
+}
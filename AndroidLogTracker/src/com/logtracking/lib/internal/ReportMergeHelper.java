@@ -0,0 +1,127 @@
+package com.logtracking.lib.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Helps to merge records of log files in report file without parsing them line by line :
+ * boundaries of records are found once and records between them are copied by bulk channel transfer.
+ */
+final class ReportMergeHelper {
+
+	private static final int SCAN_BLOCK_SIZE = 8 * 1024;
+
+	private ReportMergeHelper(){
+	}
+
+	/**
+	 * Find start of records of log file with document envelope.
+	 *
+	 * @param openTagLine bytes of logging open tag with line separator.
+	 * @return offset after logging open tag line, or -1 if file has no such line.
+	 */
+	static long findBodyStart(FileChannel channel, byte[] openTagLine) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(Math.max(SCAN_BLOCK_SIZE, openTagLine.length * 2));
+		long size = channel.size();
+		long blockStart = 0;
+
+		while (blockStart < size){
+			block.clear();
+			int length = read(channel, block, blockStart, (int) Math.min(block.capacity(), size - blockStart));
+
+			/*The first byte of next block was already checked, it is read only as end of previous line.*/
+			for (int i = blockStart == 0 ? 0 : 1; i + openTagLine.length <= length; i++){
+				boolean lineStart = blockStart + i == 0 || block.get(i - 1) == '\n';
+				if (lineStart && matches(block, i, openTagLine)){
+					return blockStart + i + openTagLine.length;
+				}
+			}
+
+			if (blockStart + length >= size)
+				break;
+			/*Next block overlaps current one, so tag line crossing their boundary is also found.*/
+			blockStart += length - openTagLine.length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find end of records of log file with document envelope. If file doesn't end with closing tags,
+	 * e.g. because application was killed during writing, or format has no closing tags,
+	 * records end at the end of last complete line.
+	 *
+	 * @param closeTagLines bytes of closing tags lines, as they are written at the end of file.
+	 * @return offset of closing tags.
+	 */
+	static long findBodyEnd(FileChannel channel, byte[] closeTagLines) throws IOException {
+		long size = channel.size();
+		if (closeTagLines.length > 0 && size >= closeTagLines.length){
+			ByteBuffer tail = ByteBuffer.allocate(closeTagLines.length);
+			int length = read(channel, tail, size - closeTagLines.length, closeTagLines.length);
+			if (length == closeTagLines.length && matches(tail, 0, closeTagLines)){
+				return size - closeTagLines.length;
+			}
+		}
+		return findCompleteLinesEnd(channel);
+	}
+
+	/**
+	 * @return length of file up to the end of last complete line.
+	 */
+	static long findCompleteLinesEnd(FileChannel channel) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+		long blockEnd = channel.size();
+
+		while (blockEnd > 0){
+			long blockStart = Math.max(0, blockEnd - SCAN_BLOCK_SIZE);
+			block.clear();
+			int length = read(channel, block, blockStart, (int) (blockEnd - blockStart));
+
+			for (int i = length - 1; i >= 0; i--){
+				if (block.get(i) == '\n'){
+					return blockStart + i + 1;
+				}
+			}
+			blockEnd = blockStart;
+		}
+		return 0;
+	}
+
+	/**
+	 * Copy bytes between given offsets of source to current position of target, by bulk transfer.
+	 * If target is file, its position is moved after copied bytes.
+	 *
+	 * @return count of copied bytes.
+	 */
+	static long transfer(FileChannel source, long start, long end, WritableByteChannel target) throws IOException {
+		long length = Math.max(0, end - start);
+		long transferredBytesCount = 0;
+
+		while (transferredBytesCount < length){
+			long count = source.transferTo(start + transferredBytesCount, length - transferredBytesCount, target);
+			if (count <= 0)
+				break;
+			transferredBytesCount += count;
+		}
+		return transferredBytesCount;
+	}
+
+	private static int read(FileChannel channel, ByteBuffer block, long position, int length) throws IOException {
+		block.limit(length);
+		while (block.hasRemaining()){
+			if (channel.read(block, position + block.position()) < 0)
+				break;
+		}
+		return block.position();
+	}
+
+	private static boolean matches(ByteBuffer block, int offset, byte[] pattern){
+		for (int i = 0; i < pattern.length; i++){
+			if (block.get(offset + i) != pattern[i])
+				return false;
+		}
+		return true;
+	}
+}
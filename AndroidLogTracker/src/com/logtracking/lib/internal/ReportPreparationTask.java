@@ -1,77 +1,324 @@
 package com.logtracking.lib.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import android.text.TextUtils;
 
 class ReportPreparationTask extends BaseLogTask{
+
+	private static final int DECODED_RECORDS_BUFFER_SIZE = 64 * 1024;
+	private static final String METRICS_KEY_PREFIX = "metrics.";
+
+	/*Time of the oldest record of report, or Long.MIN_VALUE if report contains all records.*/
+	private long mFromTime = Long.MIN_VALUE;
+
+	/*Report document is written straight into entry of archive, so it is never written to disk uncompressed.*/
+	private ZipArchiveHelper mArchive;
+	private WritableByteChannel mReportChannel;
 	
 	protected ReportPreparationTask(LogContext logContext) {
 		super(logContext);
 	}
 		
 	private void prepareFullReport() throws IOException{
-		createNewLogFile();
+		mArchive.putNextEntry(mLogFile.getName());
+		mReportChannel = mArchive.getEntryChannel();
+		mArchive.write(DocumentEnvelope.getBytes(DocumentEnvelope.getOpeningLines(mFileFormatter, mReportMessage, getMetaData())));
 
-		String rotatedFile = mPreferences.getString(TEMP_FILE_NAME, null);
-		mergeLogFile(rotatedFile);
+		long reportTimeWindow = mLogConfiguration.getReportTimeWindow();
+		if (reportTimeWindow > 0){
+			mFromTime = System.currentTimeMillis() - reportTimeWindow;
+		}
+
+		LogSegmentManager segmentManager = new LogSegmentManager(new File(mLogConfiguration.getLogFileName()),
+																 mLogConfiguration.getRetentionPolicy());
+		for (File segment : segmentManager.listSegments(mFromTime)){
+			mergeSegment(segment);
+		}
 		
-		String currentLogFile = mLogConfiguration.getLogFileName() + mFileFormatter.getFileExtension();
-		mergeLogFile(currentLogFile);
+		mergeFile(getCurrentLogFileName());
+		mArchive.write(DocumentEnvelope.getBytes(DocumentEnvelope.getClosingLines(mFileFormatter)));
 	}
-	
-	private void mergeLogFile(String sourceFile) throws IOException {
+
+	/*Meta-data of report, metrics are taken when report is prepared, so they include all work done before report.*/
+	private Map<String,String> getMetaData(){
+		if (!mLogConfiguration.isMetricsInReport())
+			return mLogConfiguration.getMetaData();
+
+		Map<String,String> metaData = new LinkedHashMap<String,String>(mLogConfiguration.getMetaData());
+		for (Map.Entry<String,Long> metric : LogMetrics.snapshot().entrySet()){
+			metaData.put(METRICS_KEY_PREFIX + metric.getKey(), Long.toString(metric.getValue()));
+		}
+		return metaData;
+	}
+
+	@Override
+	LogScheduler.Lane getLane(){
+		return LogScheduler.Lane.REPORT;
+	}
+
+	/*Return offset of the first record of report time window in given log file, or unknown offset if whole file is needed.*/
+	private long findRecordsOffset(File sourceFile) throws IOException {
+		if (mFromTime == Long.MIN_VALUE)
+			return LogTimeIndex.UNKNOWN_OFFSET;
+		return LogTimeIndex.findOffset(sourceFile, mFromTime);
+	}
+
+	/*Segment could be compressed after it was listed, so then its compressed file is merged.*/
+	private void mergeSegment(File segment) throws IOException {
+		if (!LogSegmentManager.isCompressed(segment) && !segment.exists()){
+			segment = new File(segment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+		}
+
+		if (LogSegmentManager.isCompressed(segment)){
+			mergeCompressedFile(segment);
+		} else {
+			mergeFile(segment.getPath());
+		}
+	}
+
+	/*Compressed segment is decompressed while it is read, and merged according to format of its uncompressed file.*/
+	private void mergeCompressedFile(File sourceFile) throws IOException {
+		if (!sourceFile.exists())
+			return;
+
+		String uncompressedName = LogSegmentManager.getUncompressedName(sourceFile.getName());
+		long recordsOffset = findRecordsOffset(new File(sourceFile.getParentFile(), uncompressedName));
+		InputStream source = new GZIPInputStream(new FileInputStream(sourceFile), DECODED_RECORDS_BUFFER_SIZE);
+		try {
+			boolean fromRecordsStart = recordsOffset != LogTimeIndex.UNKNOWN_OFFSET;
+			if (fromRecordsStart){
+				skipFully(source, recordsOffset);
+			}
+
+			if (uncompressedName.endsWith(RECORDS_FILE_EXTENSION)){
+				mergeRecords(source);
+			} else if (uncompressedName.endsWith(BINARY_FILE_EXTENSION)){
+				mergeBinaryRecords(source, !fromRecordsStart);
+			} else {
+				mergeLogStream(source, fromRecordsStart);
+			}
+		} finally {
+			source.close();
+		}
+	}
+
+	private void mergeFile(String sourceFile) throws IOException {
+		if (sourceFile != null && sourceFile.endsWith(RECORDS_FILE_EXTENSION)){
+			mergeRecordsFile(sourceFile);
+		} else if (sourceFile != null && sourceFile.endsWith(RING_BUFFER_FILE_EXTENSION)){
+			mergeRingBufferFile(sourceFile);
+		} else if (sourceFile != null && sourceFile.endsWith(BINARY_FILE_EXTENSION)){
+			mergeBinaryFile(sourceFile);
+		} else {
+			mergeLogFile(sourceFile);
+		}
+	}
+
+	/*
+	 * Records file has no envelope, so its content is copied as is, between logging tags of report.
+	 * Last line could be written only partially, if application was killed during writing, so it is skipped.
+	 */
+	private void mergeRecordsFile(String sourceFile) throws IOException {
 		if (!isLogFileExist(sourceFile))
 			return;
-		
-		RandomAccessFile source = new RandomAccessFile(sourceFile, "rw");
-		
+
+		long recordsOffset = Math.max(0, findRecordsOffset(new File(sourceFile)));
+		RandomAccessFile source = new RandomAccessFile(sourceFile, "r");
+		try {
+			FileChannel sourceChannel = source.getChannel();
+			mergeRecordsRange(sourceChannel, recordsOffset, ReportMergeHelper.findCompleteLinesEnd(sourceChannel));
+		} finally {
+			source.close();
+		}
+	}
+
+	/*Copy records between given offsets of source file to report.*/
+	private void mergeRecordsRange(FileChannel sourceChannel, long start, long end) throws IOException {
+		ReportMergeHelper.transfer(sourceChannel, start, end, mReportChannel);
+	}
+
+	/*Ring buffer file could be left by killed process, so records are recovered from it on next report.*/
+	private void mergeRingBufferFile(String sourceFile) throws IOException {
+		if (!isLogFileExist(sourceFile))
+			return;
+
+		MappedRingBuffer ringBuffer = MappedRingBuffer.openExisting(new File(sourceFile));
+		if (ringBuffer == null)
+			return;
+
+		try {
+			ringBuffer.readTo(mReportChannel);
+		} finally {
+			ringBuffer.close();
+		}
+	}
+
+	/*Records of binary file are decoded and formatted by formatter of report, which is configured text format.*/
+	private void mergeBinaryFile(String sourceFile) throws IOException {
+		if (!isLogFileExist(sourceFile) || new File(sourceFile).length() == 0)
+			return;
+
+		long recordsOffset = findRecordsOffset(new File(sourceFile));
+		FileInputStream fileSource = new FileInputStream(sourceFile);
+		InputStream source = new BufferedInputStream(fileSource, DECODED_RECORDS_BUFFER_SIZE);
+		try {
+			boolean fromRecordsStart = recordsOffset != LogTimeIndex.UNKNOWN_OFFSET;
+			if (fromRecordsStart){
+				fileSource.getChannel().position(recordsOffset);
+			}
+			mergeBinaryRecords(source, !fromRecordsStart);
+		} finally {
+			source.close();
+		}
+	}
+
+	/*
+	 * Binary records have time of their creation, so records before report time window are skipped.
+	 * Header is read only if stream is read from the start of file, otherwise it starts from block of records.
+	 */
+	private void mergeBinaryRecords(InputStream source, boolean readHeader) throws IOException {
+		BinaryLogDecoder decoder = new BinaryLogDecoder(source, readHeader);
+
+		Utf8RecordBuffer buffer = new Utf8RecordBuffer(DECODED_RECORDS_BUFFER_SIZE * 2);
+
+		LogModel record;
+		while ((record = decoder.readRecord()) != null){
+			if (record.getTimeMillis() < mFromTime)
+				continue;
+
+			mFileFormatter.formatLogRecord(record, buffer);
+			buffer.append(LINE_SEPARATOR);
+			buffer.endRecord(record.getTimeMillis());
+			if (buffer.size() >= DECODED_RECORDS_BUFFER_SIZE){
+				buffer.writeTo(mReportChannel);
+			}
+		}
+		buffer.writeTo(mReportChannel);
+	}
+
+	/*Records of rotated segment were completely written before rotation, so they are copied as is.*/
+	private void mergeRecords(InputStream source) throws IOException {
+		mArchive.write(source);
+	}
+
+	/*
+	 * Same as merging of log file, but lines between logging tags are read from decompressed stream.
+	 * If stream is already positioned at the start of records, open logging tag is not searched.
+	 */
+	private void mergeLogStream(InputStream source, boolean fromRecordsStart) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(source, UTF_8), DECODED_RECORDS_BUFFER_SIZE);
 		String openLoggingTag = mFileFormatter.getLoggingOpenTag();
 		String closeLoggingTag = mFileFormatter.getLoggingCloseTag();
-		
-		boolean loggingStart = false;
-		String line = source.readLine();
-		
-		while (line != null){
-			
-			if(!loggingStart && line.equals(openLoggingTag)){
-				
-				seekFilePointerBeforeCloseTags();
+
+		boolean loggingStart = fromRecordsStart;
+		byte[] lineSeparator = LINE_SEPARATOR.getBytes(UTF_8);
+		String line;
+		while ((line = reader.readLine()) != null){
+			if (!loggingStart && line.equals(openLoggingTag)){
 				loggingStart = true;
-				
 			} else if (line.equals(closeLoggingTag)){
-				
-				writeClosingTags();
 				break;
-				
 			} else if (loggingStart){
-				
-				writeLineToFile(line);
-				
+				mArchive.write(line.getBytes(UTF_8));
+				mArchive.write(lineSeparator);
 			}
-			
-			line = source.readLine();
 		}
-		
-		source.close();
+	}
+
+	private static void skipFully(InputStream source, long count) throws IOException {
+		while (count > 0){
+			long skipped = source.skip(count);
+			if (skipped <= 0){
+				if (source.read() < 0)
+					return;
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+	
+	/*
+	 * Records of log file with document envelope are found between its logging tags, without reading them line by line,
+	 * and copied as is. If report has time window, records are copied from offset of the first record of window.
+	 */
+	private void mergeLogFile(String sourceFile) throws IOException {
+		if (!isLogFileExist(sourceFile))
+			return;
+
+		long recordsOffset = findRecordsOffset(new File(sourceFile));
+		RandomAccessFile source = new RandomAccessFile(sourceFile, "r");
+		try {
+			FileChannel sourceChannel = source.getChannel();
+			if (recordsOffset == LogTimeIndex.UNKNOWN_OFFSET){
+				recordsOffset = ReportMergeHelper.findBodyStart(sourceChannel, getLineBytes(mFileFormatter.getLoggingOpenTag()));
+				if (recordsOffset < 0)
+					return;
+			}
+
+			byte[] closeTagLines = concat(getLineBytes(mFileFormatter.getLoggingCloseTag()),
+										  getLineBytes(mFileFormatter.getDocumentCloseTag()));
+			mergeRecordsRange(sourceChannel, recordsOffset, ReportMergeHelper.findBodyEnd(sourceChannel, closeTagLines));
+		} finally {
+			source.close();
+		}
+	}
+
+	/*Bytes of line, as it is written by writeLineToFile.*/
+	private static byte[] getLineBytes(String line){
+		if (TextUtils.isEmpty(line))
+			return new byte[0];
+		return (line + LINE_SEPARATOR).getBytes(UTF_8);
+	}
+
+	private static byte[] concat(byte[] first, byte[] second){
+		byte[] result = new byte[first.length + second.length];
+		System.arraycopy(first, 0, result, 0, first.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
 	}
 	
+	/*
+	 * Report document and attached files are written into archive in one pass. Attached files are compressed
+	 * in background, while report document is prepared. Archive of failed report is incomplete, so it is removed.
+	 */
 	@Override
 	protected File doInBackground(Void... params) {
 		try {
 			
+			long startNanos = System.nanoTime();
+			mArchive = createReportArchive();
+			packAttachedFiles(mArchive);
+			LogMetrics.REPORT_ATTACHMENTS.stop(startNanos);
+
+			startNanos = System.nanoTime();
 			prepareFullReport();
-			File archiveFile = prepareReportArchive();
-			mLogFile.delete();
-			return archiveFile;
+			LogMetrics.REPORT_MERGE.stop(startNanos);
+
+			startNanos = System.nanoTime();
+			mArchive.close();
+			LogMetrics.REPORT_ARCHIVE.stop(startNanos);
+			return mArchive.getArchiveFile();
 			
 		} catch (IOException e) {
 			e.printStackTrace();
+			if (mArchive != null){
+				mArchive.discard();
+			}
 			return null;
-			
-		} finally {
-        	closeAccessToFile();
-        }
+		}
 	}
 	
 }
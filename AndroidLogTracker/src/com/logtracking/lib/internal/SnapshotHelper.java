@@ -13,8 +13,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class SnapshotHelper {
 
@@ -89,12 +87,10 @@ public class SnapshotHelper {
     private static final String FILE_NAME_SEPARATOR = System.getProperty("file.separator");
 
     private LogConfiguration mLogConfiguration;
-    private ExecutorService mSavingService;
     private Handler mUiHandler;
 
     public SnapshotHelper(LogConfiguration logConfiguration){
         mLogConfiguration = logConfiguration;
-        mSavingService = Executors.newFixedThreadPool(2);
         mUiHandler = new Handler(Looper.getMainLooper());
     }
 
@@ -111,7 +107,7 @@ public class SnapshotHelper {
         File snapshotFile = new File(mLogConfiguration.getSnapshotDirectoryName() + FILE_NAME_SEPARATOR + name + "."+ Bitmap.CompressFormat.PNG.name());
         ClearViewCacheAction clearAction = new ClearViewCacheAction(rootView);
         SaveAction saveAction = new SaveAction(mLogConfiguration, screenShot, snapshotFile, clearAction, mUiHandler);
-        mSavingService.execute(saveAction);
+        LogScheduler.getExecutor(LogScheduler.Lane.MAINTENANCE).execute(saveAction);
     }
 
     void removeSnapshots(){
@@ -0,0 +1,270 @@
+package com.logtracking.lib.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates records with configured distributions of levels, tags and pids, at configured rate with periodic bursts,
+ * so capture could be tested at line rates, which are not reproduced by test device. Generation is repeatable :
+ * the same configuration and seed give the same records. Messages are taken from pool, generated in advance,
+ * so cost of generation is not added to measured cost of capture.
+ */
+class SyntheticLogSource implements LogSource {
+
+	private static final int MESSAGES_POOL_SIZE = 256;
+	private static final int DEFAULT_PID = 1000;
+	private static final String DEFAULT_TAG = "Synthetic";
+	private static final String MESSAGE_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 .,:=/АБВГДЕЖЗабвгдежз日志记录";
+
+	private final Random mRandom;
+	private final WeightedChoice mLevels;
+	private final String[] mTags;
+	private final WeightedChoice mTagChoice;
+	private final int[] mPids;
+	private final WeightedChoice mPidChoice;
+	private final String[] mMessages;
+	private final double mRecordIntervalNanos;
+	private final double mBurstRecordIntervalNanos;
+	private final long mBurstDurationNanos;
+	private final long mBurstPeriodNanos;
+	private final long mRecordsCount;
+	private final LogPacer mPacer;
+
+	private final long mStartTime = System.currentTimeMillis();
+	/*Time of next record since start, it is not advanced, if records are generated as fast as possible.*/
+	private double mRecordTimeNanos;
+	private long mGeneratedRecordsCount;
+
+	private SyntheticLogSource(Builder builder){
+		mRandom = new Random(builder.mSeed);
+		mLevels = new WeightedChoice(builder.mLevelWeights);
+
+		List<String> tags = builder.mTags.isEmpty() ? Arrays.asList(DEFAULT_TAG) : builder.mTags;
+		mTags = tags.toArray(new String[tags.size()]);
+		mTagChoice = new WeightedChoice(builder.mTagWeights.isEmpty() ? new int[]{1} : toArray(builder.mTagWeights));
+
+		mPids = builder.mPids.isEmpty() ? new int[]{DEFAULT_PID} : toArray(builder.mPids);
+		mPidChoice = new WeightedChoice(builder.mPidWeights.isEmpty() ? new int[]{1} : toArray(builder.mPidWeights));
+
+		mMessages = new String[MESSAGES_POOL_SIZE];
+		for (int i = 0; i < mMessages.length; i++){
+			int length = builder.mMinMessageLength + mRandom.nextInt(builder.mMaxMessageLength - builder.mMinMessageLength + 1);
+			mMessages[i] = generateMessage(length);
+		}
+
+		mRecordIntervalNanos = getRecordIntervalNanos(builder.mRate);
+		mBurstRecordIntervalNanos = getRecordIntervalNanos(builder.mBurstRate);
+		mBurstDurationNanos = builder.mBurstDurationMillis * 1000000L;
+		mBurstPeriodNanos = builder.mBurstPeriodMillis * 1000000L;
+		mRecordsCount = builder.mRecordsCount;
+		mPacer = new LogPacer(builder.mRate == 0 ? LogPacer.AS_FAST_AS_POSSIBLE : LogPacer.REAL_TIME);
+	}
+
+	/**
+	 * Generate next record, which passes header filter, until configured count of records is generated or reading thread
+	 * is interrupted. Records are released at their time. Records, rejected by header filter, are still generated,
+	 * so the same records are generated with any filter.
+	 */
+	@Override
+	public LogModel read(LogModel recycledRecord, HeaderFilter headerFilter){
+		while ((mRecordsCount == 0 || mGeneratedRecordsCount < mRecordsCount) && !Thread.currentThread().isInterrupted()){
+			mGeneratedRecordsCount++;
+			long recordTime = mRecordIntervalNanos > 0 ? mStartTime + (long) (mRecordTimeNanos / 1000000) : System.currentTimeMillis();
+			mRecordTimeNanos += isBurst() ? mBurstRecordIntervalNanos : mRecordIntervalNanos;
+
+			int pid = mPids[mPidChoice.next(mRandom)];
+			char levelSymbol = LogLevels.getSymbol(mLevels.next(mRandom));
+			String tag = mTags[mTagChoice.next(mRandom)];
+			String message = mMessages[mRandom.nextInt(mMessages.length)];
+			if (!headerFilter.passHeader(pid, levelSymbol))
+				continue;
+
+			mPacer.await(recordTime);
+			recycledRecord.reset();
+			recycledRecord.setTimeMillis(recordTime);
+			recycledRecord.setPid(pid);
+			recycledRecord.setTid(pid);
+			recycledRecord.setLevelSymbol(levelSymbol);
+			recycledRecord.setTag(tag);
+			recycledRecord.setMessage(message);
+			return recycledRecord;
+		}
+		return null;
+	}
+
+	@Override
+	public void close(){
+	}
+
+	LogPacer getPacer(){
+		return mPacer;
+	}
+
+	/**
+	 * @return count of generated records, including records, which were rejected by header filter.
+	 */
+	long getGeneratedRecordsCount(){
+		return mGeneratedRecordsCount;
+	}
+
+	private boolean isBurst(){
+		return mBurstPeriodNanos > 0 && mRecordIntervalNanos > 0 && (long) mRecordTimeNanos % mBurstPeriodNanos < mBurstDurationNanos;
+	}
+
+	private String generateMessage(int length){
+		StringBuilder message = new StringBuilder(length);
+		for (int i = 0; i < length; i++){
+			message.append(MESSAGE_ALPHABET.charAt(mRandom.nextInt(MESSAGE_ALPHABET.length())));
+		}
+		return message.toString();
+	}
+
+	private static double getRecordIntervalNanos(int rate){
+		return rate > 0 ? 1e9 / rate : 0;
+	}
+
+	private static int[] toArray(List<Integer> list){
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++){
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/*Chooses index with probability proportional to its weight.*/
+	private static final class WeightedChoice {
+
+		private final int[] mCumulativeWeights;
+
+		WeightedChoice(int[] weights){
+			mCumulativeWeights = new int[weights.length];
+			int sum = 0;
+			for (int i = 0; i < weights.length; i++){
+				sum += weights[i];
+				mCumulativeWeights[i] = sum;
+			}
+			if (sum <= 0)
+				throw new IllegalArgumentException("Sum of weights should be positive");
+		}
+
+		/*Index of the first cumulative weight above random point, so indexes of zero weight are never chosen.*/
+		int next(Random random){
+			int point = random.nextInt(mCumulativeWeights[mCumulativeWeights.length - 1]);
+			int low = 0;
+			int high = mCumulativeWeights.length - 1;
+			while (low < high){
+				int middle = (low + high) >>> 1;
+				if (mCumulativeWeights[middle] > point){
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Configuration of synthetic log. By default records of all levels from verbose to assert are generated
+	 * with equal probability, with single tag and single pid, messages are from 20 to 120 characters long,
+	 * records are generated as fast as possible without limit.
+	 */
+	static class Builder {
+
+		private final long mSeed;
+		private final int[] mLevelWeights = new int[LogLevels.ASSERT + 1];
+		private final List<String> mTags = new ArrayList<String>();
+		private final List<Integer> mTagWeights = new ArrayList<Integer>();
+		private final List<Integer> mPids = new ArrayList<Integer>();
+		private final List<Integer> mPidWeights = new ArrayList<Integer>();
+		private int mMinMessageLength = 20;
+		private int mMaxMessageLength = 120;
+		private int mRate;
+		private int mBurstRate;
+		private long mBurstDurationMillis;
+		private long mBurstPeriodMillis;
+		private long mRecordsCount;
+
+		Builder(long seed){
+			mSeed = seed;
+			Arrays.fill(mLevelWeights, LogLevels.VERBOSE, LogLevels.ASSERT + 1, 1);
+		}
+
+		/**
+		 * Set relative weight of level, 0 excludes level.
+		 */
+		Builder setLevelWeight(int level, int weight){
+			if (level < LogLevels.VERBOSE || level > LogLevels.ASSERT)
+				throw new IllegalArgumentException("Unknown level : " + level);
+			checkWeight(weight);
+			mLevelWeights[level] = weight;
+			return this;
+		}
+
+		Builder addTag(String tag, int weight){
+			checkWeight(weight);
+			mTags.add(tag);
+			mTagWeights.add(weight);
+			return this;
+		}
+
+		Builder addPid(int pid, int weight){
+			checkWeight(weight);
+			mPids.add(pid);
+			mPidWeights.add(weight);
+			return this;
+		}
+
+		Builder setMessageLength(int minLength, int maxLength){
+			if (minLength < 0 || maxLength < minLength)
+				throw new IllegalArgumentException("Invalid message length range : " + minLength + " - " + maxLength);
+			mMinMessageLength = minLength;
+			mMaxMessageLength = maxLength;
+			return this;
+		}
+
+		/**
+		 * @param recordsPerSecond rate of records between bursts, or 0 to generate records as fast as possible.
+		 */
+		Builder setRate(int recordsPerSecond){
+			if (recordsPerSecond < 0)
+				throw new IllegalArgumentException("Rate should not be negative : " + recordsPerSecond);
+			mRate = recordsPerSecond;
+			return this;
+		}
+
+		/**
+		 * Generate records at burst rate during first duration of every period. Bursts are applied only at limited rate.
+		 */
+		Builder setBurst(int recordsPerSecond, long durationMillis, long periodMillis){
+			if (recordsPerSecond <= 0 || durationMillis <= 0 || periodMillis < durationMillis)
+				throw new IllegalArgumentException("Invalid burst : " + recordsPerSecond + " records per second for " +
+						durationMillis + " ms every " + periodMillis + " ms");
+			mBurstRate = recordsPerSecond;
+			mBurstDurationMillis = durationMillis;
+			mBurstPeriodMillis = periodMillis;
+			return this;
+		}
+
+		/**
+		 * @param recordsCount count of generated records, or 0 to generate records until reading thread is interrupted.
+		 */
+		Builder setRecordsCount(long recordsCount){
+			if (recordsCount < 0)
+				throw new IllegalArgumentException("Records count should not be negative : " + recordsCount);
+			mRecordsCount = recordsCount;
+			return this;
+		}
+
+		SyntheticLogSource build(){
+			return new SyntheticLogSource(this);
+		}
+
+		private static void checkWeight(int weight){
+			if (weight < 0)
+				throw new IllegalArgumentException("Weight should not be negative : " + weight);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.logtracking.lib.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Source of lines in logcat "threadtime" format : output of logcat process, recorded log file or lines in memory.
+ * Pid and level columns of line are scanned before line is parsed, lines with unexpected layout are
+ * parsed by pattern and skipped, if they couldn't be parsed.
+ */
+class ThreadTimeLogSource implements LogSource {
+
+	private final BufferedReader mReader;
+	private final LogParser mLogParser = new LogParser();
+
+	ThreadTimeLogSource(BufferedReader reader){
+		mReader = reader;
+	}
+
+	@Override
+	public LogModel read(LogModel recycledRecord, HeaderFilter headerFilter) throws IOException{
+		String line;
+		while ((line = mReader.readLine()) != null){
+			LogMetrics.LINES_READ.increment();
+			if (mLogParser.scanLineHeader(line) &&
+				!headerFilter.passHeader(mLogParser.getScannedPid(), mLogParser.getScannedLevelSymbol())){
+				continue;
+			}
+			try {
+				LogModel record = mLogParser.parseLogRecord(line, recycledRecord);
+				LogMetrics.LINES_PARSED.increment();
+				return record;
+			} catch (ParseException e) {
+				LogMetrics.LINES_PARSE_FAILED.increment();
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException{
+		mReader.close();
+	}
+}
@@ -0,0 +1,176 @@
+package com.logtracking.lib.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reusable buffer of formatted records. Characters are encoded to UTF-8 as soon as they appended,
+ * straight into direct byte buffer, which then written to file channel without additional copies.
+ * Not thread safe.
+ */
+class Utf8RecordBuffer implements Appendable {
+
+	private static final char REPLACEMENT_CHARACTER = '?';
+
+	private ByteBuffer mBuffer;
+	private char mHighSurrogate;
+	private int mRecordsCount;
+	private long mFirstRecordTime;
+
+	Utf8RecordBuffer(int capacity){
+		mBuffer = ByteBuffer.allocateDirect(capacity);
+	}
+
+	@Override
+	public Utf8RecordBuffer append(CharSequence sequence) {
+		if (sequence == null){
+			sequence = "null";
+		}
+		return append(sequence, 0, sequence.length());
+	}
+
+	@Override
+	public Utf8RecordBuffer append(CharSequence sequence, int start, int end) {
+		if (sequence == null){
+			sequence = "null";
+		}
+		for (int i = start; i < end; i++){
+			encode(sequence.charAt(i));
+		}
+		return this;
+	}
+
+	@Override
+	public Utf8RecordBuffer append(char character) {
+		encode(character);
+		return this;
+	}
+
+	/**
+	 * Put raw byte, which is not a part of character, e.g. byte of binary encoded record.
+	 */
+	void putByte(int value){
+		flushHighSurrogate();
+		ensureCapacity(1);
+		mBuffer.put((byte) value);
+	}
+
+	/**
+	 * @return count of encoded bytes in buffer.
+	 */
+	int size(){
+		return mBuffer.position();
+	}
+
+	/**
+	 * Mark end of appended record, so buffer knows how many records it contains.
+	 *
+	 * @param recordTime time of record in millis, time of the first record is time of buffer.
+	 */
+	void endRecord(long recordTime){
+		flushHighSurrogate();
+		if (mRecordsCount == 0){
+			mFirstRecordTime = recordTime;
+		}
+		mRecordsCount++;
+	}
+
+	int getRecordsCount(){
+		return mRecordsCount;
+	}
+
+	/**
+	 * @return time in millis of the first record of buffer.
+	 */
+	long getFirstRecordTime(){
+		return mFirstRecordTime;
+	}
+
+	void clear(){
+		mBuffer.clear();
+		mHighSurrogate = 0;
+		mRecordsCount = 0;
+	}
+
+	/**
+	 * Write all encoded bytes to current position of channel and clear buffer.
+	 */
+	void writeTo(WritableByteChannel channel) throws IOException {
+		mBuffer.flip();
+		while (mBuffer.hasRemaining()){
+			channel.write(mBuffer);
+		}
+		clear();
+	}
+
+	/**
+	 * Copy all encoded bytes to ring buffer and clear buffer.
+	 */
+	void writeTo(MappedRingBuffer ringBuffer){
+		mBuffer.flip();
+		ringBuffer.write(mBuffer);
+		clear();
+	}
+
+	private void encode(char character){
+		if (mHighSurrogate != 0){
+			char highSurrogate = mHighSurrogate;
+			mHighSurrogate = 0;
+			if (Character.isLowSurrogate(character)){
+				putCodePoint(Character.toCodePoint(highSurrogate, character));
+				return;
+			}
+			putCodePoint(REPLACEMENT_CHARACTER);
+		}
+
+		if (Character.isHighSurrogate(character)){
+			mHighSurrogate = character;
+		} else if (Character.isLowSurrogate(character)){
+			putCodePoint(REPLACEMENT_CHARACTER);
+		} else {
+			putCodePoint(character);
+		}
+	}
+
+	/*High surrogate, which was not followed by low one, is replaced before any byte, which is not a part of character.*/
+	private void flushHighSurrogate(){
+		if (mHighSurrogate != 0){
+			mHighSurrogate = 0;
+			putCodePoint(REPLACEMENT_CHARACTER);
+		}
+	}
+
+	private void putCodePoint(int codePoint){
+		if (codePoint < 0x80){
+			ensureCapacity(1);
+			mBuffer.put((byte) codePoint);
+		} else if (codePoint < 0x800){
+			ensureCapacity(2);
+			mBuffer.put((byte) (0xC0 | (codePoint >> 6)));
+			mBuffer.put((byte) (0x80 | (codePoint & 0x3F)));
+		} else if (codePoint < 0x10000){
+			ensureCapacity(3);
+			mBuffer.put((byte) (0xE0 | (codePoint >> 12)));
+			mBuffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			mBuffer.put((byte) (0x80 | (codePoint & 0x3F)));
+		} else {
+			ensureCapacity(4);
+			mBuffer.put((byte) (0xF0 | (codePoint >> 18)));
+			mBuffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+			mBuffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			mBuffer.put((byte) (0x80 | (codePoint & 0x3F)));
+		}
+	}
+
+	/*Buffer grows only for records, that are longer than whole buffer capacity.*/
+	private void ensureCapacity(int bytesCount){
+		if (mBuffer.remaining() >= bytesCount)
+			return;
+
+		ByteBuffer grownBuffer = ByteBuffer.allocateDirect(Math.max(mBuffer.capacity() * 2, mBuffer.position() + bytesCount));
+		mBuffer.flip();
+		grownBuffer.put(mBuffer);
+		mBuffer = grownBuffer;
+	}
+}
@@ -1,60 +1,475 @@
 package com.logtracking.lib.internal;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+/**
+ * Writes zip archive in one pass. Content of streamed entry is written straight into archive, so it is never written
+ * to temporary file. Packed files are compressed in parallel on compression lane of {@link LogScheduler}, while streamed
+ * entries are written, and they are copied into archive after streamed entries, in order of packing, when archive is closed.
+ * Compressed files could be taken from {@link AttachmentCache}, then their compressed data is copied as is.
+ * Not thread safe.
+ */
 class ZipArchiveHelper {
 
     private static final String ZIP_FILE_EXTENSION = ".zip";
+    private static final String PARTIAL_FILE_EXTENSION = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
-    private File mArchiveFile;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_END_SIGNATURE = 0x06054b50;
+    private static final int ZIP_VERSION = 20;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+    private static final int UTF_8_NAME_FLAG = 0x800;
+    private static final long MAX_ZIP_SIZE = 0xFFFFFFFFL;
 
-    public ZipArchiveHelper(String path) {
+    /*Files of these formats are already compressed, so they are stored as is.*/
+    private static final String[] STORED_FILE_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+    /*Entry, which is already written into archive, with its offset and flags for central directory.*/
+    private static class WrittenEntry {
+
+        final CompressedEntry mEntry;
+        final long mOffset;
+        final int mFlags;
+
+        WrittenEntry(CompressedEntry entry, long offset, int flags) {
+            mEntry = entry;
+            mOffset = offset;
+            mFlags = flags;
+        }
+    }
+
+    private final File mArchiveFile;
+    private final int mCompressionLevel;
+    private final CountingOutputStream mOutput;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private final WritableByteChannel mEntryChannel = new EntryChannel();
+    private final List<Future<CompressedEntry>> mPackedEntries = new ArrayList<Future<CompressedEntry>>();
+    private final List<WrittenEntry> mWrittenEntries = new ArrayList<WrittenEntry>();
+
+    /*Entries, compressed in background, with data files, which are not released yet. Guarded by itself.*/
+    private final List<CompressedEntry> mCompressedEntries = new ArrayList<CompressedEntry>();
+    private boolean mDiscarded;
+
+    /*State of streamed entry.*/
+    private final Deflater mDeflater;
+    private final CRC32 mEntryCrc = new CRC32();
+    private DeflaterOutputStream mEntryOutput;
+    private String mEntryName;
+    private long mEntryOffset;
+    private long mEntryDataOffset;
+    private long mEntrySize;
+    private long mEntryTime;
+
+    /**
+     * @param path path of archive without extension.
+     * @param compressionLevel compression level of compressed entries.
+     */
+    public ZipArchiveHelper(String path, int compressionLevel) throws IOException {
         mArchiveFile = new File(path + ZIP_FILE_EXTENSION);
+        File parentDirectory = mArchiveFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()){
+            parentDirectory.mkdirs();
+        }
+        mCompressionLevel = compressionLevel;
+        mDeflater = new Deflater(compressionLevel, true);
+        mOutput = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(mArchiveFile), BUFFER_SIZE));
     }
 
     public File getArchiveFile() {
         return mArchiveFile;
     }
 
-    public void packFiles(List<File> files) throws IOException {
-        ZipOutputStream zipOutput = new ZipOutputStream(new FileOutputStream(mArchiveFile));
-        packFiles(files,zipOutput);
-        zipOutput.close();
+    /**
+     * Start new streamed compressed entry, previous streamed entry is closed.
+     */
+    public void putNextEntry(String name) throws IOException {
+        closeEntry();
+
+        mEntryName = name;
+        mEntryOffset = mOutput.getCount();
+        mEntryTime = System.currentTimeMillis();
+        mEntrySize = 0;
+        mEntryCrc.reset();
+        mDeflater.reset();
+        writeLocalHeader(new CompressedEntry(name, ZipEntry.DEFLATED, 0, 0, 0, mEntryTime, null, false),
+                         UTF_8_NAME_FLAG | DATA_DESCRIPTOR_FLAG);
+        mEntryDataOffset = mOutput.getCount();
+        mEntryOutput = new DeflaterOutputStream(mOutput, mDeflater, BUFFER_SIZE);
+    }
+
+    /**
+     * @return channel, which writes into current streamed entry.
+     */
+    public WritableByteChannel getEntryChannel() {
+        return mEntryChannel;
     }
 
-    private void packFiles(List<File> files, ZipOutputStream zipOutput) throws IOException {
+    public void write(byte[] bytes) throws IOException {
+        writeEntry(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write content of stream into current streamed entry.
+     */
+    public void write(InputStream input) throws IOException {
+        int count;
+        while ((count = input.read(mBuffer)) > 0) {
+            writeEntry(mBuffer, 0, count);
+        }
+    }
+
+    /**
+     * Add files as separate entries, which are compressed in background. Files of directories are added
+     * without directories structure.
+     */
+    public void packFiles(List<File> files) {
+        packFiles(files, null);
+    }
+
+    /**
+     * Same as {@link #packFiles(List)}, but compressed files are taken from cache, if they weren't changed
+     * since they were cached, otherwise they are compressed into cache.
+     */
+    public void packFiles(List<File> files, AttachmentCache cache) {
         for (File file : files) {
 
             if (!file.exists())
                 continue;
 
             if(file.isDirectory()){
-                packFiles(Arrays.asList(file.listFiles()),zipOutput);
+                File[] directoryFiles = file.listFiles();
+                if (directoryFiles != null) {
+                    packFiles(Arrays.asList(directoryFiles), cache);
+                }
                 continue;
             }
 
-            FileInputStream fileInput = null;
-            try {
+            File dataFile = new File(mArchiveFile.getPath() + "." + mPackedEntries.size() + PARTIAL_FILE_EXTENSION);
+            mPackedEntries.add(LogScheduler.getExecutor(LogScheduler.Lane.COMPRESSION).submit(new CompressionTask(file, dataFile, cache)));
+        }
+    }
 
+    /**
+     * Close streamed entry, write packed files and complete archive.
+     */
+    public void close() throws IOException {
+        try {
+            closeEntry();
+            for (Future<CompressedEntry> packedEntry : mPackedEntries) {
+                CompressedEntry entry = getPackedEntry(packedEntry);
+                try {
+                    writeCompressedEntry(entry);
+                } finally {
+                    entry.release();
+                }
+            }
+            mPackedEntries.clear();
+            writeCentralDirectory();
+        } finally {
+            releasePackedEntries();
+            mDeflater.end();
+            mOutput.close();
+        }
+    }
+
+    /**
+     * Stop writing of archive and remove it, e.g. if content of report couldn't be prepared.
+     */
+    public void discard() {
+        releasePackedEntries();
+        mDeflater.end();
+        try {
+            mOutput.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mArchiveFile.delete();
+    }
+
+    private void writeEntry(byte[] bytes, int offset, int length) throws IOException {
+        if (mEntryOutput == null)
+            throw new IOException("Entry of archive is not started");
+
+        mEntryOutput.write(bytes, offset, length);
+        mEntryCrc.update(bytes, offset, length);
+        mEntrySize += length;
+    }
+
+    private void closeEntry() throws IOException {
+        if (mEntryOutput == null)
+            return;
+
+        mEntryOutput.finish();
+        mEntryOutput = null;
+
+        CompressedEntry entry = new CompressedEntry(mEntryName, ZipEntry.DEFLATED, mEntryCrc.getValue(), mEntrySize,
+                                                    mOutput.getCount() - mEntryDataOffset, mEntryTime, null, false);
+        checkSize(entry);
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(entry.mCrc);
+        writeInt(entry.mCompressedSize);
+        writeInt(entry.mSize);
+        mWrittenEntries.add(new WrittenEntry(entry, mEntryOffset, UTF_8_NAME_FLAG | DATA_DESCRIPTOR_FLAG));
+    }
 
-                fileInput = new FileInputStream(file);
-                zipOutput.putNextEntry(new ZipEntry(file.getName()));
+    private CompressedEntry getPackedEntry(Future<CompressedEntry> packedEntry) throws IOException {
+        try {
+            return packedEntry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression of entry is interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Unable to compress entry", e.getCause());
+        }
+    }
+
+    /*
+     * Compression of not started entries is cancelled, data files of compressed entries are removed.
+     * Entries, which are compressed right now, are released by compression threads.
+     */
+    private void releasePackedEntries() {
+        for (Future<CompressedEntry> packedEntry : mPackedEntries) {
+            packedEntry.cancel(false);
+        }
+        mPackedEntries.clear();
+
+        synchronized (mCompressedEntries) {
+            mDiscarded = true;
+            for (CompressedEntry entry : mCompressedEntries) {
+                entry.release();
+            }
+            mCompressedEntries.clear();
+        }
+    }
+
+    private void writeCompressedEntry(CompressedEntry entry) throws IOException {
+        checkSize(entry);
+        long offset = mOutput.getCount();
+        writeLocalHeader(entry, UTF_8_NAME_FLAG);
 
-                byte[] b = new byte[1024];
-                int count;
+        InputStream input = new FileInputStream(entry.mDataFile);
+        try {
+            long remaining = entry.mCompressedSize;
+            while (remaining > 0) {
+                int count = input.read(mBuffer, 0, (int) Math.min(mBuffer.length, remaining));
+                if (count < 0)
+                    throw new IOException("File " + entry.mDataFile + " was changed during archiving");
+                mOutput.write(mBuffer, 0, count);
+                remaining -= count;
+            }
+        } finally {
+            input.close();
+        }
+        mWrittenEntries.add(new WrittenEntry(entry, offset, UTF_8_NAME_FLAG));
+    }
 
-                while ((count = fileInput.read(b)) > 0) {
-                    zipOutput.write(b, 0, count);
+    private void writeLocalHeader(CompressedEntry entry, int flags) throws IOException {
+        byte[] name = entry.mName.getBytes(UTF_8);
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(ZIP_VERSION);
+        writeShort(flags);
+        writeShort(entry.mMethod);
+        writeInt(toDosTime(entry.mTime));
+        writeInt(entry.mCrc);
+        writeInt(entry.mCompressedSize);
+        writeInt(entry.mSize);
+        writeShort(name.length);
+        writeShort(0);
+        mOutput.write(name);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long offset = mOutput.getCount();
+        for (WrittenEntry writtenEntry : mWrittenEntries) {
+            CompressedEntry entry = writtenEntry.mEntry;
+            byte[] name = entry.mName.getBytes(UTF_8);
+            writeInt(CENTRAL_HEADER_SIGNATURE);
+            writeShort(ZIP_VERSION);
+            writeShort(ZIP_VERSION);
+            writeShort(writtenEntry.mFlags);
+            writeShort(entry.mMethod);
+            writeInt(toDosTime(entry.mTime));
+            writeInt(entry.mCrc);
+            writeInt(entry.mCompressedSize);
+            writeInt(entry.mSize);
+            writeShort(name.length);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt(writtenEntry.mOffset);
+            mOutput.write(name);
+        }
+        long size = mOutput.getCount() - offset;
+        if (offset > MAX_ZIP_SIZE || mWrittenEntries.size() > 0xFFFF)
+            throw new IOException("Archive is too large");
+
+        writeInt(CENTRAL_END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(mWrittenEntries.size());
+        writeShort(mWrittenEntries.size());
+        writeInt(size);
+        writeInt(offset);
+        writeShort(0);
+    }
+
+    /*Archive is written without zip64 extensions.*/
+    private void checkSize(CompressedEntry entry) throws IOException {
+        if (entry.mSize > MAX_ZIP_SIZE || entry.mCompressedSize > MAX_ZIP_SIZE || mOutput.getCount() > MAX_ZIP_SIZE)
+            throw new IOException("Entry " + entry.mName + " is too large");
+    }
+
+    private void writeShort(int value) throws IOException {
+        mOutput.write(value & 0xFF);
+        mOutput.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    /*Date and time in MS-DOS format : time in low 16 bits, date in high 16 bits.*/
+    private static long toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980)
+            return (1 << 21) | (1 << 16);
+
+        return ((long) (year - 1980) << 25) |
+               ((calendar.get(Calendar.MONTH) + 1) << 21) |
+               (calendar.get(Calendar.DAY_OF_MONTH) << 16) |
+               (calendar.get(Calendar.HOUR_OF_DAY) << 11) |
+               (calendar.get(Calendar.MINUTE) << 5) |
+               (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    private static boolean isCompressedFile(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        for (String extension : STORED_FILE_EXTENSIONS) {
+            if (name.endsWith(extension))
+                return true;
+        }
+        return false;
+    }
+
+    private class CompressionTask implements Callable<CompressedEntry> {
+
+        private final File mFile;
+        private final File mDataFile;
+        private final AttachmentCache mCache;
+
+        CompressionTask(File file, File dataFile, AttachmentCache cache) {
+            mFile = file;
+            mDataFile = dataFile;
+            mCache = cache;
+        }
+
+        @Override
+        public CompressedEntry call() throws IOException {
+            synchronized (mCompressedEntries) {
+                if (mDiscarded)
+                    return null;
+            }
+
+            CompressedEntry entry = compress();
+
+            synchronized (mCompressedEntries) {
+                if (mDiscarded) {
+                    entry.release();
+                    return null;
+                }
+                mCompressedEntries.add(entry);
+            }
+            return entry;
+        }
+
+        private CompressedEntry compress() throws IOException {
+            if (isCompressedFile(mFile))
+                return CompressedEntry.store(mFile);
+            if (mCache == null)
+                return CompressedEntry.deflate(mFile, mDataFile, mCompressionLevel);
+
+            CompressedEntry cachedEntry = mCache.get(mFile, mCompressionLevel);
+            return cachedEntry != null ? cachedEntry : mCache.put(mFile, mCompressionLevel);
+        }
+    }
+
+    /*Bytes of heap buffers are written as is, bytes of direct buffers are copied through shared buffer.*/
+    private class EntryChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int count = source.remaining();
+            if (source.hasArray()) {
+                writeEntry(source.array(), source.arrayOffset() + source.position(), count);
+                source.position(source.limit());
+            } else {
+                while (source.hasRemaining()) {
+                    int length = Math.min(source.remaining(), mBuffer.length);
+                    source.get(mBuffer, 0, length);
+                    writeEntry(mBuffer, 0, length);
                 }
-            } finally {
-                if(fileInput!=null)
-                    fileInput.close();
             }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long mCount;
+
+        CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            out.write(oneByte);
+            mCount++;
+        }
 
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            mCount += length;
         }
     }
 }
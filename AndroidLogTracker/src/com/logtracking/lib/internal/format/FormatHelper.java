@@ -0,0 +1,31 @@
+package com.logtracking.lib.internal.format;
+
+import java.io.IOException;
+
+final class FormatHelper {
+
+    private FormatHelper(){
+    }
+
+    /*Write decimal representation of number without creating intermediate string.*/
+    static void appendNumber(Appendable destination, long value) throws IOException {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                destination.append(Long.toString(value));
+                return;
+            }
+            destination.append('-');
+            value = -value;
+        }
+
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+
+        while (divisor > 0) {
+            destination.append((char) ('0' + value / divisor % 10));
+            divisor /= 10;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.logtracking.lib.internal.format;
 import android.content.Context;
 import com.logtracking.lib.internal.LogModel;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -91,14 +92,39 @@ public class HtmlLogFileFormatter implements LogFileFormatter {
 
     @Override
     public String formatLogRecord(LogModel model) {
-        return mSpannableTableFormatter.formatSpanRow(  mLevelSpanMap.get(model.getLevelSymbol()),
-                                                        model.getFormattedDate(),
-                                                        Character.toString(model.getLevelSymbol()),
-                                                        Integer.toString(model.getPid()),
-                                                        Long.toString(model.getTid()),
-                                                        model.getPackageName(),
-                                                        model.getTag(),
-                                                        model.getMessage());
+        StringBuilder builder = new StringBuilder();
+        try {
+            formatLogRecord(model, builder);
+        } catch (IOException e) {
+            /*Never thrown by StringBuilder*/
+            e.printStackTrace();
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void formatLogRecord(LogModel model, Appendable destination) throws IOException {
+        String cellOpenTag = mSpannableTableFormatter.getSpanCellOpenTag(mLevelSpanMap.get(model.getLevelSymbol()));
+        String cellCloseTag = mSpannableTableFormatter.mSpanCellCloseTag;
+
+        destination.append(mSpannableTableFormatter.mTableRowOpenTag);
+
+        destination.append(cellOpenTag).append(model.getFormattedDate()).append(cellCloseTag);
+        destination.append(cellOpenTag).append(model.getLevelSymbol()).append(cellCloseTag);
+
+        destination.append(cellOpenTag);
+        FormatHelper.appendNumber(destination, model.getPid());
+        destination.append(cellCloseTag);
+
+        destination.append(cellOpenTag);
+        FormatHelper.appendNumber(destination, model.getTid());
+        destination.append(cellCloseTag);
+
+        destination.append(cellOpenTag).append(model.getPackageName()).append(cellCloseTag);
+        destination.append(cellOpenTag).append(model.getTag()).append(cellCloseTag);
+        destination.append(cellOpenTag).append(model.getMessage()).append(cellCloseTag);
+
+        destination.append(mSpannableTableFormatter.mTableRowCloseTag);
     }
 
     @Override
@@ -184,16 +210,25 @@ public class HtmlLogFileFormatter implements LogFileFormatter {
         String mSpanCellOpenTag;
         String mSpanCellCloseTag;
 
+        /*Cell open tags for each style, to avoid formatting of them for each row.*/
+        Map<String,String> mStyledSpanCellOpenTags;
+
         SpannableTableFormatter() {
             super();
             mSpanOpenTag = getString(alt_html_span_open_tag);
             mSpanCloseTag = getString(alt_html_span_close_tag);
             mSpanCellOpenTag = mTableCellOpenTag + mSpanOpenTag;
             mSpanCellCloseTag = mSpanCloseTag + mTableCellCloseTag;
+            mStyledSpanCellOpenTags = new HashMap<String,String>();
         }
 
-        String formatSpanRow(String style, String... columns){
-            return formatRow(format(mSpanCellOpenTag,style), mSpanCellCloseTag, columns);
+        String getSpanCellOpenTag(String style){
+            String cellOpenTag = mStyledSpanCellOpenTags.get(style);
+            if (cellOpenTag == null){
+                cellOpenTag = format(mSpanCellOpenTag, style);
+                mStyledSpanCellOpenTags.put(style, cellOpenTag);
+            }
+            return cellOpenTag;
         }
     }
 }
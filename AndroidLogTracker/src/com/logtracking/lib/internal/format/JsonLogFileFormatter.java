@@ -1,5 +1,6 @@
 package com.logtracking.lib.internal.format;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -12,6 +13,8 @@ import static com.logtracking.lib.internal.format.Tags.*;
 
 public class JsonLogFileFormatter implements LogFileFormatter {
 
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
 	@Override
 	public String getFileExtension() {
 		return ".json";
@@ -35,24 +38,44 @@ public class JsonLogFileFormatter implements LogFileFormatter {
 	
 	@Override
 	public String formatLogRecord(LogModel model) {
+		StringBuilder builder = new StringBuilder();
 		try {
-
-			JSONObject formattedModel = new JSONObject();
-			formattedModel.put(DATE_KEY, model.getFormattedDate());
-			formattedModel.put(LEVEL_KEY, model.getLevelSymbol());
-			formattedModel.put(PID_KEY, model.getPid());
-			formattedModel.put(TID_KEY, model.getTid());
-			formattedModel.put(PACKAGE_NAME_KEY, model.getPackageName());
-			formattedModel.put(TAG_KEY, model.getTag());
-			formattedModel.put(MESSAGE_KEY, model.getMessage());
-
-			return new JSONObject().put(RECORD_KEY, formattedModel).toString()  + ",";
-
-		} catch (JSONException e) {
+			formatLogRecord(model, builder);
+		} catch (IOException e) {
 			e.printStackTrace();
 			return "";
 		}
-		
+		return builder.toString();
+	}
+
+	@Override
+	public void formatLogRecord(LogModel model, Appendable destination) throws IOException {
+		destination.append('{');
+		appendKey(destination, RECORD_KEY);
+		destination.append('{');
+
+		appendKey(destination, DATE_KEY);
+		appendString(destination, model.getFormattedDate());
+
+		if (model.getLevelSymbol() != null){
+			destination.append(',');
+			appendKey(destination, LEVEL_KEY);
+			destination.append('"').append(model.getLevelSymbol()).append('"');
+		}
+
+		destination.append(',');
+		appendKey(destination, PID_KEY);
+		FormatHelper.appendNumber(destination, model.getPid());
+
+		destination.append(',');
+		appendKey(destination, TID_KEY);
+		FormatHelper.appendNumber(destination, model.getTid());
+
+		appendOptionalField(destination, PACKAGE_NAME_KEY, model.getPackageName());
+		appendOptionalField(destination, TAG_KEY, model.getTag());
+		appendOptionalField(destination, MESSAGE_KEY, model.getMessage());
+
+		destination.append("}},");
 	}
 
 	@Override
@@ -90,4 +113,64 @@ public class JsonLogFileFormatter implements LogFileFormatter {
         return '"' + REPORT_MESSAGE_KEY + '"' + ":" + '"' + message + '"' + ",";
 	}
 
+	/*Same as JSONObject#put : field with null value is not written.*/
+	private void appendOptionalField(Appendable destination, String key, String value) throws IOException {
+		if (value != null){
+			destination.append(',');
+			appendKey(destination, key);
+			appendString(destination, value);
+		}
+	}
+
+	private void appendKey(Appendable destination, String key) throws IOException {
+		appendString(destination, key);
+		destination.append(':');
+	}
+
+	/*Write quoted string, escaped in the same way as JSONObject does.*/
+	private void appendString(Appendable destination, String value) throws IOException {
+		destination.append('"');
+		for (int i = 0; i < value.length(); i++){
+			char character = value.charAt(i);
+			switch (character){
+				case '"':
+				case '\\':
+				case '/':
+					destination.append('\\').append(character);
+					break;
+
+				case '\t':
+					destination.append("\\t");
+					break;
+
+				case '\b':
+					destination.append("\\b");
+					break;
+
+				case '\n':
+					destination.append("\\n");
+					break;
+
+				case '\r':
+					destination.append("\\r");
+					break;
+
+				case '\f':
+					destination.append("\\f");
+					break;
+
+				default:
+					if (character <= 0x1F){
+						destination.append("\\u00");
+						destination.append(HEX_DIGITS[character >> 4]);
+						destination.append(HEX_DIGITS[character & 0xF]);
+					} else {
+						destination.append(character);
+					}
+					break;
+			}
+		}
+		destination.append('"');
+	}
+
 }
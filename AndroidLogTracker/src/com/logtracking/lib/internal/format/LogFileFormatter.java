@@ -1,5 +1,6 @@
 package com.logtracking.lib.internal.format;
 
+import java.io.IOException;
 import java.util.Map;
 
 import com.logtracking.lib.internal.LogModel;
@@ -25,6 +26,11 @@ public interface LogFileFormatter {
 	String getLoggingCloseTag(); 
 	
 	String formatLogRecord(LogModel model);
+
+	/**
+	 * Write formatted record straight into destination, without creating intermediate string.
+	 */
+	void formatLogRecord(LogModel model, Appendable destination) throws IOException;
 	
 	String getDocumentCloseTag();
 }
@@ -1,11 +1,18 @@
 package com.logtracking.lib.internal.format;
 
+import com.logtracking.lib.api.config.LogConfiguration;
 import com.logtracking.lib.internal.LogContext;
 
 public class LogFileFormatterFactory {
 
+	/*Binary log file is decoded to text format of report, so formatter of this format is used for report file.*/
 	public static LogFileFormatter getFormatter(LogContext logContext){
-		switch(logContext.getLogConfiguration().getLogFileFormat()){
+		LogConfiguration.LogFileFormat fileFormat = logContext.getLogConfiguration().getLogFileFormat();
+		if (fileFormat == LogConfiguration.LogFileFormat.BINARY){
+			fileFormat = logContext.getLogConfiguration().getReportFileFormat();
+		}
+
+		switch(fileFormat){
 			case DEFAULT:
 				return new NativeLogFileFormatter();
 				
@@ -1,5 +1,6 @@
 package com.logtracking.lib.internal.format;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -35,6 +36,11 @@ public class NativeLogFileFormatter implements LogFileFormatter {
 		return model.getFullLogRecord();
 	}
 
+	@Override
+	public void formatLogRecord(LogModel model, Appendable destination) throws IOException {
+		destination.append(model.getFullLogRecord());
+	}
+
 	@Override
 	public String getDocumentOpenTag() {
 		return "";
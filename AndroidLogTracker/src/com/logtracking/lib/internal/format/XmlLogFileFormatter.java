@@ -1,5 +1,6 @@
 package com.logtracking.lib.internal.format;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -46,21 +47,51 @@ public class XmlLogFileFormatter implements LogFileFormatter {
 	@Override
 	public String formatLogRecord(LogModel model) {
 		clearBuilder();
-
-		mXmlDocBuilder.append("<");
-		mXmlDocBuilder.append(RECORD_KEY);
-		addAttribute(DATE_KEY , model.getFormattedDate());
-		addAttribute(LEVEL_KEY, Character.toString(model.getLevelSymbol()));
-		addAttribute(PID_KEY, Integer.toString(model.getPid()));
-		addAttribute(TID_KEY, Long.toString(model.getTid()));
-		addAttribute(PACKAGE_NAME_KEY, model.getPackageName());
-		addAttribute(TAG_KEY, removeControlCharacters(model.getTag()));
-		addAttribute(MESSAGE_KEY, removeControlCharacters(model.getMessage()));
-		mXmlDocBuilder.append("/>");
-		
+		try {
+			formatLogRecord(model, mXmlDocBuilder);
+		} catch (IOException e) {
+			/*Never thrown by StringBuilder*/
+			e.printStackTrace();
+		}
 		return mXmlDocBuilder.toString();
 	}
 
+	@Override
+	public void formatLogRecord(LogModel model, Appendable destination) throws IOException {
+		destination.append("<");
+		destination.append(RECORD_KEY);
+
+		openAttribute(destination, DATE_KEY);
+		destination.append(model.getFormattedDate());
+		closeAttribute(destination);
+
+		openAttribute(destination, LEVEL_KEY);
+		destination.append(model.getLevelSymbol());
+		closeAttribute(destination);
+
+		openAttribute(destination, PID_KEY);
+		FormatHelper.appendNumber(destination, model.getPid());
+		closeAttribute(destination);
+
+		openAttribute(destination, TID_KEY);
+		FormatHelper.appendNumber(destination, model.getTid());
+		closeAttribute(destination);
+
+		openAttribute(destination, PACKAGE_NAME_KEY);
+		destination.append(model.getPackageName());
+		closeAttribute(destination);
+
+		openAttribute(destination, TAG_KEY);
+		appendWithoutControlCharacters(destination, model.getTag());
+		closeAttribute(destination);
+
+		openAttribute(destination, MESSAGE_KEY);
+		appendWithoutControlCharacters(destination, model.getMessage());
+		closeAttribute(destination);
+
+		destination.append("/>");
+	}
+
 	@Override
 	public String getDocumentOpenTag() {
 		return DOCUMENT_OPEN_TAG;
@@ -101,10 +132,6 @@ public class XmlLogFileFormatter implements LogFileFormatter {
         mXmlDocBuilder.delete(0, length);
     }
 
-    private void addAttribute(String key , String value){
-        addAttribute(mXmlDocBuilder,key,value);
-    }
-
     private void addAttribute(StringBuilder builder , String key , String value){
         builder.append(" ");
         builder.append(key);
@@ -115,19 +142,42 @@ public class XmlLogFileFormatter implements LogFileFormatter {
         builder.append("'");
     }
 
+    private void openAttribute(Appendable destination, String key) throws IOException {
+        destination.append(" ");
+        destination.append(key);
+        destination.append("=");
+        destination.append("'");
+    }
+
+    private void closeAttribute(Appendable destination) throws IOException {
+        destination.append("'");
+    }
+
     private String removeControlCharacters(String sourceString){
         if (sourceString == null)
             return "";
 
         StringBuilder builder = new StringBuilder();
+        try {
+            appendWithoutControlCharacters(builder, sourceString);
+        } catch (IOException e) {
+            /*Never thrown by StringBuilder*/
+            e.printStackTrace();
+        }
+        return  builder.toString();
+    }
+
+    private void appendWithoutControlCharacters(Appendable destination, String sourceString) throws IOException {
+        if (sourceString == null)
+            return;
+
         for (int i=0;i<sourceString.length();i++){
             char character = sourceString.charAt(i);
             if(XMLChar.isValid(character) && character != '<' && character != '>' && character != '/'
                     && character != "'".charAt(0)){
 
-                builder.append(character);
+                destination.append(character);
             }
         }
-        return  builder.toString();
     }
 }
@@ -5,6 +5,7 @@ import javax.mail.MessagingException;
 
 import com.logtracking.lib.api.config.EmailLogSendingConfiguration;
 import com.logtracking.lib.internal.LogContext;
+import com.logtracking.lib.internal.LogMetrics;
 import com.logtracking.lib.internal.IssueReport;
 
 class EmailLogReportSender extends LogReportSender {
@@ -32,6 +33,7 @@ class EmailLogReportSender extends LogReportSender {
         if ( !checkSendPossibility(issueReport) )
               return;
 
+		long startNanos = System.nanoTime();
 		try {
 
             mEmailSender.sendMail(mReportSubject ,
@@ -45,6 +47,8 @@ class EmailLogReportSender extends LogReportSender {
 
             notifyReportSendFail(issueReport);
 
+		} finally {
+			LogMetrics.UPLOAD.stop(startNanos);
 		}
 
 	}
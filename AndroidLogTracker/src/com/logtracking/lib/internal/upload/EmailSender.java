@@ -22,6 +22,8 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 
+import com.logtracking.lib.internal.LogMetrics;
+
 class EmailSender extends Authenticator {
 
     static {   
@@ -87,6 +89,9 @@ class EmailSender extends Authenticator {
     private void sendMailWithRetries(MimeMessage message) throws MessagingException{
         MessagingException exception = null;
         for(int i=1;i<=mSendRetriesCount;i++){
+            if (i > 1){
+                LogMetrics.UPLOAD_RETRIES.increment();
+            }
             try {
                 Transport.send(message);
                 return;
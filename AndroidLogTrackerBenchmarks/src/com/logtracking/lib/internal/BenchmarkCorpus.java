@@ -0,0 +1,127 @@
+package com.logtracking.lib.internal;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Lines of logcat "threadtime" corpus for benchmarks : recorded corpus file, or synthetic corpus, if name is
+ * {@link #SYNTHETIC}. Synthetic corpus is generated with fixed seed, so every run measures the same lines :
+ * tags of 1 to 37 characters, messages with cyrillic, CJK and emoji text, exception stack traces, which are
+ * written by logcat one frame per line, and levels distributed as in production log, where most lines are debug.
+ */
+final class BenchmarkCorpus {
+
+    static final String SYNTHETIC = "synthetic";
+
+    private static final int SYNTHETIC_LINES_COUNT = 20000;
+    private static final long SYNTHETIC_SEED = 0x5EEDL;
+
+    private static final char[] LEVELS = {'V', 'D', 'D', 'D', 'D', 'I', 'I', 'I', 'W', 'E'};
+    private static final String[] TAGS = {
+            "A", "GC", "Wifi", "dalvikvm", "ActivityManager", "AndroidRuntime", "ConnectivityService",
+            "com.example.shop.checkout.PaymentFlow", "OkHttp", "chromium", "SurfaceFlinger", "LogTracker",
+            "NetworkSecurityConfig", "InputMethodManagerService.Lifecycle"
+    };
+    private static final String[] MESSAGES = {
+            "GC_CONCURRENT freed 389K, 12%% free 3411K/3860K, paused 2ms+3ms, total 28ms",
+            "setWifiEnabled: true pid=812, uid=1000",
+            "Start proc com.example.shop for activity com.example.shop/.MainActivity: pid=%d uid=10087",
+            "--> GET https://api.example.com/v2/items?page=%d&limit=50 http/1.1",
+            "Пользователь открыл корзину, товаров: %d",
+            "购物车已更新，商品数量：%d",
+            "Upload finished 🚀 in %d ms",
+            "",
+            "Displayed com.example.shop/.checkout.CheckoutActivity: +%dms",
+            "<-- 200 OK https://api.example.com/v2/items (%dms, unknown-length body)"
+    };
+    private static final String[] EXCEPTION_HEADERS = {
+            "java.lang.IllegalStateException: Fragment not attached to activity",
+            "java.lang.NullPointerException: Attempt to invoke virtual method 'int java.lang.String.length()' on a null object reference",
+            "java.net.SocketTimeoutException: failed to connect to api.example.com/93.184.216.34 (port 443) after 10000ms"
+    };
+    private static final String[] FRAMES = {
+            "at android.os.Handler.dispatchMessage(Handler.java:102)",
+            "at android.os.Looper.loop(Looper.java:154)",
+            "at android.app.ActivityThread.main(ActivityThread.java:6119)",
+            "at java.lang.reflect.Method.invoke(Native Method)",
+            "at com.example.shop.checkout.PaymentFlow.submit(PaymentFlow.java:214)",
+            "at com.example.shop.checkout.CheckoutFragment$3.onClick(CheckoutFragment.java:87)",
+            "at okhttp3.internal.connection.RealConnection.connectSocket(RealConnection.java:242)"
+    };
+
+    private BenchmarkCorpus() {
+    }
+
+    static List<String> loadLines(String corpus) throws IOException {
+        if (SYNTHETIC.equals(corpus)) {
+            return generateLines(SYNTHETIC_LINES_COUNT, SYNTHETIC_SEED);
+        }
+
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Parse lines of corpus into separate records. Lines, which couldn't be parsed, are skipped.
+     */
+    static List<LogModel> loadRecords(String corpus) throws IOException {
+        LogParser parser = new LogParser();
+        List<LogModel> records = new ArrayList<LogModel>();
+        for (String line : loadLines(corpus)) {
+            try {
+                LogModel record = parser.parseLogRecord(line);
+                record.setPackageName("com.example.shop");
+                records.add(record);
+            } catch (ParseException e) {
+                // markers of logcat buffers, e.g. "--------- beginning of main"
+            }
+        }
+        return records;
+    }
+
+    static List<String> generateLines(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<String>(count);
+        long time = 0;
+        lines.add("--------- beginning of main");
+        while (lines.size() < count) {
+            time += random.nextInt(40);
+            int pid = 1000 + random.nextInt(8) * 311;
+            int tid = pid + random.nextInt(4);
+            String tag = TAGS[random.nextInt(TAGS.length)];
+
+            if (random.nextInt(50) == 0) {
+                lines.add(formatLine(time, pid, tid, 'E', tag, EXCEPTION_HEADERS[random.nextInt(EXCEPTION_HEADERS.length)]));
+                int framesCount = 5 + random.nextInt(20);
+                for (int i = 0; i < framesCount; i++) {
+                    lines.add(formatLine(time, pid, tid, 'E', tag, "\t" + FRAMES[random.nextInt(FRAMES.length)]));
+                }
+            } else {
+                String message = String.format(Locale.US, MESSAGES[random.nextInt(MESSAGES.length)], random.nextInt(5000));
+                lines.add(formatLine(time, pid, tid, LEVELS[random.nextInt(LEVELS.length)], tag, message));
+            }
+        }
+        return lines.subList(0, count);
+    }
+
+    private static String formatLine(long time, int pid, int tid, char level, String tag, String message) {
+        return String.format(Locale.US, "06-23 %02d:%02d:%02d.%03d %5d %5d %c %s: %s",
+                13 + time / 3600000 % 10, time / 60000 % 60, time / 1000 % 60, time % 1000, pid, tid, level, tag, message);
+    }
+}
@@ -0,0 +1,35 @@
+package com.logtracking.lib.internal;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with gc profiler and writes results in JSON, so results of releases could be compared.
+ * Per-record benchmarks report records per second as score and bytes allocated per record
+ * as "gc.alloc.rate.norm" secondary result.
+ * <p>
+ * Arguments : [regular expression of benchmarks, all by default] [result file, "jmh-result.json" by default].
+ * Corpus files are resolved against working directory, so it should be directory of benchmarks project.
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_INCLUDE = ".*Benchmark.*";
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : DEFAULT_INCLUDE)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 1 ? args[1] : DEFAULT_RESULT_FILE)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,130 @@
+package com.logtracking.lib.internal;
+
+import com.logtracking.lib.api.config.BackPressurePolicy;
+import com.logtracking.lib.api.config.LogFlushPolicy;
+import com.logtracking.lib.internal.format.NativeLogFileFormatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress test of capture on JVM : records of replayed or synthetic log are captured by {@link LogCaptureEngine}
+ * and written into temporary log file by {@link LogStorage} with its writer thread, as they are written by log saving task.
+ * Prints counts of records, records dropped by back-pressure policy, rate of capture, the longest lag of capture
+ * behind time of records, which shows whether capture keeps up with rate of source, and {@link LogMetrics} of run.
+ * <p>
+ * Arguments, back-pressure policy is {@link BackPressurePolicy#BLOCK} by default :
+ * <pre>
+ * [block | drop_oldest | spill_to_disk] replay &lt;file&gt; [speed, 1 is real time, 0 is as fast as possible] [binary]
+ * [block | drop_oldest | spill_to_disk] synthetic &lt;records per second, 0 is as fast as possible&gt; &lt;records count&gt;
+ *                                       [burst rate] [burst ms] [burst period ms]
+ * </pre>
+ */
+public final class CaptureStressRunner {
+
+    private static final int FLUSH_SIZE_THRESHOLD = 64 * 1024;
+    private static final long FLUSH_MAX_LATENCY = 500;
+    private static final char MIN_LEVEL_SYMBOL = 'I';
+
+    private CaptureStressRunner() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        BackPressurePolicy backPressurePolicy = BackPressurePolicy.BLOCK;
+        if (args.length > 0 && parseBackPressurePolicy(args[0]) != null) {
+            backPressurePolicy = parseBackPressurePolicy(args[0]);
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        LogSource source;
+        LogPacer pacer;
+        if (args.length >= 2 && "replay".equals(args[0])) {
+            double speed = args.length > 2 ? Double.parseDouble(args[2]) : LogPacer.REAL_TIME;
+            ReplayLogSource replay = ReplayLogSource.open(new File(args[1]), args.length > 3 && "binary".equals(args[3]), speed);
+            source = replay;
+            pacer = replay.getPacer();
+        } else if (args.length >= 3 && "synthetic".equals(args[0])) {
+            SyntheticLogSource.Builder builder = new SyntheticLogSource.Builder(0)
+                    .setRate(Integer.parseInt(args[1]))
+                    .setRecordsCount(Long.parseLong(args[2]))
+                    .addTag("ActivityManager", 10).addTag("OkHttp", 5).addTag("chromium", 3).addTag("LogTracker", 1)
+                    .addPid(1203, 5).addPid(3378, 3).addPid(812, 1)
+                    .setLevelWeight(LogLevels.VERBOSE, 20).setLevelWeight(LogLevels.DEBUG, 50);
+            if (args.length >= 6) {
+                builder.setBurst(Integer.parseInt(args[3]), Long.parseLong(args[4]), Long.parseLong(args[5]));
+            }
+            SyntheticLogSource synthetic = builder.build();
+            source = synthetic;
+            pacer = synthetic.getPacer();
+        } else {
+            System.err.println("Usage : [block | drop_oldest | spill_to_disk] " +
+                    "replay <file> [speed] [binary] | synthetic <rate> <count> [burst rate] [burst ms] [burst period ms]");
+            return;
+        }
+
+        File logFile = File.createTempFile("stress", ".log");
+        LogStorage storage = new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setFlushPolicy(new LogFlushPolicy(FLUSH_SIZE_THRESHOLD, FLUSH_MAX_LATENCY))
+                .setBackPressurePolicy(backPressurePolicy)
+                .build();
+        LogCaptureEngine engine = new LogCaptureEngine(new LevelFilter(), storage);
+
+        long startNanos = System.nanoTime();
+        storage.open();
+        try {
+            engine.capture(source);
+            storage.writeRemainingRecords(null);
+        } finally {
+            source.close();
+            storage.close();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        long recordsCount = engine.getCapturedRecordsCount() + engine.getSkippedRecordsCount() + engine.getFilteredRecordsCount();
+        System.out.println(String.format(Locale.US,
+                "policy %s, records %d, captured %d, skipped %d, filtered %d, dropped %d, written %d bytes in %d ms, " +
+                "%.0f records/s, max lag %d ms",
+                backPressurePolicy, recordsCount, engine.getCapturedRecordsCount(), engine.getSkippedRecordsCount(),
+                engine.getFilteredRecordsCount(), storage.getDroppedRecordsCount(), logFile.length(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), recordsCount * 1e9 / elapsedNanos,
+                TimeUnit.NANOSECONDS.toMillis(pacer.getMaxLagNanos())));
+        System.out.println(LogMetrics.snapshot());
+        logFile.delete();
+    }
+
+    private static BackPressurePolicy parseBackPressurePolicy(String argument) {
+        for (BackPressurePolicy policy : BackPressurePolicy.values()) {
+            if (policy.name().equalsIgnoreCase(argument)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /*Keeps records of info level and higher, as typical production configuration.*/
+    private static final class LevelFilter implements LogCaptureFilter {
+
+        @Override
+        public boolean filterAvailable() {
+            return true;
+        }
+
+        @Override
+        public boolean passLineHeader(int pid, char levelSymbol) {
+            return LogLevels.getLevel(levelSymbol) >= LogLevels.getLevel(MIN_LEVEL_SYMBOL);
+        }
+
+        @Override
+        public boolean passFilterRecord(LogModel record) {
+            return true;
+        }
+
+        @Override
+        public String packageNameByPid(int pid) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.logtracking.lib.internal;
+
+import com.logtracking.lib.internal.format.JsonLogFileFormatter;
+import com.logtracking.lib.internal.format.LogFileFormatter;
+import com.logtracking.lib.internal.format.NativeLogFileFormatter;
+import com.logtracking.lib.internal.format.XmlLogFileFormatter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures formatting of single record by each formatter : into new string, as records of report are formatted,
+ * and into reused buffer, as records are written into log file. Score is records per second and normalized allocation
+ * rate of gc profiler is bytes allocated per record. Html formatter needs resources of application context,
+ * so it is not measured on JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LogFormatterBenchmark {
+
+    @Param({"corpus/threadtime.log", BenchmarkCorpus.SYNTHETIC})
+    public String mCorpusFile;
+
+    @Param({"native", "xml", "json"})
+    public String mFormat;
+
+    private List<LogModel> mRecords;
+    private int mRecordIndex;
+    private LogFileFormatter mFormatter;
+    private final StringBuilder mBuffer = new StringBuilder(4096);
+
+    @Setup
+    public void setUp() throws IOException {
+        mRecords = BenchmarkCorpus.loadRecords(mCorpusFile);
+        if ("xml".equals(mFormat)) {
+            mFormatter = new XmlLogFileFormatter();
+        } else if ("json".equals(mFormat)) {
+            mFormatter = new JsonLogFileFormatter();
+        } else {
+            mFormatter = new NativeLogFileFormatter();
+        }
+    }
+
+    @Benchmark
+    public String formatToString() {
+        return mFormatter.formatLogRecord(nextRecord());
+    }
+
+    @Benchmark
+    public int formatToBuffer() throws IOException {
+        mBuffer.setLength(0);
+        mFormatter.formatLogRecord(nextRecord(), mBuffer);
+        return mBuffer.length();
+    }
+
+    private LogModel nextRecord() {
+        LogModel record = mRecords.get(mRecordIndex);
+        mRecordIndex = mRecordIndex + 1 < mRecords.size() ? mRecordIndex + 1 : 0;
+        return record;
+    }
+}
@@ -0,0 +1,145 @@
+package com.logtracking.lib.internal;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Compares threadtime line scanner of {@link LogParser} with previous Scanner-based implementation
+ * on recorded logcat corpus, and with scanner, which rejects lines by level before parsing.
+ * Each invocation of corpus benchmarks parses whole corpus, so their score is corpus passes per second.
+ * Single line is parsed by each invocation of {@link #parseLine}, so its score is lines per second and its normalized
+ * allocation rate of gc profiler is bytes allocated per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LogParserBenchmark {
+
+    private static final Pattern LOG_ENTRY_PATTERN = Pattern.compile(
+            "^(\\d\\d-\\d\\d\\s\\d\\d:\\d\\d:\\d\\d\\.\\d+)\\s*(\\d+)\\s*(\\d+)\\s([VDIWEAF])\\s(.*?):\\s+(.*)$");
+    private static final char MIN_LEVEL_SYMBOL = 'W';
+
+    @Param({"corpus/threadtime.log", BenchmarkCorpus.SYNTHETIC})
+    public String mCorpusFile;
+
+    private List<String> mLines;
+    private int mLineIndex;
+    private LogParser mLogParser;
+    private LogModel mRecycledRecord;
+
+    @Setup
+    public void setUp() throws IOException {
+        mLines = BenchmarkCorpus.loadLines(mCorpusFile);
+        mLogParser = new LogParser();
+        mRecycledRecord = new LogModel();
+    }
+
+    @Benchmark
+    public void threadTimeScanner(Blackhole blackhole) {
+        for (String line : mLines) {
+            try {
+                blackhole.consume(mLogParser.parseLogRecord(line));
+            } catch (ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void threadTimeScannerRecycled(Blackhole blackhole) {
+        for (String line : mLines) {
+            try {
+                blackhole.consume(mLogParser.parseLogRecord(line, mRecycledRecord));
+            } catch (ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    /*Production setting : only warnings and errors are kept, other lines are rejected by their header.*/
+    @Benchmark
+    public void headerPrefilterRecycled(Blackhole blackhole) {
+        for (String line : mLines) {
+            if (mLogParser.scanLineHeader(line) &&
+                LogLevels.getLevel(mLogParser.getScannedLevelSymbol()) < LogLevels.getLevel(MIN_LEVEL_SYMBOL)) {
+                continue;
+            }
+            try {
+                blackhole.consume(mLogParser.parseLogRecord(line, mRecycledRecord));
+            } catch (ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object parseLine() {
+        String line = mLines.get(mLineIndex);
+        mLineIndex = mLineIndex + 1 < mLines.size() ? mLineIndex + 1 : 0;
+        try {
+            return mLogParser.parseLogRecord(line, mRecycledRecord);
+        } catch (ParseException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public void patternOnly(Blackhole blackhole) {
+        for (String line : mLines) {
+            try {
+                blackhole.consume(mLogParser.parseLogRecordByPattern(line));
+            } catch (ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacyScanner(Blackhole blackhole) {
+        for (String line : mLines) {
+            try {
+                blackhole.consume(parseByScanner(line));
+            } catch (ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    /*Copy of LogParser.parseLogRecord before threadtime scanner was introduced.*/
+    private static LogModel parseByScanner(String line) throws ParseException {
+        Scanner scanner = new Scanner(line);
+
+        if(scanner.findWithinHorizon(LOG_ENTRY_PATTERN, 0) == null)
+            throw new ParseException("Unable to parse: " + line, 0);
+
+        MatchResult match = scanner.match();
+
+        LogModel model = new LogModel();
+        model.setFormattedDate(match.group(1));
+        model.setPid(Integer.parseInt(match.group(2).replaceAll("\\s", "")));
+        model.setTid(Integer.parseInt(match.group(3).replaceAll("\\s", "")));
+        model.setLevelSymbol(match.group(4).charAt(0));
+        model.setTag(match.group(5));
+        model.setMessage(match.group(6));
+
+        if(model.getMessage().endsWith("\r\n")){
+            model.setMessage(model.getMessage().substring(0, model.getMessage().length() - 2));
+        } else if(model.getMessage().endsWith("\n")) {
+            model.setMessage(model.getMessage().substring(0, model.getMessage().length() - 1));
+        }
+
+        model.setFullLogRecord(line);
+        return model;
+    }
+}
@@ -0,0 +1,67 @@
+package com.logtracking.lib.internal;
+
+import com.logtracking.lib.api.config.LogRecordFilter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LogRecordFilter}, which is applied by {@link LogFilter#passFilterRecord} to every parsed record,
+ * on records of recorded or synthetic corpus. Single record is checked by each invocation, so score is records
+ * per second and normalized allocation rate of gc profiler is bytes allocated per record.
+ * Pid filter of {@link LogFilter} is taken from snapshot of running processes, which is only available on device,
+ * so pids are checked by {@link LogRecordFilter#pids} here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RecordFilterBenchmark {
+
+    @Param({"corpus/threadtime.log", BenchmarkCorpus.SYNTHETIC})
+    public String mCorpusFile;
+
+    @Param({"level", "tags", "pids", "messageContains", "messageMatches", "composite"})
+    public String mFilter;
+
+    private List<LogModel> mRecords;
+    private int mRecordIndex;
+    private LogRecordFilter mRecordFilter;
+
+    @Setup
+    public void setUp() throws IOException {
+        mRecords = BenchmarkCorpus.loadRecords(mCorpusFile);
+        mRecordFilter = createFilter(mFilter);
+    }
+
+    @Benchmark
+    public boolean accept() {
+        LogModel record = mRecords.get(mRecordIndex);
+        mRecordIndex = mRecordIndex + 1 < mRecords.size() ? mRecordIndex + 1 : 0;
+        return mRecordFilter.accept(record);
+    }
+
+    private static LogRecordFilter createFilter(String name) {
+        if ("level".equals(name)) {
+            return LogRecordFilter.level(LogLevels.WARN);
+        } else if ("tags".equals(name)) {
+            return LogRecordFilter.tags("ActivityManager", "AndroidRuntime", "OkHttp", "LogTracker");
+        } else if ("pids".equals(name)) {
+            return LogRecordFilter.pids(1203, 1933, 3378);
+        } else if ("messageContains".equals(name)) {
+            return LogRecordFilter.messageContains("Exception");
+        } else if ("messageMatches".equals(name)) {
+            return LogRecordFilter.messageMatches("pid=\\d+");
+        } else if ("composite".equals(name)) {
+            return LogRecordFilter.tags("ActivityManager", "OkHttp")
+                    .or(LogRecordFilter.tagLevel("AndroidRuntime", LogLevels.ERROR))
+                    .and(LogRecordFilter.not(LogRecordFilter.messageContains("GC_CONCURRENT")));
+        }
+        throw new IllegalArgumentException("Unknown filter : " + name);
+    }
+}
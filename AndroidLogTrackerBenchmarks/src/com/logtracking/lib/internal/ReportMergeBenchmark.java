@@ -0,0 +1,122 @@
+package com.logtracking.lib.internal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bulk merge of log file segment into report by {@link ReportMergeHelper} with previous
+ * line by line merge, on segments of native format of 1, 10 and 50 MB, built from recorded or synthetic logcat corpus.
+ * Each invocation merges whole segment into empty report, so score is time of merge of one segment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportMergeBenchmark {
+
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String OPEN_LOGGING_TAG = "LOGGING_TAG:";
+    private static final String CLOSE_LOGGING_TAG = ":LOGGING_TAG";
+
+    @Param({"corpus/threadtime.log", BenchmarkCorpus.SYNTHETIC})
+    public String mCorpusFile;
+
+    @Param({"1", "10", "50"})
+    public int mSegmentSizeMb;
+
+    private File mSegmentFile;
+    private File mReportFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> lines = BenchmarkCorpus.loadLines(mCorpusFile);
+
+        mSegmentFile = File.createTempFile("segment", ".log");
+        mReportFile = File.createTempFile("report", ".log");
+
+        long segmentSize = mSegmentSizeMb * 1024L * 1024L;
+        long writtenSize = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mSegmentFile), "UTF-8"));
+        try {
+            writer.write(OPEN_LOGGING_TAG + LINE_SEPARATOR);
+            while (writtenSize < segmentSize) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write(LINE_SEPARATOR);
+                    writtenSize += line.length() + LINE_SEPARATOR.length();
+                }
+            }
+            writer.write(CLOSE_LOGGING_TAG + LINE_SEPARATOR);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSegmentFile.delete();
+        mReportFile.delete();
+    }
+
+    @Benchmark
+    public long bulkTransfer() throws IOException {
+        RandomAccessFile source = new RandomAccessFile(mSegmentFile, "r");
+        RandomAccessFile report = openEmptyReport();
+        try {
+            FileChannel sourceChannel = source.getChannel();
+            long start = ReportMergeHelper.findBodyStart(sourceChannel, (OPEN_LOGGING_TAG + LINE_SEPARATOR).getBytes("UTF-8"));
+            long end = ReportMergeHelper.findBodyEnd(sourceChannel, (CLOSE_LOGGING_TAG + LINE_SEPARATOR).getBytes("UTF-8"));
+            return ReportMergeHelper.transfer(sourceChannel, start, end, report.getChannel());
+        } finally {
+            source.close();
+            report.close();
+        }
+    }
+
+    @Benchmark
+    public long legacyReadLine() throws IOException {
+        RandomAccessFile source = new RandomAccessFile(mSegmentFile, "r");
+        RandomAccessFile report = openEmptyReport();
+        try {
+            mergeByReadLine(source, report);
+            return report.length();
+        } finally {
+            source.close();
+            report.close();
+        }
+    }
+
+    private RandomAccessFile openEmptyReport() throws IOException {
+        RandomAccessFile report = new RandomAccessFile(mReportFile, "rw");
+        report.setLength(0);
+        return report;
+    }
+
+    /*Copy of ReportPreparationTask.mergeLogFile before bulk transfer was introduced.*/
+    private static void mergeByReadLine(RandomAccessFile source, RandomAccessFile report) throws IOException {
+        boolean loggingStart = false;
+        String line;
+        while ((line = source.readLine()) != null) {
+            if (!loggingStart && line.equals(OPEN_LOGGING_TAG)) {
+                loggingStart = true;
+            } else if (line.equals(CLOSE_LOGGING_TAG)) {
+                break;
+            } else if (loggingStart) {
+                report.writeBytes(line);
+                report.writeBytes(LINE_SEPARATOR);
+            }
+        }
+    }
+}
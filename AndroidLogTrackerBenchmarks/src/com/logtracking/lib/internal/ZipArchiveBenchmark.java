@@ -0,0 +1,129 @@
+package com.logtracking.lib.internal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares packing of log file segments into report archive by {@link ZipArchiveHelper#packFiles}, where segments
+ * are compressed in parallel, with sequential {@link ZipOutputStream}. Segments are built from recorded or synthetic
+ * logcat corpus. Each invocation writes whole archive, so score is time of packing of all segments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipArchiveBenchmark {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"corpus/threadtime.log", BenchmarkCorpus.SYNTHETIC})
+    public String mCorpusFile;
+
+    @Param({"1", "4"})
+    public int mSegmentsCount;
+
+    @Param({"1", "10"})
+    public int mSegmentSizeMb;
+
+    @Param({"1", "6"})
+    public int mCompressionLevel;
+
+    private File mDirectory;
+    private List<File> mSegmentFiles;
+    private String mArchivePath;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> lines = BenchmarkCorpus.loadLines(mCorpusFile);
+
+        mDirectory = File.createTempFile("segments", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mArchivePath = new File(mDirectory, "report").getPath();
+
+        mSegmentFiles = new ArrayList<File>();
+        long segmentSize = mSegmentSizeMb * 1024L * 1024L;
+        for (int i = 0; i < mSegmentsCount; i++) {
+            File segmentFile = new File(mDirectory, "segment" + i + ".log");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(segmentFile), "UTF-8"));
+            try {
+                long writtenSize = 0;
+                int lineIndex = i * 7;
+                while (writtenSize < segmentSize) {
+                    String line = lines.get(lineIndex++ % lines.size());
+                    writer.write(line);
+                    writer.write('\n');
+                    writtenSize += line.length() + 1;
+                }
+            } finally {
+                writer.close();
+            }
+            mSegmentFiles.add(segmentFile);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public long packFiles() throws IOException {
+        ZipArchiveHelper archive = new ZipArchiveHelper(mArchivePath, mCompressionLevel);
+        archive.packFiles(mSegmentFiles);
+        archive.close();
+        File archiveFile = archive.getArchiveFile();
+        long length = archiveFile.length();
+        archiveFile.delete();
+        return length;
+    }
+
+    @Benchmark
+    public long sequentialZipOutputStream() throws IOException {
+        File archiveFile = new File(mArchivePath + ".zip");
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archiveFile));
+        output.setLevel(mCompressionLevel);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            for (File file : mSegmentFiles) {
+                output.putNextEntry(new ZipEntry(file.getName()));
+                InputStream input = new FileInputStream(file);
+                try {
+                    int count;
+                    while ((count = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, count);
+                    }
+                } finally {
+                    input.close();
+                }
+                output.closeEntry();
+            }
+        } finally {
+            output.close();
+        }
+        long length = archiveFile.length();
+        archiveFile.delete();
+        return length;
+    }
+}
@@ -0,0 +1,88 @@
+package com.androidlogtracker.tests.filter;
+
+import android.test.AndroidTestCase;
+import com.logtracking.lib.api.Log;
+import com.logtracking.lib.api.config.LogRecordFilter;
+import com.logtracking.lib.internal.LogModel;
+
+import static com.logtracking.lib.api.config.LogRecordFilter.*;
+
+public class LogRecordFilterTest extends AndroidTestCase {
+
+    private static final int OWN_PID = 100;
+    private static final int OTHER_PID = 200;
+
+    public void testPidFilter(){
+        LogRecordFilter filter = pids(300, OWN_PID, 50);
+
+        assertTrue(filter.accept(record(OWN_PID, Log.DEBUG, "Tag", "message")));
+        assertFalse(filter.accept(record(OTHER_PID, Log.DEBUG, "Tag", "message")));
+    }
+
+    public void testLevelFilter(){
+        LogRecordFilter filter = level(Log.WARN);
+
+        assertTrue(filter.accept(record(OWN_PID, Log.ERROR, "Tag", "message")));
+        assertTrue(filter.accept(record(OWN_PID, Log.WARN, "Tag", "message")));
+        assertFalse(filter.accept(record(OWN_PID, Log.INFO, "Tag", "message")));
+    }
+
+    public void testTagFilter(){
+        LogRecordFilter filter = tags("Network", "Database");
+
+        assertTrue(filter.accept(record(OWN_PID, Log.VERBOSE, "Network", "message")));
+        assertTrue(filter.accept(record(OWN_PID, Log.VERBOSE, "Database", "message")));
+        assertFalse(filter.accept(record(OWN_PID, Log.VERBOSE, "NetworkTag", "message")));
+        assertFalse(filter.accept(record(OWN_PID, Log.VERBOSE, "Ui", "message")));
+    }
+
+    public void testTagLevelAlternatives(){
+        LogRecordFilter filter = tagLevel("Network", Log.ERROR).or(tagLevel("Database", Log.INFO))
+                                                                .or(tagLevel("Network", Log.WARN));
+
+        assertTrue(filter.accept(record(OWN_PID, Log.WARN, "Network", "message")));
+        assertFalse(filter.accept(record(OWN_PID, Log.INFO, "Network", "message")));
+        assertTrue(filter.accept(record(OWN_PID, Log.INFO, "Database", "message")));
+        assertFalse(filter.accept(record(OWN_PID, Log.DEBUG, "Database", "message")));
+    }
+
+    public void testMessageFilters(){
+        LogRecordFilter containsFilter = messageContains("timeout");
+        LogRecordFilter patternFilter = messageMatches("code=\\d+");
+
+        assertTrue(containsFilter.accept(record(OWN_PID, Log.INFO, "Tag", "request timeout")));
+        assertFalse(containsFilter.accept(record(OWN_PID, Log.INFO, "Tag", "request done")));
+        assertTrue(patternFilter.accept(record(OWN_PID, Log.INFO, "Tag", "failed with code=404")));
+        assertFalse(patternFilter.accept(record(OWN_PID, Log.INFO, "Tag", "failed with code=")));
+    }
+
+    public void testComposition(){
+        LogRecordFilter filter = pids(OWN_PID).and(level(Log.WARN).or(tags("Network")))
+                                              .and(not(messageContains("heartbeat")));
+
+        assertTrue(filter.accept(record(OWN_PID, Log.ERROR, "Ui", "crash")));
+        assertTrue(filter.accept(record(OWN_PID, Log.DEBUG, "Network", "request")));
+        assertFalse(filter.accept(record(OWN_PID, Log.DEBUG, "Network", "heartbeat")));
+        assertFalse(filter.accept(record(OWN_PID, Log.DEBUG, "Ui", "click")));
+        assertFalse(filter.accept(record(OTHER_PID, Log.ERROR, "Ui", "crash")));
+    }
+
+    public void testInvalidArguments(){
+        try {
+            level(Log.ASSERT + 1);
+            fail("Level out of bound accepted");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            tags("Tag", null);
+            fail("Null tag accepted");
+        } catch (NullPointerException e) {
+            //expected
+        }
+    }
+
+    private static LogModel record(int pid, int level, String tag, String message){
+        return new LogModel(pid, 1, level, null, tag, message);
+    }
+}
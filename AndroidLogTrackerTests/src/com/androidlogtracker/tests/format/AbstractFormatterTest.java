@@ -5,9 +5,11 @@ import com.androidlogtracker.tests.util.TestDocument;
 import com.logtracking.lib.internal.LogModel;
 import com.logtracking.lib.internal.format.LogFileFormatter;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import static  com.androidlogtracker.tests.util.AssertUtils.*;
 import static  com.androidlogtracker.tests.util.TestLogDataProvider.*;
 import static  com.androidlogtracker.tests.util.TestMetaDataProvider.*;
 
@@ -49,6 +51,18 @@ public abstract class AbstractFormatterTest extends AndroidTestCase implements F
         assertNotSame("Empty string for non empty meta-data",result, "");
     }
 
+    @Override
+    public void testStreamedRecordShouldBeEqualToFormatted() {
+        LogModel record = generateLogRecord(DEFAULT_TEST_MESSAGE + " \u0421\u043e\u043e\u0431\u0449\u0435\u043d\u0438\u0435 \u65e5\u672c");
+        StringBuilder streamedRecord = new StringBuilder();
+        try {
+            mFormatter.formatLogRecord(record, streamedRecord);
+        } catch (IOException e) {
+            throwAssertError(e);
+        }
+        assertEquals("Streamed record not equal to formatted", mFormatter.formatLogRecord(record), streamedRecord.toString());
+    }
+
     protected TestDocument formatMessage(){
         return formatDocument(DEFAULT_TEST_MESSAGE,null,null);
     }
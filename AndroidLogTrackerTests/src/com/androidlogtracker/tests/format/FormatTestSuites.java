@@ -9,6 +9,8 @@ public interface FormatTestSuites {
 
     public void testMessageFormattedStringShouldBeNotEmpty();
 
+    public void testStreamedRecordShouldBeEqualToFormatted();
+
     public void testFormattedRecordShouldBeParsed();
 
     public void testFormattedMetaDataShouldBeParsed();
@@ -88,6 +88,11 @@ public class HtmlLogFileFormatterTest extends ActivityInstrumentationTestCase2 i
         mOriginalTest.testMessageFormattedStringShouldBeNotEmpty();
     }
 
+    @Override
+    public void testStreamedRecordShouldBeEqualToFormatted() {
+        mOriginalTest.testStreamedRecordShouldBeEqualToFormatted();
+    }
+
     @Override
     public void testFormattedRecordShouldBeParsed() {
         mOriginalTest.testFormattedRecordShouldBeParsed();
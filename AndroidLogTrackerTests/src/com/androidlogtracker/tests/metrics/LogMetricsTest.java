@@ -0,0 +1,57 @@
+package com.androidlogtracker.tests.metrics;
+
+import android.test.AndroidTestCase;
+import com.logtracking.lib.api.LogUtils;
+import com.logtracking.lib.internal.LogMetrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LogMetricsTest extends AndroidTestCase {
+
+    public void testCounterIsSummedOverThreads() throws InterruptedException {
+        long before = LogUtils.getMetrics().get("lines.read");
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        LogMetrics.LINES_READ.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(before + 4000, (long) LogUtils.getMetrics().get("lines.read"));
+    }
+
+    public void testFlushHistogram(){
+        Map<String, Long> before = LogUtils.getMetrics();
+
+        LogMetrics.FLUSH.record(TimeUnit.MICROSECONDS.toNanos(500));
+        LogMetrics.FLUSH.record(TimeUnit.MILLISECONDS.toNanos(10));
+        LogMetrics.FLUSH.record(TimeUnit.SECONDS.toNanos(2));
+
+        Map<String, Long> after = LogUtils.getMetrics();
+        assertEquals(3, after.get("flush.count") - before.get("flush.count"));
+        assertEquals(1, after.get("flush.le_1ms") - before.get("flush.le_1ms"));
+        assertEquals(1, after.get("flush.le_16ms") - before.get("flush.le_16ms"));
+        assertEquals(1, after.get("flush.gt_1024ms") - before.get("flush.gt_1024ms"));
+        assertTrue(after.get("flush.max_us") >= TimeUnit.SECONDS.toMicros(2));
+    }
+
+    public void testSnapshotIsUnmodifiable(){
+        try {
+            LogUtils.getMetrics().put("lines.read", 0L);
+            fail("Snapshot should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
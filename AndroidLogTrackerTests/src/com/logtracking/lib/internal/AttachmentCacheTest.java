@@ -0,0 +1,163 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class AttachmentCacheTest extends AndroidTestCase {
+
+    private File mDirectory;
+    private File mCacheDirectory;
+    private File mAttachment;
+    private AttachmentCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        mDirectory = File.createTempFile("cache", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mCacheDirectory = new File(mDirectory, "cache");
+        mAttachment = new File(mDirectory, "attachment.txt");
+        writeFile(mAttachment, "first version of attachment, first version of attachment", 1420000000000L);
+        mCache = new AttachmentCache(mCacheDirectory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = mCacheDirectory.listFiles();
+        if (files != null){
+            for (File file : files){
+                file.delete();
+            }
+        }
+        mCacheDirectory.delete();
+        mAttachment.delete();
+        mDirectory.delete();
+    }
+
+    public void testFileIsNotCachedUntilPut(){
+        assertNull(mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    public void testCachedEntryContainsDeflatedFile() throws IOException {
+        CompressedEntry putEntry = mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION);
+        CompressedEntry cachedEntry = mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION);
+
+        assertNotNull(cachedEntry);
+        assertEquals(putEntry.mDataFile, cachedEntry.mDataFile);
+        assertFalse(cachedEntry.mTemporaryDataFile);
+        assertEquals(mAttachment.getName(), cachedEntry.mName);
+        assertEquals(mAttachment.length(), cachedEntry.mSize);
+        assertEquals(putEntry.mCompressedSize, cachedEntry.mCompressedSize);
+
+        byte[] content = readFile(mAttachment);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(crc.getValue(), cachedEntry.mCrc);
+        assertTrue(Arrays.equals(content, inflate(cachedEntry)));
+        assertEquals(1, mCacheDirectory.list().length);
+    }
+
+    public void testChangedFileIsNotTakenFromCache() throws IOException {
+        mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION);
+        writeFile(mAttachment, "second version", mAttachment.lastModified() + 1000);
+
+        assertNull(mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION));
+
+        CompressedEntry entry = mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION);
+        assertTrue(Arrays.equals("second version".getBytes("UTF-8"), inflate(entry)));
+        assertEquals(entry.mDataFile, mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION).mDataFile);
+    }
+
+    public void testFileTouchedWithSameContentIsNotTakenFromCache() throws IOException {
+        mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION);
+        mAttachment.setLastModified(mAttachment.lastModified() + 1000);
+
+        assertNull(mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    public void testEntriesOfCompressionLevelsAreSeparate() throws IOException {
+        mCache.put(mAttachment, Deflater.BEST_SPEED);
+
+        assertNull(mCache.get(mAttachment, Deflater.BEST_COMPRESSION));
+        assertNotNull(mCache.get(mAttachment, Deflater.BEST_SPEED));
+    }
+
+    public void testStaleEntriesAreRemoved() throws IOException {
+        File removedAttachment = new File(mDirectory, "removed.txt");
+        writeFile(removedAttachment, "removed attachment", 1420000000000L);
+        mCache.put(removedAttachment, Deflater.DEFAULT_COMPRESSION);
+        removedAttachment.delete();
+
+        File staleEntry = mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION).mDataFile;
+        writeFile(mAttachment, "second version", mAttachment.lastModified() + 1000);
+        File currentEntry = mCache.put(mAttachment, Deflater.DEFAULT_COMPRESSION).mDataFile;
+
+        File brokenEntry = new File(mCacheDirectory, "broken.deflate");
+        writeFile(brokenEntry, "no trailer", System.currentTimeMillis());
+        File recentPartialFile = new File(mCacheDirectory, "recent.deflate.part");
+        writeFile(recentPartialFile, "written right now", System.currentTimeMillis());
+        File oldPartialFile = new File(mCacheDirectory, "old.deflate.part");
+        writeFile(oldPartialFile, "left by killed process", System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+        assertEquals(6, mCacheDirectory.list().length);
+
+        mCache.removeStaleEntries();
+
+        assertFalse(staleEntry.exists());
+        assertFalse(brokenEntry.exists());
+        assertFalse(oldPartialFile.exists());
+        assertTrue(currentEntry.exists());
+        assertTrue(recentPartialFile.exists());
+        assertEquals(2, mCacheDirectory.list().length);
+        assertNotNull(mCache.get(mAttachment, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    private static byte[] inflate(CompressedEntry entry) throws IOException {
+        InputStream input = new InflaterInputStream(new FileInputStream(entry.mDataFile), new Inflater(true));
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while (output.size() < entry.mSize && (count = input.read(buffer)) > 0){
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < content.length){
+                offset += input.read(content, offset, content.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private static void writeFile(File file, String content, long lastModified) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        file.setLastModified(lastModified);
+    }
+}
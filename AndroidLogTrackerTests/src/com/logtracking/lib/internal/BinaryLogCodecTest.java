@@ -0,0 +1,235 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+public class BinaryLogCodecTest extends AndroidTestCase {
+
+    private static final long TIME = 1420167845678L;
+    private static final String PACKAGE_NAME = "com.logtracking.lib.test";
+
+    public void testRecordsAreDecodedAsEncoded() throws IOException {
+        LogModel[] records = {
+                record(TIME, 'I', 1234, 5678, "ActivityManager", "Start proc com.example"),
+                record(TIME + 5, 'W', 1234, 5679, "Сеть", "Соединение потеряно, повтор через 5 с"),
+                record(TIME - 1000, 'E', 31337, 31340, "日志", "记录失败 : 磁盘已满"),
+                record(TIME + 86400000L, 'D', 7, 42, "Emoji", "smile 😀, rocket 🚀 and 𝄞"),
+                record(TIME, 'V', 1234, 5678, "", "record with empty tag"),
+                record(TIME, 'D', 1234, 5678, "ActivityManager", ""),
+        };
+        records[2].setPackageName(null);
+
+        BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(encode(records)));
+        for (LogModel record : records){
+            assertSameRecord(record, decoder.readRecord());
+        }
+        assertNull(decoder.readRecord());
+    }
+
+    public void testUnpairedSurrogateIsReplacedWithoutBreakingNextRecords() throws IOException {
+        LogModel[] records = {
+                record(TIME, 'I', 1, 2, "Tag\uD83D", "broken \uDE00 pair \uD83D"),
+                record(TIME, 'I', 1, 2, "Tag", "next record"),
+        };
+
+        BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(encode(records)));
+        LogModel decoded = decoder.readRecord();
+        assertEquals("Tag?", decoded.getTag());
+        assertEquals("broken ? pair ?", decoded.getMessage());
+        assertSameRecord(records[1], decoder.readRecord());
+        assertNull(decoder.readRecord());
+    }
+
+    public void testBlocksDontShareStringsAndTime() throws IOException {
+        LogModel first = record(TIME, 'I', 1, 2, "Shared", "first block");
+        LogModel second = record(TIME + 10, 'I', 1, 2, "Shared", "second block");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(BinaryLogEncoder.getFileHeader());
+        WritableByteChannel channel = Channels.newChannel(output);
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(256);
+        encodeRecord(encoder, first, buffer);
+        buffer.writeTo(channel);
+        encodeRecord(encoder, second, buffer);
+        buffer.writeTo(channel);
+
+        /*Second block is read from its start, as block of spilled or ring buffer file.*/
+        byte[] bytes = output.toByteArray();
+        int secondBlockStart = encode(new LogModel[]{first}).length;
+        BinaryLogDecoder blockDecoder = new BinaryLogDecoder(
+                new ByteArrayInputStream(Arrays.copyOfRange(bytes, secondBlockStart, bytes.length)), false);
+        assertSameRecord(second, blockDecoder.readRecord());
+        assertNull(blockDecoder.readRecord());
+
+        BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(bytes));
+        assertSameRecord(first, decoder.readRecord());
+        assertSameRecord(second, decoder.readRecord());
+        assertNull(decoder.readRecord());
+    }
+
+    public void testTruncatedTrailingRecordIsSkipped() throws IOException {
+        LogModel[] records = {
+                record(TIME, 'I', 1234, 5678, "ActivityManager", "Start proc com.example"),
+                record(TIME + 1, 'E', 1234, 5678, "Новый тег", "последняя запись 😀"),
+        };
+        byte[] bytes = encode(records);
+        int completeLength = encode(new LogModel[]{records[0]}).length;
+
+        for (int length = completeLength; length < bytes.length; length++){
+            BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+            assertSameRecord(records[0], decoder.readRecord());
+            assertNull("Truncated at " + length, decoder.readRecord());
+        }
+    }
+
+    /*
+     * Block, torn by killed application, could be followed by block appended after restart, if tail wasn't cut off.
+     * Appended bytes could be decoded as the rest of torn entry, so decoder only has to go on without error.
+     */
+    public void testDecodingGoesOnAfterTornBlock() throws IOException {
+        LogModel first = record(TIME, 'I', 1234, 5678, "ActivityManager", "Start proc com.example");
+        byte[] firstBlock = encode(new LogModel[]{first});
+        byte[] tornBlock = encodeBlock(record(TIME + 1, 'E', 1234, 5678, "Новый тег", "последняя запись 😀"));
+        byte[] appendedBlock = encodeBlock(record(TIME + 2, 'W', 42, 43, "Appended", "record after restart"));
+
+        for (int length = 1; length < tornBlock.length; length++){
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(firstBlock);
+            output.write(tornBlock, 0, length);
+            output.write(appendedBlock);
+
+            BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(output.toByteArray()));
+            assertSameRecord(first, decoder.readRecord());
+            int recordsCount = 0;
+            while (decoder.readRecord() != null){
+                recordsCount++;
+            }
+            assertTrue("Torn at " + length, recordsCount <= 2);
+        }
+    }
+
+    public void testCorruptBlockIsSkipped() throws IOException {
+        LogModel first = record(TIME, 'I', 1234, 5678, "ActivityManager", "Start proc com.example");
+        LogModel next = record(TIME + 2, 'W', 42, 43, "Next", "record of next block");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(encode(new LogModel[]{first}));
+        /*Unknown entry type and record, which references undefined tag.*/
+        output.write(new byte[]{BinaryLogEncoder.BLOCK_START, 0x7F, 0x7F});
+        output.write(new byte[]{BinaryLogEncoder.BLOCK_START, BinaryLogEncoder.RECORD, 2, 'I', 1, 2, 5});
+        output.write(encodeBlock(next));
+
+        BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertSameRecord(first, decoder.readRecord());
+        assertSameRecord(next, decoder.readRecord());
+        assertNull(decoder.readRecord());
+        assertEquals(2, decoder.getSkippedBlocksCount());
+    }
+
+    public void testCompleteRecordsEnd() throws IOException {
+        LogModel[] records = {
+                record(TIME, 'I', 1234, 5678, "ActivityManager", "Start proc com.example"),
+                record(TIME + 1, 'E', 1234, 5678, "Новый тег", "последняя запись 😀"),
+        };
+        byte[] bytes = encode(records);
+        int completeLength = encode(new LogModel[]{records[0]}).length;
+        File file = File.createTempFile("records", BaseLogTask.BINARY_FILE_EXTENSION);
+        try {
+            for (int length = completeLength; length < bytes.length; length++){
+                write(file, Arrays.copyOf(bytes, length));
+                assertEquals(completeLength, BinaryLogDecoder.findCompleteRecordsEnd(file, LogTimeIndex.UNKNOWN_OFFSET));
+                assertEquals(completeLength, BinaryLogDecoder.findCompleteRecordsEnd(file, BinaryLogEncoder.getFileHeader().length));
+            }
+            write(file, bytes);
+            assertEquals(bytes.length, BinaryLogDecoder.findCompleteRecordsEnd(file, LogTimeIndex.UNKNOWN_OFFSET));
+
+            write(file, new byte[]{'A', 'L'});
+            assertEquals(0, BinaryLogDecoder.findCompleteRecordsEnd(file, LogTimeIndex.UNKNOWN_OFFSET));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testFileWithoutHeaderIsRejected() {
+        try {
+            new BinaryLogDecoder(new ByteArrayInputStream("01-02 03:04:05.678  1234  5678 I Tag: text".getBytes()));
+            fail("Text log file should be rejected");
+        } catch (IOException e) {
+            /*Expected.*/
+        }
+
+        try {
+            new BinaryLogDecoder(new ByteArrayInputStream(new byte[]{'A', 'L'}));
+            fail("Truncated header should be rejected");
+        } catch (IOException e) {
+            /*Expected.*/
+        }
+    }
+
+    private static LogModel record(long timeMillis, char levelSymbol, int pid, long tid, String tag, String message){
+        LogModel record = new LogModel();
+        record.setTimeMillis(timeMillis);
+        record.setLevelSymbol(levelSymbol);
+        record.setPid(pid);
+        record.setTid(tid);
+        record.setTag(tag);
+        record.setPackageName(PACKAGE_NAME);
+        record.setMessage(message);
+        return record;
+    }
+
+    /*Records are encoded into single block, as they are written by one buffer of log saving task.*/
+    private static byte[] encode(LogModel[] records) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(BinaryLogEncoder.getFileHeader());
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(256);
+        for (LogModel record : records){
+            encodeRecord(encoder, record, buffer);
+        }
+        buffer.writeTo(Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+    /*Block of one record without file header, encoded by new encoder, as it is appended after restart.*/
+    private static byte[] encodeBlock(LogModel record) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(256);
+        encodeRecord(new BinaryLogEncoder(), record, buffer);
+        buffer.writeTo(Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void encodeRecord(BinaryLogEncoder encoder, LogModel record, Utf8RecordBuffer buffer){
+        encoder.encode(record, buffer);
+        buffer.endRecord(record.getTimeMillis());
+    }
+
+    private static void assertSameRecord(LogModel expected, LogModel decoded){
+        assertNotNull(decoded);
+        assertEquals(expected.getTimeMillis(), decoded.getTimeMillis());
+        assertEquals(expected.getLevelSymbol(), decoded.getLevelSymbol());
+        assertEquals(expected.getPid(), decoded.getPid());
+        assertEquals(expected.getTid(), decoded.getTid());
+        assertEquals(expected.getTag(), decoded.getTag());
+        assertEquals(expected.getPackageName(), decoded.getPackageName());
+        assertEquals(expected.getMessage(), decoded.getMessage());
+    }
+}
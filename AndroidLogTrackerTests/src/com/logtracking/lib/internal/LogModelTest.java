@@ -0,0 +1,53 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+import com.logtracking.lib.api.Log;
+
+import java.text.ParseException;
+import java.util.Calendar;
+
+public class LogModelTest extends AndroidTestCase {
+
+    private static final String PACKAGE_NAME = "com.logtracking.lib.test";
+
+    public void testInProcessRecordEqualsLogcatLine() throws ParseException {
+        String logcatLine = "01-02 03:04:05.678  1234  5678 I ActivityManager: Start proc com.example";
+        LogModel inProcessRecord = inProcessRecord(1234, 5678, Log.INFO, "ActivityManager", "Start proc com.example");
+
+        assertEquals(logcatLine, inProcessRecord.getFullLogRecord());
+        assertSameFields(new LogParser().parseLogRecord(logcatLine), inProcessRecord);
+    }
+
+    public void testShortTagAndIdsArePaddedAsByLogcat(){
+        LogModel inProcessRecord = inProcessRecord(7, 42, Log.DEBUG, "Net", "request sent");
+
+        assertEquals("01-02 03:04:05.678     7    42 D Net     : request sent", inProcessRecord.getFullLogRecord());
+    }
+
+    public void testInProcessRecordIsParsedBack() throws ParseException {
+        LogModel inProcessRecord = inProcessRecord(31337, 31340, Log.ERROR, "[ALT]Crash",
+                "Сбой : at com.example.Main.run(Main.java:10)");
+
+        assertSameFields(new LogParser().parseLogRecord(inProcessRecord.getFullLogRecord()), inProcessRecord);
+    }
+
+    private static LogModel inProcessRecord(int pid, long tid, int level, String tag, String message){
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2015, Calendar.JANUARY, 2, 3, 4, 5);
+        calendar.set(Calendar.MILLISECOND, 678);
+
+        LogModel record = new LogModel(pid, tid, level, PACKAGE_NAME, tag, message);
+        record.setTimeMillis(calendar.getTimeInMillis());
+        return record;
+    }
+
+    private static void assertSameFields(LogModel parsedRecord, LogModel inProcessRecord){
+        assertEquals(inProcessRecord.getFormattedDate(), parsedRecord.getFormattedDate());
+        assertEquals(inProcessRecord.getPid(), parsedRecord.getPid());
+        assertEquals(inProcessRecord.getTid(), parsedRecord.getTid());
+        assertEquals(inProcessRecord.getLevelSymbol(), parsedRecord.getLevelSymbol());
+        assertEquals(inProcessRecord.getTag(), parsedRecord.getTag());
+        assertEquals(inProcessRecord.getMessage(), parsedRecord.getMessage());
+        assertEquals(inProcessRecord.getFullLogRecord(), parsedRecord.getFullLogRecord());
+    }
+}
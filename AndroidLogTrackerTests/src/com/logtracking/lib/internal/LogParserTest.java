@@ -0,0 +1,131 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LogParserTest extends AndroidTestCase {
+
+    private static final String[] CORPUS = {
+            "06-23 13:07:48.494  3378  3378 E AndroidRuntime: FATAL EXCEPTION: main",
+            "06-23 13:07:48.528  1203  1203 I ActivityManager: Start proc com.example for activity",
+            "06-23 13:07:48.536     7    42 D Net     : request sent",
+            "06-23 13:07:48.536 31337 31340 W Сеть: Соединение потеряно : повтор через 5 с",
+            "06-23 13:07:48.536  1203  1203 V Tag:sub: key: value",
+            "06-23 13:07:48.536  1203  1203 I Tag: ",
+            "06-23 13:07:48.536  1203  1203 I Tag:  message after two spaces",
+            "06-23 13:07:48.536  1203  1203 I Tag:\tmessage after tab",
+            "06-23 13:07:48.536  1203  1203 F : message without tag",
+            "06-23 13:07:48.536  1203  1203 A  Tag : tag starts with space",
+            "06-23 13:07:48.536 1203 1203 E Tag: single spaces",
+            "06-23 13:07:48.536\t1203\t1203\tE\tTag: tabs between columns",
+            "06-23 13:07:48.536  1203  1203 E Tag: ends with LF\n",
+            "06-23 13:07:48.536  1203  1203 E Tag: ends with CRLF\r\n",
+            "06-23 13:07:48.536  1203  1203 E Tag: ends with CR\r",
+            "06-23 13:07:48.5  1203  1203 I Tag: short millis",
+            "06-23 13:07:48.123456  1203  1203 I Tag: long millis",
+            "06-23 13:07:48.536 1234567890 1203 I Tag: ten digits pid",
+            "06-23 13:07:48.536  1203 1234567890 I Tag: ten digits tid",
+            "06-23 13:07:48.536  1203  1203 I Tag: message with \u2028 separator",
+            "06-23 13:07:48.536  1203  1203 I Tag: message ends with separator\u2028",
+            "06-23 13:07:48.536  1203  1203 I Tag: two\nlines",
+
+            "--------- beginning of system",
+            "--------- beginning of main",
+            "\tat com.example.Main.run(Main.java:10)",
+            "Caused by: java.lang.IllegalStateException: broken",
+            "",
+            " 06-23 13:07:48.536  1203  1203 I Tag: leading space",
+            "06-23 13:07:48  1203  1203 I Tag: no millis",
+            "06-23 13:07:48.536  1203  1203 X Tag: unknown level",
+            "06-23 13:07:48.536  1203  1203 I Tag:no space after colon",
+            "06-23 13:07:48.536  1203  1203 I Tag without colon",
+            "06-23 13:07:48.536  1203  1203 IE Tag: two levels",
+            "06-23 13:07:48.536  1203 I Tag: no tid",
+            "06-23 13:07:48.536",
+            "06-23 13:07:48.536  1203  1203 I",
+    };
+
+    public void testScannerAndPatternGiveSameRecords(){
+        for (String line : getCorpus()){
+            assertSameRecord(line, parseByPattern(line), parse(new LogParser(), line, new LogModel()));
+        }
+    }
+
+    /*
+     * Lines are scanned before parsing and parsed into one recycled model, as they are read by log source.
+     * Header of line could be scanned, even if the rest of line is not parsed.
+     */
+    public void testRecycledModelAndScannedHeaderGiveSameRecords(){
+        LogParser parser = new LogParser();
+        LogModel recycledModel = new LogModel();
+        for (String line : getCorpus()){
+            LogModel expected = parseByPattern(line);
+            if (parser.scanLineHeader(line) && expected != null){
+                assertEquals(line, expected.getPid(), parser.getScannedPid());
+                assertEquals(line, expected.getLevelSymbol().charValue(), parser.getScannedLevelSymbol());
+            }
+            assertSameRecord(line, expected, parse(parser, line, recycledModel));
+        }
+    }
+
+    /*Fixed lines with generated lines of the same layout, but of random spacing, ids, tags and messages.*/
+    private static List<String> getCorpus(){
+        List<String> corpus = new ArrayList<String>();
+        for (String line : CORPUS){
+            corpus.add(line);
+        }
+
+        String[] spaces = {" ", "  ", "   ", "\t", " \t"};
+        String[] tags = {"ActivityManager", "Net     ", "", " ", "Tag:sub", "Тег", "a b"};
+        String[] messages = {"message", "", "key: value", "  padded  ", "Сообщение 😀", "ends with colon:"};
+        String[] terminators = {"", "\n", "\r\n"};
+        String levels = "VDIWEAF";
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++){
+            corpus.add(String.format("%02d-%02d %02d:%02d:%02d.%03d",
+                                     random.nextInt(12) + 1, random.nextInt(28) + 1, random.nextInt(24),
+                                     random.nextInt(60), random.nextInt(60), random.nextInt(1000)) +
+                       spaces[random.nextInt(spaces.length)] + random.nextInt(100000) +
+                       spaces[random.nextInt(spaces.length)] + random.nextInt(100000) +
+                       " " + levels.charAt(random.nextInt(levels.length())) + " " +
+                       tags[random.nextInt(tags.length)] + ":" + spaces[random.nextInt(spaces.length)] +
+                       messages[random.nextInt(messages.length)] + terminators[random.nextInt(terminators.length)]);
+        }
+        return corpus;
+    }
+
+    private static LogModel parseByPattern(String line){
+        try {
+            return new LogParser().parseLogRecordByPattern(line);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static LogModel parse(LogParser parser, String line, LogModel model){
+        try {
+            return parser.parseLogRecord(line, model);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static void assertSameRecord(String line, LogModel expected, LogModel parsed){
+        if (expected == null){
+            assertNull(line, parsed);
+            return;
+        }
+        assertNotNull(line, parsed);
+        assertEquals(line, expected.getFormattedDate(), parsed.getFormattedDate());
+        assertEquals(line, expected.getPid(), parsed.getPid());
+        assertEquals(line, expected.getTid(), parsed.getTid());
+        assertEquals(line, expected.getLevelSymbol(), parsed.getLevelSymbol());
+        assertEquals(line, expected.getTag(), parsed.getTag());
+        assertEquals(line, expected.getMessage(), parsed.getMessage());
+        assertEquals(line, expected.getFullLogRecord(), parsed.getFullLogRecord());
+    }
+}
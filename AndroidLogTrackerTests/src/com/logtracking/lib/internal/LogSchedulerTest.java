@@ -0,0 +1,115 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LogSchedulerTest extends AndroidTestCase {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Override
+    protected void tearDown() throws Exception {
+        LogScheduler.shutdown(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+    }
+
+    public void testShutdownWaitsForAcceptedTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+        LogScheduler.getExecutor(LogScheduler.Lane.MAINTENANCE).execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                finished.set(true);
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(LogScheduler.shutdown(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)));
+        assertTrue(finished.get());
+        assertTrue(LogScheduler.getStatistics().isEmpty());
+    }
+
+    public void testTaskIsInterruptedAfterShutdownTimeout() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        LogScheduler.getExecutor(LogScheduler.Lane.REPORT).execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertFalse(LogScheduler.shutdown(50));
+        assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /*Executor, which was taken before shutdown, rejects tasks even on lane, where caller runs tasks of full lane.*/
+    public void testLaneIsRecreatedOnNextUseAfterShutdown() throws Exception {
+        ExecutorService executor = LogScheduler.getExecutor(LogScheduler.Lane.COMPRESSION);
+        assertTrue(LogScheduler.shutdown(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)));
+        assertTrue(executor.isShutdown());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fail("Task should not be run after shutdown");
+                }
+            });
+            fail("Task should be rejected by executor, which was shut down");
+        } catch (RejectedExecutionException e) {
+            /*Expected.*/
+        }
+
+        ExecutorService recreatedExecutor = LogScheduler.getExecutor(LogScheduler.Lane.COMPRESSION);
+        assertFalse(executor == recreatedExecutor);
+        assertFalse(recreatedExecutor.isShutdown());
+        Future<?> task = recreatedExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        task.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(LogScheduler.getStatistics().containsKey(LogScheduler.Lane.COMPRESSION));
+    }
+
+    /*Serial executor outlives shutdown, its next task goes to recreated lane.*/
+    public void testSerialExecutorRunsTasksAfterShutdown() throws Exception {
+        Executor serialExecutor = LogScheduler.newSerialExecutor(LogScheduler.Lane.MAINTENANCE);
+        final CountDownLatch firstTaskDone = new CountDownLatch(1);
+        serialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                firstTaskDone.countDown();
+            }
+        });
+        assertTrue(firstTaskDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(LogScheduler.shutdown(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)));
+
+        final CountDownLatch secondTaskDone = new CountDownLatch(1);
+        serialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                secondTaskDone.countDown();
+            }
+        });
+        assertTrue(secondTaskDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+}
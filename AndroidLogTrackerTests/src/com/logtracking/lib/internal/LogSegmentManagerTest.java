@@ -0,0 +1,218 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import com.logtracking.lib.api.config.LogRetentionPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class LogSegmentManagerTest extends AndroidTestCase {
+
+    private static final String LOG_FILE_NAME = "tracker.log";
+    private static final String INDEX_FILE_NAME = "tracker.log_segments.idx";
+    private static final long MAX_TOTAL_SIZE = 1024 * 1024;
+
+    private File mDirectory;
+    private File mLogFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mDirectory = File.createTempFile("segments", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mLogFile = new File(mDirectory, LOG_FILE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = mDirectory.listFiles();
+        if (files != null){
+            for (File file : files){
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    public void testRotatedSegmentIsCompressed() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(10, MAX_TOTAL_SIZE));
+        byte[] content = "01-02 03:04:05.678  1234  5678 I Tag: запись\n".getBytes("UTF-8");
+        File segment = writeSegment(2000, content);
+        File compressedSegment = new File(segment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+
+        manager.addSegmentInBackground(segment, 1000, 2000);
+        awaitIndexed(manager, compressedSegment, 1000);
+
+        assertFalse(segment.exists());
+        assertTrue(Arrays.equals(content, gunzip(compressedSegment)));
+        assertEquals(Collections.singletonList(compressedSegment), manager.listSegments());
+        assertEquals(2000, manager.getTimeRange(compressedSegment).mEndTime);
+        assertEquals(LogTimeIndex.getIndexFile(segment), LogSegmentManager.getTimeIndexFile(compressedSegment));
+        assertTrue(LogSegmentManager.getTimeIndexFile(compressedSegment).exists());
+        assertEquals(Arrays.asList(INDEX_FILE_NAME, compressedSegment.getName(), LogTimeIndex.getIndexFile(segment).getName()),
+                     getSortedNames());
+    }
+
+    /*Process could be killed before segments were compressed, or after segment was compressed, but not removed.*/
+    public void testLeftSegmentsAreCompressedByMaintenance() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(10, MAX_TOTAL_SIZE));
+        byte[] content = "01-02 03:04:05.678  1234  5678 I Tag: record\n".getBytes("UTF-8");
+        File firstSegment = writeSegment(1000, content);
+        File secondSegment = writeSegment(2000, content);
+        File compressedSecondSegment = new File(secondSegment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+        gzip(compressedSecondSegment, content);
+
+        assertEquals(Arrays.asList(firstSegment, compressedSecondSegment), manager.listSegments());
+
+        manager.maintainSegmentsInBackground();
+        awaitFile(new File(mDirectory, INDEX_FILE_NAME));
+
+        File compressedFirstSegment = new File(firstSegment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+        assertEquals(Arrays.asList(compressedFirstSegment, compressedSecondSegment), manager.listSegments());
+        assertFalse(firstSegment.exists());
+        assertFalse(secondSegment.exists());
+        assertTrue(Arrays.equals(content, gunzip(compressedFirstSegment)));
+        assertEquals(LogSegmentManager.TimeRange.UNKNOWN_TIME, manager.getTimeRange(compressedFirstSegment).mStartTime);
+        assertEquals(1000, manager.getTimeRange(compressedFirstSegment).mEndTime);
+    }
+
+    public void testOldestSegmentsOverCountAreRemoved() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(2, MAX_TOTAL_SIZE));
+        List<File> compressedSegments = addSegments(manager, 3, 100);
+
+        assertEquals(compressedSegments.subList(1, 3), manager.listSegments());
+        assertFalse(LogSegmentManager.getTimeIndexFile(compressedSegments.get(0)).exists());
+        assertTrue(LogSegmentManager.getTimeIndexFile(compressedSegments.get(1)).exists());
+        assertEquals(LogSegmentManager.TimeRange.UNKNOWN_TIME, manager.getTimeRange(compressedSegments.get(0)).mStartTime);
+        assertEquals(2000, manager.getTimeRange(compressedSegments.get(1)).mStartTime);
+    }
+
+    /*Random content is not compressed, so each compressed segment is a bit larger than 1000 bytes.*/
+    public void testOldestSegmentsOverTotalSizeAreRemoved() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(10, 2500));
+        List<File> compressedSegments = addSegments(manager, 4, 1000);
+
+        assertEquals(compressedSegments.subList(2, 4), manager.listSegments());
+    }
+
+    public void testSegmentsOverMaxAgeAreRemoved() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(10, MAX_TOTAL_SIZE, 60 * 60 * 1000));
+        long now = System.currentTimeMillis();
+        byte[] content = "record".getBytes("UTF-8");
+        File oldSegment = writeSegment(now - 3 * 60 * 60 * 1000, content);
+        File recentSegment = writeSegment(now, content);
+
+        manager.addSegmentInBackground(oldSegment, now - 4 * 60 * 60 * 1000, now - 3 * 60 * 60 * 1000);
+        manager.addSegmentInBackground(recentSegment, now - 1000, now);
+        File compressedRecentSegment = new File(recentSegment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+        awaitIndexed(manager, compressedRecentSegment, now - 1000);
+
+        assertEquals(Collections.singletonList(compressedRecentSegment), manager.listSegments());
+        assertFalse(oldSegment.exists());
+    }
+
+    public void testSegmentsOfTimeWindow() throws IOException {
+        LogSegmentManager manager = new LogSegmentManager(mLogFile, new LogRetentionPolicy(10, MAX_TOTAL_SIZE));
+        List<File> compressedSegments = addSegments(manager, 3, 100);
+
+        assertEquals(compressedSegments, manager.listSegments(0));
+        assertEquals(compressedSegments, manager.listSegments(2000));
+        assertEquals(compressedSegments.subList(1, 3), manager.listSegments(2001));
+        assertEquals(compressedSegments.subList(2, 3), manager.listSegments(4000));
+        assertEquals(Collections.<File>emptyList(), manager.listSegments(4001));
+    }
+
+    /*Segment i contains records from (i + 1) * 1000 to (i + 2) * 1000 and is rotated at the end of its range.*/
+    private List<File> addSegments(LogSegmentManager manager, int count, int size) throws IOException {
+        Random random = new Random(1);
+        List<File> compressedSegments = new ArrayList<File>();
+        for (int i = 0; i < count; i++){
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            long startTime = (i + 1) * 1000;
+            File segment = writeSegment(startTime + 1000, content);
+            File compressedSegment = new File(segment.getPath() + LogSegmentManager.COMPRESSED_FILE_EXTENSION);
+
+            manager.addSegmentInBackground(segment, startTime, startTime + 1000);
+            awaitIndexed(manager, compressedSegment, startTime);
+            compressedSegments.add(compressedSegment);
+        }
+        return compressedSegments;
+    }
+
+    private File writeSegment(long rotationTime, byte[] content) throws IOException {
+        File segment = new File(mDirectory, LOG_FILE_NAME + LogSegmentManager.TEMP_FILE_PREFIX + rotationTime + ".log");
+        FileOutputStream output = new FileOutputStream(segment);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+
+        LogTimeIndex index = LogTimeIndex.open(segment, false);
+        index.add(rotationTime - 1000, 0);
+        index.close();
+        return segment;
+    }
+
+    /*Index is written the last by background thread, so segment is in index, when all its changes are done.*/
+    private static void awaitIndexed(LogSegmentManager manager, File segment, long startTime){
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getTimeRange(segment).mStartTime != startTime && System.currentTimeMillis() < deadline){
+            Thread.yield();
+        }
+        assertEquals(segment.getName(), startTime, manager.getTimeRange(segment).mStartTime);
+    }
+
+    private static void awaitFile(File file){
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!file.exists() && System.currentTimeMillis() < deadline){
+            Thread.yield();
+        }
+        assertTrue(file.getName(), file.exists());
+    }
+
+    private List<String> getSortedNames(){
+        List<String> names = new ArrayList<String>(Arrays.asList(mDirectory.list()));
+        Collections.sort(names);
+        return names;
+    }
+
+    private static void gzip(File file, byte[] content) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            GZIPOutputStream gzipOutput = new GZIPOutputStream(output);
+            gzipOutput.write(content);
+            gzipOutput.finish();
+        } finally {
+            output.close();
+        }
+    }
+
+    private static byte[] gunzip(File file) throws IOException {
+        InputStream input = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = input.read(buffer)) > 0){
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import com.logtracking.lib.api.config.BackPressurePolicy;
+import com.logtracking.lib.api.config.LogFlushPolicy;
+import com.logtracking.lib.internal.format.LogFileFormatter;
+import com.logtracking.lib.internal.format.NativeLogFileFormatter;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LogStorageTest extends AndroidTestCase {
+
+    private static final long TIME = 1420167845678L;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        mDirectory = File.createTempFile("storage", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = mDirectory.listFiles();
+        if (files != null){
+            for (File file : files){
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /*Application was killed while the last record was written, so it is cut off, when file is opened again.*/
+    public void testBinaryRecordsAreAppendedAfterTruncatedTail() throws IOException {
+        for (boolean timeIndexed : new boolean[]{false, true}){
+            for (int tornBytesCount = 1; tornBytesCount < 20; tornBytesCount++){
+                File logFile = new File(mDirectory, "log" + tornBytesCount + timeIndexed + BaseLogTask.BINARY_FILE_EXTENSION);
+                List<LogModel> firstRun = Arrays.asList(record(0, "first run"), record(1, "torn record of first run"));
+                List<LogModel> secondRun = Arrays.asList(record(2, "second run"), record(3, "последняя запись 😀"));
+
+                writeRecords(newBinaryStorage(logFile, timeIndexed), firstRun);
+                RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+                file.setLength(file.length() - tornBytesCount);
+                file.close();
+                writeRecords(newBinaryStorage(logFile, timeIndexed), secondRun);
+
+                List<LogModel> expected = new ArrayList<LogModel>();
+                expected.add(firstRun.get(0));
+                expected.addAll(secondRun);
+                assertRecords(logFile, expected);
+            }
+        }
+    }
+
+    public void testLinesAreAppendedAfterTruncatedLine() throws IOException {
+        for (int tornBytesCount = 1; tornBytesCount < 20; tornBytesCount++){
+            File logFile = new File(mDirectory, "log" + tornBytesCount + ".log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+            List<LogModel> firstRun = Arrays.asList(record(0, "first run"), record(1, "torn record of first run"));
+            List<LogModel> secondRun = Arrays.asList(record(2, "second run"), record(3, "последняя запись 😀"));
+
+            writeRecords(newAppendOnlyStorage(logFile), firstRun);
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            file.setLength(file.length() - tornBytesCount);
+            file.close();
+            writeRecords(newAppendOnlyStorage(logFile), secondRun);
+
+            assertEquals(logFile.getName(), getLines(firstRun.get(0), secondRun.get(0), secondRun.get(1)), readFile(logFile));
+        }
+    }
+
+    /*
+     * Every record fills buffer, while writer is held with the first one. Capture thread waits for drained buffer,
+     * so records are not lost.
+     */
+    public void testCaptureWaitsForWriterWithBlockPolicy() throws Exception {
+        File logFile = new File(mDirectory, "block.log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+        final HeldWriter writer = new HeldWriter();
+        LogStorage storage = newBackPressureStorage(logFile, BackPressurePolicy.BLOCK, writer);
+        List<LogModel> records = records(4);
+
+        storage.open();
+        try {
+            storage.write(records.get(0));
+            writer.awaitFirstBufferTaken();
+
+            final AtomicBoolean released = new AtomicBoolean();
+            new Thread(){
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    released.set(true);
+                    writer.release();
+                }
+            }.start();
+            storage.write(records.get(1));
+            assertTrue(released.get());
+
+            storage.write(records.get(2));
+            storage.write(records.get(3));
+            storage.writeRemainingRecords(null);
+        } finally {
+            writer.release();
+            storage.close();
+        }
+
+        assertEquals(0, storage.getDroppedRecordsCount());
+        assertEquals(getLines(records), readFile(logFile));
+    }
+
+    /*Writer already took filled buffer, so records of current buffer are the oldest ones, which can be dropped.*/
+    public void testCurrentRecordsAreDroppedWithDropOldestPolicy() throws Exception {
+        File logFile = new File(mDirectory, "drop.log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+        HeldWriter writer = new HeldWriter();
+        LogStorage storage = newBackPressureStorage(logFile, BackPressurePolicy.DROP_OLDEST, writer);
+        List<LogModel> records = records(8);
+
+        storage.open();
+        try {
+            storage.write(records.get(0));
+            writer.awaitFirstBufferTaken();
+            for (int i = 1; i < 6; i++){
+                storage.write(records.get(i));
+                assertEquals(i, storage.getDroppedRecordsCount());
+            }
+            writer.release();
+            storage.writeRemainingRecords(records.subList(6, 8));
+        } finally {
+            writer.release();
+            storage.close();
+        }
+
+        assertEquals(5, storage.getDroppedRecordsCount());
+        List<LogModel> expected = new ArrayList<LogModel>();
+        expected.add(records.get(0));
+        expected.addAll(records.subList(6, 8));
+        assertEquals(getLines(expected), readFile(logFile));
+    }
+
+    /*
+     * Records are spilled while writer is held, then spilled records are moved to log file before the next filled
+     * buffer and before remaining records, so order of records is kept.
+     */
+    public void testSpilledRecordsAreWrittenBeforeFilledBuffer() throws Exception {
+        File logFile = new File(mDirectory, "spill.log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+        File spillFile = new File(logFile.getAbsolutePath() + ".spill");
+        HeldWriter writer = new HeldWriter();
+        LogStorage storage = newBackPressureStorage(logFile, BackPressurePolicy.SPILL_TO_DISK, writer);
+        List<LogModel> records = records(1000);
+        int writtenRecordsCount = 0;
+
+        storage.open();
+        try {
+            storage.write(records.get(writtenRecordsCount++));
+            writer.awaitFirstBufferTaken();
+            while (writtenRecordsCount < 4){
+                storage.write(records.get(writtenRecordsCount++));
+            }
+            assertTrue(spillFile.length() > 0);
+
+            /*Records are spilled, until writer gives back drained buffer and takes the next filled one.*/
+            writer.release();
+            while (!writer.isSecondBufferTaken() && writtenRecordsCount < records.size() - 1){
+                storage.write(records.get(writtenRecordsCount++));
+            }
+            assertTrue(writer.isSecondBufferTaken());
+            storage.writeRemainingRecords(records.subList(writtenRecordsCount, writtenRecordsCount + 1));
+            writtenRecordsCount++;
+        } finally {
+            writer.release();
+            storage.close();
+        }
+
+        assertEquals(0, storage.getDroppedRecordsCount());
+        assertEquals(getLines(records.subList(0, writtenRecordsCount)), readFile(logFile));
+    }
+
+    /*Blocks are indexed by time of their records, not by time of writing, so report time window selects records by their time.*/
+    public void testBlocksAreIndexedByTimeOfRecords() throws IOException {
+        File logFile = new File(mDirectory, "indexed" + BaseLogTask.BINARY_FILE_EXTENSION);
+        long hour = TimeUnit.HOURS.toMillis(1);
+        LogModel laterRecord = record(1, "record of the next hour");
+        laterRecord.setTimeMillis(TIME + hour);
+
+        writeRecords(newBinaryStorage(logFile, true), Arrays.asList(record(0, "first record")));
+        long laterBlockOffset = logFile.length();
+        writeRecords(newBinaryStorage(logFile, true), Arrays.asList(laterRecord));
+
+        assertTrue(LogTimeIndex.findOffset(logFile, TIME + hour) < laterBlockOffset);
+        assertEquals(laterBlockOffset, LogTimeIndex.findOffset(logFile, TIME + hour + 1));
+    }
+
+    /*Record, which fills buffer exactly up to size threshold, hands it over and the next record goes to drained buffer.*/
+    public void testRecordAfterExactlyFilledBufferIsWritten() throws Exception {
+        File logFile = new File(mDirectory, "threshold.log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+        List<LogModel> records = records(3);
+        int sizeThreshold = getLines(records.subList(0, 2)).getBytes("UTF-8").length;
+        final CountDownLatch bufferTaken = new CountDownLatch(1);
+        LogStorage storage = new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setAppendOnly(true)
+                .setFlushPolicy(new LogFlushPolicy(sizeThreshold, TimeUnit.MINUTES.toMillis(1)))
+                .setWriterListener(new LogStorage.WriterListener() {
+                    @Override
+                    public void onFilledBufferTaken() {
+                        bufferTaken.countDown();
+                    }
+                })
+                .build();
+
+        storage.open();
+        try {
+            storage.write(records.get(0));
+            storage.write(records.get(1));
+            assertTrue(bufferTaken.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            storage.write(records.get(2));
+            storage.writeRemainingRecords(null);
+        } finally {
+            storage.close();
+        }
+
+        assertEquals(0, storage.getDroppedRecordsCount());
+        assertEquals(getLines(records), readFile(logFile));
+    }
+
+    /*Buffer is far from size threshold, so writer takes it over, when its first record waits longer then max latency.*/
+    public void testExpiredBufferIsWrittenByWriter() throws Exception {
+        File logFile = new File(mDirectory, "latency.log" + BaseLogTask.RECORDS_FILE_EXTENSION);
+        long maxLatency = 500;
+        LogModel record = record(0, "the only record");
+        int recordLength = getLines(record).getBytes("UTF-8").length;
+        LogStorage storage = new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setAppendOnly(true)
+                .setFlushPolicy(new LogFlushPolicy(64 * 1024, maxLatency))
+                .build();
+
+        storage.open();
+        try {
+            long startNanos = System.nanoTime();
+            storage.write(record);
+            long deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (logFile.length() < recordLength && System.nanoTime() < deadlineNanos){
+                Thread.sleep(10);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            assertEquals(getLines(record), readFile(logFile));
+            assertTrue("Written after " + elapsedMillis + " ms", elapsedMillis >= maxLatency);
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static LogStorage newAppendOnlyStorage(File logFile){
+        return new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setAppendOnly(true)
+                .setTimeIndexed(true)
+                .build();
+    }
+
+    /*Every record fills buffer and writer never hands over buffer by latency.*/
+    private static LogStorage newBackPressureStorage(File logFile, BackPressurePolicy policy, HeldWriter writer){
+        return new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setAppendOnly(true)
+                .setFlushPolicy(new LogFlushPolicy(1, TimeUnit.MINUTES.toMillis(1)))
+                .setBackPressurePolicy(policy)
+                .setWriterListener(writer)
+                .build();
+    }
+
+    private static LogStorage newBinaryStorage(File logFile, boolean timeIndexed){
+        return new LogStorage.Builder(logFile, new NativeLogFileFormatter())
+                .setBinary(true)
+                .setTimeIndexed(timeIndexed)
+                .build();
+    }
+
+    private static void writeRecords(LogStorage storage, List<LogModel> records) throws IOException {
+        storage.open();
+        try {
+            for (LogModel record : records){
+                storage.write(record);
+            }
+            storage.writeRemainingRecords(null);
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static void assertRecords(File logFile, List<LogModel> expected) throws IOException {
+        FileInputStream input = new FileInputStream(logFile);
+        try {
+            BinaryLogDecoder decoder = new BinaryLogDecoder(new BufferedInputStream(input));
+            for (LogModel record : expected){
+                LogModel decoded = decoder.readRecord();
+                assertNotNull(logFile.getName(), decoded);
+                assertEquals(logFile.getName(), record.getTimeMillis(), decoded.getTimeMillis());
+                assertEquals(logFile.getName(), record.getMessage(), decoded.getMessage());
+            }
+            assertNull(logFile.getName(), decoder.readRecord());
+            assertEquals(logFile.getName(), 0, decoder.getSkippedBlocksCount());
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String getLines(LogModel... records){
+        return getLines(Arrays.asList(records));
+    }
+
+    private static String getLines(List<LogModel> records){
+        StringBuilder lines = new StringBuilder();
+        for (LogModel record : records){
+            lines.append(record.getFullLogRecord()).append(LogFileFormatter.LINE_SEPARATOR);
+        }
+        return lines.toString();
+    }
+
+    private static String readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            input.readFully(bytes);
+        } finally {
+            input.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    private static List<LogModel> records(int count){
+        List<LogModel> records = new ArrayList<LogModel>();
+        for (int i = 0; i < count; i++){
+            records.add(record(i, "record " + i));
+        }
+        return records;
+    }
+
+    private static LogModel record(int index, String message){
+        LogModel record = new LogModel();
+        record.setTimeMillis(TIME + index);
+        record.setLevelSymbol('I');
+        record.setPid(1234);
+        record.setTid(5678);
+        record.setTag("Tag");
+        record.setMessage(message);
+        record.setFullLogRecord("01-02 03:04:05.67" + index + "  1234  5678 I Tag: " + message);
+        return record;
+    }
+
+    /*Holds writer with the first filled buffer, so both buffers are busy until writer is released.*/
+    private static class HeldWriter implements LogStorage.WriterListener {
+
+        private final AtomicInteger mTakenBuffersCount = new AtomicInteger();
+        private final CountDownLatch mFirstBufferTaken = new CountDownLatch(1);
+        private final CountDownLatch mRelease = new CountDownLatch(1);
+
+        @Override
+        public void onFilledBufferTaken() {
+            if (mTakenBuffersCount.incrementAndGet() > 1)
+                return;
+
+            mFirstBufferTaken.countDown();
+            try {
+                mRelease.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void awaitFirstBufferTaken() throws InterruptedException {
+            assertTrue(mFirstBufferTaken.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        boolean isSecondBufferTaken(){
+            return mTakenBuffersCount.get() > 1;
+        }
+
+        void release(){
+            mRelease.countDown();
+        }
+    }
+}
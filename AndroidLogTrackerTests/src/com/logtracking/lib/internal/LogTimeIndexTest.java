@@ -0,0 +1,107 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class LogTimeIndexTest extends AndroidTestCase {
+
+    private File mLogFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mLogFile = File.createTempFile("log", ".records");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        LogTimeIndex.getIndexFile(mLogFile).delete();
+        mLogFile.delete();
+    }
+
+    public void testLogFileWithoutIndexIsReadWhole() throws IOException {
+        assertEquals(LogTimeIndex.UNKNOWN_OFFSET, LogTimeIndex.findOffset(mLogFile, 1000));
+
+        LogTimeIndex.open(mLogFile, false).close();
+        assertEquals(LogTimeIndex.UNKNOWN_OFFSET, LogTimeIndex.findOffset(mLogFile, 1000));
+    }
+
+    public void testOffsetOfTimeWindow() throws IOException {
+        writeIndex(new long[]{1000, 2000, 3000, 4000}, new long[]{0, 100, 200, 300});
+
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, Long.MIN_VALUE));
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, 999));
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, 1000));
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, 1001));
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, 2000));
+        assertEquals(100, LogTimeIndex.findOffset(mLogFile, 2001));
+        assertEquals(100, LogTimeIndex.findOffset(mLogFile, 2999));
+        assertEquals(200, LogTimeIndex.findOffset(mLogFile, 4000));
+        assertEquals(300, LogTimeIndex.findOffset(mLogFile, 4001));
+        assertEquals(300, LogTimeIndex.findOffset(mLogFile, Long.MAX_VALUE));
+    }
+
+    /*Records of the same millisecond could be at the end of block and at the start of next blocks.*/
+    public void testBlocksOfTheSameMillisecond() throws IOException {
+        writeIndex(new long[]{1000, 2000, 2000, 2000, 3000}, new long[]{0, 100, 200, 300, 400});
+
+        assertEquals(0, LogTimeIndex.findOffset(mLogFile, 2000));
+        assertEquals(300, LogTimeIndex.findOffset(mLogFile, 2001));
+        assertEquals(300, LogTimeIndex.findOffset(mLogFile, 3000));
+    }
+
+    public void testSingleBlock() throws IOException {
+        writeIndex(new long[]{1000}, new long[]{42});
+
+        assertEquals(42, LogTimeIndex.findOffset(mLogFile, 0));
+        assertEquals(42, LogTimeIndex.findOffset(mLogFile, 5000));
+    }
+
+    public void testIndexIsContinuedByReopen() throws IOException {
+        writeIndex(new long[]{1000, 2000}, new long[]{0, 100});
+
+        LogTimeIndex index = LogTimeIndex.open(mLogFile, true);
+        index.add(3000, 200);
+        index.close();
+
+        assertEquals(100, LogTimeIndex.findOffset(mLogFile, 2500));
+        assertEquals(200, LogTimeIndex.findOffset(mLogFile, 3500));
+    }
+
+    /*Process could be killed during writing of entry, so partial entry is dropped, when index is opened again.*/
+    public void testPartialEntryIsDroppedByReopen() throws IOException {
+        writeIndex(new long[]{1000, 2000}, new long[]{0, 100});
+        RandomAccessFile file = new RandomAccessFile(LogTimeIndex.getIndexFile(mLogFile), "rw");
+        file.setLength(file.length() + 5);
+        file.close();
+
+        LogTimeIndex index = LogTimeIndex.open(mLogFile, true);
+        index.add(3000, 200);
+        index.close();
+
+        assertEquals(32 + 16, LogTimeIndex.getIndexFile(mLogFile).length());
+        assertEquals(200, LogTimeIndex.findOffset(mLogFile, 3500));
+    }
+
+    public void testIndexOfEmptyLogFileIsCleared() throws IOException {
+        writeIndex(new long[]{1000, 2000}, new long[]{0, 100});
+
+        LogTimeIndex.open(mLogFile, false).close();
+        assertEquals(0, LogTimeIndex.getIndexFile(mLogFile).length());
+    }
+
+    public void testLogFileWrittenWithoutIndexIsNotIndexed() throws IOException {
+        assertNull(LogTimeIndex.open(mLogFile, true));
+        assertFalse(LogTimeIndex.getIndexFile(mLogFile).exists());
+    }
+
+    private void writeIndex(long[] times, long[] offsets) throws IOException {
+        LogTimeIndex index = LogTimeIndex.open(mLogFile, false);
+        for (int i = 0; i < times.length; i++){
+            index.add(times[i], offsets[i]);
+        }
+        index.close();
+    }
+}
@@ -0,0 +1,214 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class LogcatBinaryDecoderTest extends AndroidTestCase {
+
+    private static final int PRIORITY_INFO = 4;
+    private static final int PRIORITY_ERROR = 6;
+    private static final long SECONDS = 1420167845L;
+    private static final long NANOS = 678901234L;
+    private static final long TIME_MILLIS = 1420167845678L;
+
+    public void testEntriesOfHeaderVersions() throws IOException {
+        byte[] payload = payload(PRIORITY_INFO, "ActivityManager", "Start proc com.example");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 0, 1234, 5678, payload);
+        writeEntry(output, 24, 1234, 5679, payload);
+        writeEntry(output, 28, 31337, 0xFFFFFFF0L, payload);
+
+        LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertEntry(decoder, 1234, 5678, 'I', "ActivityManager", "Start proc com.example");
+        assertEntry(decoder, 1234, 5679, 'I', "ActivityManager", "Start proc com.example");
+        assertEntry(decoder, 31337, 0xFFFFFFF0L, 'I', "ActivityManager", "Start proc com.example");
+        assertFalse(decoder.next());
+    }
+
+    public void testMessageIsDecodedWithoutTrailingLineSeparator() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_ERROR, "Сеть", "Соединение потеряно 😀\r\n"));
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_ERROR, "Tag", "single line\n\n"));
+
+        LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertEntry(decoder, 1, 2, 'E', "Сеть", "Соединение потеряно 😀");
+        assertFalse(decoder.nextLine());
+        assertEntry(decoder, 1, 2, 'E', "Tag", "single line");
+        assertFalse(decoder.nextLine());
+        assertFalse(decoder.next());
+    }
+
+    /*Every line of message is separate record with header and tag of its entry, as logcat prints it.*/
+    public void testLinesOfMessageAreDecodedAsRecords() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_ERROR, "Tag", "first line\nsecond line\n"));
+        writeEntry(output, 24, 3, 4, payload(PRIORITY_INFO, "Сеть", "первая\r\n\r\nтретья 😀"));
+
+        LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertEntry(decoder, 1, 2, 'E', "Tag", "first line");
+        assertLine(decoder, 1, 2, 'E', "Tag", "second line");
+        assertFalse(decoder.nextLine());
+        assertEntry(decoder, 3, 4, 'I', "Сеть", "первая");
+        assertLine(decoder, 3, 4, 'I', "Сеть", "");
+        assertLine(decoder, 3, 4, 'I', "Сеть", "третья 😀");
+        assertFalse(decoder.nextLine());
+        assertFalse(decoder.next());
+    }
+
+    /*Lines of entry, which header is rejected, are skipped together with it.*/
+    public void testSourceReadsLinesOfPassedEntries() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_INFO, "Tag", "first\nsecond"));
+        writeEntry(output, 24, 3, 4, payload(PRIORITY_INFO, "Other", "rejected\nlines"));
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_ERROR, "Tag", "third"));
+
+        LogcatBinarySource source = new LogcatBinarySource(new ByteArrayInputStream(output.toByteArray()));
+        LogSource.HeaderFilter filter = new LogSource.HeaderFilter() {
+            @Override
+            public boolean passHeader(int pid, char levelSymbol) {
+                return pid == 1;
+            }
+        };
+        LogModel recycledRecord = new LogModel();
+        assertEquals("first", source.read(recycledRecord, filter).getMessage());
+        assertEquals("second", source.read(recycledRecord, filter).getMessage());
+        LogModel record = source.read(recycledRecord, filter);
+        assertEquals("third", record.getMessage());
+        assertEquals('E', (char) record.getLevelSymbol());
+        assertNull(source.read(recycledRecord, filter));
+        source.close();
+    }
+
+    public void testShortPayloads() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, new byte[0]);
+        writeEntry(output, 24, 1, 2, new byte[]{PRIORITY_ERROR});
+        writeEntry(output, 24, 1, 2, new byte[]{PRIORITY_INFO, 'T', 'a', 'g'});
+        writeEntry(output, 24, 1, 2, new byte[]{PRIORITY_INFO, 'T', 'a', 'g', 0, 'm', 's', 'g'});
+        writeEntry(output, 24, 1, 2, payload(42, "Tag", "unknown priority"));
+        writeEntry(output, 24, 1, 2, payload(-1, "Tag", "negative priority"));
+
+        LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertEntry(decoder, 1, 2, 'V', "", "");
+        assertEntry(decoder, 1, 2, 'E', "", "");
+        assertEntry(decoder, 1, 2, 'I', "Tag", "");
+        assertEntry(decoder, 1, 2, 'I', "Tag", "msg");
+        assertEntry(decoder, 1, 2, 'V', "Tag", "unknown priority");
+        assertEntry(decoder, 1, 2, 'V', "Tag", "negative priority");
+        assertFalse(decoder.next());
+    }
+
+    /*Payload of previous longer entry is left in reused buffer, but it is never decoded as part of short entry.*/
+    public void testShortEntryAfterLongEntry() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 28, 1, 2, payload(PRIORITY_INFO, "LongTag", "long message of the first entry"));
+        writeEntry(output, 0, 3, 4, new byte[]{PRIORITY_ERROR, 'T'});
+
+        LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertEntry(decoder, 1, 2, 'I', "LongTag", "long message of the first entry");
+        assertEntry(decoder, 3, 4, 'E', "T", "");
+        assertFalse(decoder.next());
+    }
+
+    public void testTruncatedEntryIsRejected() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_INFO, "Tag", "complete entry"));
+        int completeLength = output.size();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_INFO, "Tag", "truncated entry"));
+        byte[] bytes = output.toByteArray();
+
+        for (int length = completeLength + 1; length < bytes.length; length++){
+            LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+            assertEntry(decoder, 1, 2, 'I', "Tag", "complete entry");
+            try {
+                decoder.next();
+                fail("Entry truncated at " + length + " should be rejected");
+            } catch (EOFException e) {
+                /*Expected.*/
+            }
+        }
+    }
+
+    public void testCorruptHeaderSizeIsRejected() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeEntry(output, 24, 1, 2, payload(PRIORITY_INFO, "Tag", "message"));
+        byte[] bytes = output.toByteArray();
+        bytes[2] = 8;
+
+        try {
+            new LogcatBinaryDecoder(new ByteArrayInputStream(bytes)).next();
+            fail("Header shorter than first version of header should be rejected");
+        } catch (IOException e) {
+            /*Expected.*/
+        }
+    }
+
+    public void testEmptyStream() throws IOException {
+        assertFalse(new LogcatBinaryDecoder(new ByteArrayInputStream(new byte[0])).next());
+    }
+
+    private static void assertEntry(LogcatBinaryDecoder decoder, int pid, long tid, char levelSymbol,
+                                    String tag, String message) throws IOException {
+        assertTrue(decoder.next());
+        assertDecoded(decoder, pid, tid, levelSymbol, tag, message);
+    }
+
+    private static void assertLine(LogcatBinaryDecoder decoder, int pid, long tid, char levelSymbol,
+                                   String tag, String message){
+        assertTrue(decoder.nextLine());
+        assertDecoded(decoder, pid, tid, levelSymbol, tag, message);
+    }
+
+    private static void assertDecoded(LogcatBinaryDecoder decoder, int pid, long tid, char levelSymbol,
+                                      String tag, String message){
+        assertEquals(pid, decoder.getPid());
+        assertEquals(levelSymbol, decoder.getLevelSymbol());
+
+        LogModel record = decoder.decode(new LogModel());
+        assertEquals(pid, record.getPid());
+        assertEquals(tid, record.getTid());
+        assertEquals(levelSymbol, (char) record.getLevelSymbol());
+        assertEquals(TIME_MILLIS, record.getTimeMillis());
+        assertEquals(tag, record.getTag());
+        assertEquals(message, record.getMessage());
+    }
+
+    private static byte[] payload(int priority, String tag, String message) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(priority);
+        payload.write(tag.getBytes("UTF-8"));
+        payload.write(0);
+        payload.write(message.getBytes("UTF-8"));
+        payload.write(0);
+        return payload.toByteArray();
+    }
+
+    /*Header size 0 is written as first version of header, which is 20 bytes long, other sizes include extra fields.*/
+    private static void writeEntry(ByteArrayOutputStream output, int headerSize, int pid, long tid, byte[] payload){
+        writeShort(output, payload.length);
+        writeShort(output, headerSize);
+        writeInt(output, pid);
+        writeInt(output, tid);
+        writeInt(output, SECONDS);
+        writeInt(output, NANOS);
+        for (int i = 20; i < headerSize; i++){
+            output.write(0x5A);
+        }
+        output.write(payload, 0, payload.length);
+    }
+
+    private static void writeShort(ByteArrayOutputStream output, int value){
+        output.write(value & 0xFF);
+        output.write((value >> 8) & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, long value){
+        writeShort(output, (int) (value & 0xFFFF));
+        writeShort(output, (int) ((value >> 16) & 0xFFFF));
+    }
+}
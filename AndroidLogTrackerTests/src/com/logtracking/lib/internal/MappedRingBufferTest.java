@@ -0,0 +1,169 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+public class MappedRingBufferTest extends AndroidTestCase {
+
+    private static final int CAPACITY = 64;
+
+    /*Layout of ring buffer file header : magic, capacity, head, tail.*/
+    private static final int HEAD_POSITION = 8;
+    private static final int TAIL_POSITION = 16;
+    private static final int HEADER_SIZE = 24;
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFile = File.createTempFile("ring", ".log");
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    public void testRecordsAreReadInOrder() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, CAPACITY);
+        write(ringBuffer, "first\n");
+        write(ringBuffer, "second\n");
+
+        assertEquals("first\nsecond\n", read(ringBuffer));
+        ringBuffer.close();
+    }
+
+    public void testWrapAroundKeepsWholeNewestRecords() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, CAPACITY);
+        StringBuilder written = new StringBuilder();
+        for (int i = 0; i < 50; i++){
+            String record = "record " + i + (i % 3 == 0 ? " with longer message" : "") + "\n";
+            write(ringBuffer, record);
+            written.append(record);
+
+            String content = read(ringBuffer);
+            assertTrue(content.length() <= CAPACITY);
+            assertTrue(written.toString().endsWith(content));
+            assertTrue(content.startsWith("record "));
+            assertTrue(content.endsWith(record));
+        }
+        ringBuffer.close();
+    }
+
+    public void testRecordOnHeadBoundaryIsKept() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, 20);
+        for (int i = 1; i <= 5; i++){
+            write(ringBuffer, "rec" + i + "\n");
+        }
+
+        assertEquals("rec2\nrec3\nrec4\nrec5\n", read(ringBuffer));
+        ringBuffer.close();
+    }
+
+    public void testSourceBiggerThanRing() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, 16);
+        write(ringBuffer, "old\n");
+        write(ringBuffer, "aaaaaaaaaa\nbbbbbbbb\ncccc\n");
+
+        assertEquals("bbbbbbbb\ncccc\n", read(ringBuffer));
+        ringBuffer.close();
+    }
+
+    public void testRecordsAreRecoveredAfterReopen() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, CAPACITY);
+        for (int i = 0; i < 20; i++){
+            write(ringBuffer, "record " + i + "\n");
+        }
+        String content = read(ringBuffer);
+        ringBuffer.close();
+
+        MappedRingBuffer reopened = MappedRingBuffer.openExisting(mFile);
+        assertEquals(content, read(reopened));
+        reopened.close();
+
+        reopened = MappedRingBuffer.open(mFile, CAPACITY);
+        assertEquals(content, read(reopened));
+        reopened.close();
+    }
+
+    /*
+     * Process could be killed at any byte of write, which wraps around. Such file is built from file before write,
+     * head of file after write and part of copied bytes : only records, which are not overwritten, should be read.
+     */
+    public void testWriteInterruptedByKill() throws IOException {
+        MappedRingBuffer ringBuffer = MappedRingBuffer.open(mFile, CAPACITY);
+        for (int i = 0; i < 10; i++){
+            write(ringBuffer, "record " + i + "\n");
+        }
+        String contentBefore = read(ringBuffer);
+        ringBuffer.close();
+        byte[] fileBefore = readFile();
+
+        ringBuffer = MappedRingBuffer.open(mFile, CAPACITY);
+        write(ringBuffer, "new record\n");
+        ringBuffer.close();
+        byte[] fileAfter = readFile();
+
+        long headBefore = ByteBuffer.wrap(fileBefore).getLong(HEAD_POSITION);
+        long tailBefore = ByteBuffer.wrap(fileBefore).getLong(TAIL_POSITION);
+        long headAfter = ByteBuffer.wrap(fileAfter).getLong(HEAD_POSITION);
+        long tailAfter = ByteBuffer.wrap(fileAfter).getLong(TAIL_POSITION);
+        assertTrue("Write should wrap around", headAfter > headBefore);
+        String expectedContent = contentBefore.substring((int) (headAfter - headBefore));
+
+        for (int copiedBytesCount = 0; copiedBytesCount <= tailAfter - tailBefore; copiedBytesCount++){
+            byte[] killedFile = fileBefore.clone();
+            System.arraycopy(fileAfter, HEAD_POSITION, killedFile, HEAD_POSITION, 8);
+            for (long position = tailBefore; position < tailBefore + copiedBytesCount; position++){
+                int index = HEADER_SIZE + (int) (position % CAPACITY);
+                killedFile[index] = fileAfter[index];
+            }
+            writeFile(killedFile);
+
+            MappedRingBuffer recovered = MappedRingBuffer.openExisting(mFile);
+            assertEquals(expectedContent, read(recovered));
+            recovered.close();
+        }
+    }
+
+    private static void write(MappedRingBuffer ringBuffer, String records){
+        ringBuffer.write(ByteBuffer.wrap(records.getBytes()));
+    }
+
+    private static String read(MappedRingBuffer ringBuffer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ringBuffer.readTo(Channels.newChannel(output));
+        return output.toString();
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] content = new byte[(int) mFile.length()];
+        FileInputStream input = new FileInputStream(mFile);
+        try {
+            int offset = 0;
+            while (offset < content.length){
+                offset += input.read(content, offset, content.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private void writeFile(byte[] content) throws IOException {
+        FileOutputStream output = new FileOutputStream(mFile);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+    }
+}
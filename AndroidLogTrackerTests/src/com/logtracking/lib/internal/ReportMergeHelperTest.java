@@ -0,0 +1,149 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+public class ReportMergeHelperTest extends AndroidTestCase {
+
+    private static final String OPEN_TAG_LINE = "logging:\n";
+    private static final String CLOSE_TAG_LINES = ":logging\n</report>\n";
+    private static final String ENVELOPE_START = "<report>\nreport_message : Сообщение\nlogging: is mentioned here\n";
+    private static final String RECORDS = "01-02 03:04:05.678  1234  5678 I Tag: first\n" +
+                                          "01-02 03:04:05.679  1234  5678 E Tag: logging:\n" +
+                                          "01-02 03:04:05.680  1234  5678 D Тег: последняя\n";
+
+    private File mFile;
+    private RandomAccessFile mSource;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFile = File.createTempFile("merge", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mSource != null){
+            mSource.close();
+        }
+        mFile.delete();
+    }
+
+    public void testBodyBetweenEnvelopeTags() throws IOException {
+        FileChannel channel = open(ENVELOPE_START + OPEN_TAG_LINE + RECORDS + CLOSE_TAG_LINES);
+
+        long start = ReportMergeHelper.findBodyStart(channel, bytes(OPEN_TAG_LINE));
+        long end = ReportMergeHelper.findBodyEnd(channel, bytes(CLOSE_TAG_LINES));
+
+        assertEquals(bytes(ENVELOPE_START + OPEN_TAG_LINE).length, start);
+        assertEquals(RECORDS, transfer(channel, start, end));
+    }
+
+    public void testOpenTagAtFileStart() throws IOException {
+        FileChannel channel = open(OPEN_TAG_LINE + RECORDS);
+
+        assertEquals(bytes(OPEN_TAG_LINE).length, ReportMergeHelper.findBodyStart(channel, bytes(OPEN_TAG_LINE)));
+    }
+
+    public void testOpenTagOnBoundaryOfScannedBlocks() throws IOException {
+        for (int padding = 8 * 1024 - 12; padding <= 8 * 1024 + 2; padding++){
+            StringBuilder envelope = new StringBuilder();
+            for (int i = 0; i < padding - 1; i++){
+                envelope.append('m');
+            }
+            envelope.append('\n');
+            FileChannel channel = open(envelope + OPEN_TAG_LINE + RECORDS + CLOSE_TAG_LINES);
+
+            assertEquals("Padding " + padding, padding + bytes(OPEN_TAG_LINE).length,
+                         ReportMergeHelper.findBodyStart(channel, bytes(OPEN_TAG_LINE)));
+        }
+    }
+
+    public void testFileWithoutOpenTag() throws IOException {
+        FileChannel channel = open("<report>\nreport_message : logging:\n");
+
+        assertEquals(-1, ReportMergeHelper.findBodyStart(channel, bytes(OPEN_TAG_LINE)));
+        assertEquals(-1, ReportMergeHelper.findBodyStart(open(""), bytes(OPEN_TAG_LINE)));
+    }
+
+    /*Application could be killed during writing, then file has no closing tags and could end with partial line.*/
+    public void testBodyWithoutClosingTags() throws IOException {
+        FileChannel channel = open(OPEN_TAG_LINE + RECORDS + "01-02 03:04:05.681  1234  56");
+
+        long start = ReportMergeHelper.findBodyStart(channel, bytes(OPEN_TAG_LINE));
+        assertEquals(RECORDS, transfer(channel, start, ReportMergeHelper.findBodyEnd(channel, bytes(CLOSE_TAG_LINES))));
+
+        channel = open(OPEN_TAG_LINE + RECORDS + ":logging\n</rep");
+        assertEquals(RECORDS + ":logging\n", transfer(channel, start, ReportMergeHelper.findBodyEnd(channel, bytes(CLOSE_TAG_LINES))));
+    }
+
+    public void testBodyWithoutEnvelope() throws IOException {
+        FileChannel channel = open(RECORDS + "01-02 03:04:05.681  1234  56");
+
+        long start = ReportMergeHelper.findBodyStart(channel, new byte[0]);
+        long end = ReportMergeHelper.findBodyEnd(channel, new byte[0]);
+
+        assertEquals(0, start);
+        assertEquals(RECORDS, transfer(channel, start, end));
+    }
+
+    public void testCompleteLinesEnd() throws IOException {
+        assertEquals(0, ReportMergeHelper.findCompleteLinesEnd(open("")));
+        assertEquals(0, ReportMergeHelper.findCompleteLinesEnd(open("partial line")));
+        assertEquals(bytes(RECORDS).length, ReportMergeHelper.findCompleteLinesEnd(open(RECORDS)));
+
+        StringBuilder longLine = new StringBuilder("first\n");
+        for (int i = 0; i < 20 * 1024; i++){
+            longLine.append('x');
+        }
+        assertEquals(6, ReportMergeHelper.findCompleteLinesEnd(open(longLine.toString())));
+    }
+
+    public void testTransferToFileMovesItsPosition() throws IOException {
+        FileChannel source = open(RECORDS);
+        File targetFile = File.createTempFile("merge", ".target");
+        FileOutputStream target = new FileOutputStream(targetFile);
+        try {
+            FileChannel targetChannel = target.getChannel();
+            long firstLineLength = RECORDS.indexOf('\n') + 1;
+            assertEquals(firstLineLength, ReportMergeHelper.transfer(source, 0, firstLineLength, targetChannel));
+            assertEquals(firstLineLength, targetChannel.position());
+            assertEquals(source.size() - firstLineLength, ReportMergeHelper.transfer(source, firstLineLength, source.size(), targetChannel));
+            assertEquals(0, ReportMergeHelper.transfer(source, 10, 5, targetChannel));
+        } finally {
+            target.close();
+        }
+        assertEquals(source.size(), targetFile.length());
+        targetFile.delete();
+    }
+
+    private FileChannel open(String content) throws IOException {
+        if (mSource != null){
+            mSource.close();
+        }
+        FileOutputStream output = new FileOutputStream(mFile);
+        try {
+            output.write(bytes(content));
+        } finally {
+            output.close();
+        }
+        mSource = new RandomAccessFile(mFile, "r");
+        return mSource.getChannel();
+    }
+
+    private static String transfer(FileChannel channel, long start, long end) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(end - start, ReportMergeHelper.transfer(channel, start, end, Channels.newChannel(output)));
+        return output.toString("UTF-8");
+    }
+
+    private static byte[] bytes(String string) throws IOException {
+        return string.getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,144 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+public class Utf8RecordBufferTest extends AndroidTestCase {
+
+    private static final long TIME = 1420167845678L;
+
+    private static final String[] TEXTS = {
+            "plain ASCII record",
+            "Соединение потеряно : повтор через 5 с",
+            "日志记录 ログ記録 로그 기록",
+            "surrogate pairs 😀 𝄞 🇺🇦",
+            "mixed é ß Ж 中 😀 end",
+            "",
+    };
+
+    public void testEncodedBytesAreSameAsStringBytes() throws IOException {
+        for (String text : TEXTS){
+            Utf8RecordBuffer buffer = new Utf8RecordBuffer(16);
+            buffer.append(text);
+            buffer.endRecord(TIME);
+            assertEncoded(text, buffer);
+
+            buffer.append("prefix " + text, "prefix ".length(), text.length() + "prefix ".length());
+            buffer.endRecord(TIME);
+            assertEncoded(text, buffer);
+
+            for (int i = 0; i < text.length(); i++){
+                buffer.append(text.charAt(i));
+            }
+            buffer.endRecord(TIME);
+            assertEncoded(text, buffer);
+        }
+    }
+
+    /*Surrogate, which has no pair, is replaced, as it can't be encoded, but characters around it are kept.*/
+    public void testUnpairedSurrogatesAreReplaced() throws IOException {
+        String highSurrogate = "\uD83D";
+        String lowSurrogate = "\uDE00";
+
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(16);
+        buffer.append("a" + highSurrogate + "b" + lowSurrogate + "c" + highSurrogate + highSurrogate + lowSurrogate);
+        buffer.endRecord(TIME);
+        assertEncoded("a?b?c?😀", buffer);
+
+        buffer.append("end" + highSurrogate);
+        buffer.endRecord(TIME);
+        assertEncoded("end?", buffer);
+
+        buffer.append(highSurrogate);
+        buffer.putByte(0);
+        buffer.endRecord(TIME);
+        assertTrue(Arrays.equals(new byte[]{'?', 0}, getBytes(buffer)));
+    }
+
+    /*Buffer grows for record, which is longer than whole buffer, and keeps bytes, encoded before growth.*/
+    public void testBufferGrowsForOversizedRecord() throws IOException {
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < 200; i++){
+            record.append(TEXTS[i % TEXTS.length]);
+        }
+        String text = record.toString();
+
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(8);
+        buffer.append("x");
+        buffer.append(text);
+        buffer.endRecord(TIME);
+        assertEquals(("x" + text).getBytes("UTF-8").length, buffer.size());
+        assertEquals(1, buffer.getRecordsCount());
+        assertEncoded("x" + text, buffer);
+
+        buffer.append(text);
+        buffer.endRecord(TIME);
+        assertEncoded(text, buffer);
+    }
+
+    public void testWriteToWritesAllRecordsAndClearsBuffer() throws IOException {
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(64);
+        buffer.append(TEXTS[1]).append('\n');
+        buffer.endRecord(TIME);
+        buffer.append(TEXTS[3]).append('\n');
+        buffer.endRecord(TIME);
+        assertEquals(2, buffer.getRecordsCount());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buffer.writeTo(Channels.newChannel(output));
+        assertTrue(Arrays.equals((TEXTS[1] + '\n' + TEXTS[3] + '\n').getBytes("UTF-8"), output.toByteArray()));
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getRecordsCount());
+
+        buffer.append(TEXTS[2]);
+        buffer.endRecord(TIME);
+        assertEncoded(TEXTS[2], buffer);
+    }
+
+    /*Cleared buffer drops encoded bytes and pending high surrogate, so nothing of dropped records is written.*/
+    public void testClearDropsRecordsAndPendingSurrogate() throws IOException {
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(64);
+        buffer.append(TEXTS[2]);
+        buffer.endRecord(TIME);
+        buffer.append("\uD83D");
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getRecordsCount());
+
+        buffer.append("after clear");
+        buffer.endRecord(TIME);
+        assertEncoded("after clear", buffer);
+    }
+
+    /*Buffer is indexed by time of its first record, which is kept until buffer is cleared.*/
+    public void testFirstRecordTimeIsTimeOfFirstRecord() throws IOException {
+        Utf8RecordBuffer buffer = new Utf8RecordBuffer(64);
+        buffer.append(TEXTS[0]);
+        buffer.endRecord(TIME);
+        buffer.append(TEXTS[1]);
+        buffer.endRecord(TIME + 1000);
+        assertEquals(TIME, buffer.getFirstRecordTime());
+
+        getBytes(buffer);
+        buffer.append(TEXTS[2]);
+        buffer.endRecord(TIME + 2000);
+        assertEquals(TIME + 2000, buffer.getFirstRecordTime());
+    }
+
+    /*Check bytes of buffer and clear it by writing.*/
+    private static void assertEncoded(String expected, Utf8RecordBuffer buffer) throws IOException {
+        byte[] expectedBytes = expected.getBytes("UTF-8");
+        byte[] bytes = getBytes(buffer);
+        assertTrue(expected + " : " + new String(bytes, "UTF-8"), Arrays.equals(expectedBytes, bytes));
+    }
+
+    private static byte[] getBytes(Utf8RecordBuffer buffer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buffer.writeTo(Channels.newChannel(output));
+        return output.toByteArray();
+    }
+}
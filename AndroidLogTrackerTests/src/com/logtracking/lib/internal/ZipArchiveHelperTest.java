@@ -0,0 +1,188 @@
+package com.logtracking.lib.internal;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ZipArchiveHelperTest extends AndroidTestCase {
+
+    private static final String REPORT_ENTRY_NAME = "report_2015.01.02.log";
+
+    private File mDirectory;
+    private byte[] mReport;
+    private File mSnapshot;
+    private File mAttachment;
+
+    @Override
+    protected void setUp() throws Exception {
+        mDirectory = File.createTempFile("archive", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < 2000; i++){
+            report.append("01-02 03:04:05.678  1234  5678 I ActivityManager: запись ").append(i).append('\n');
+        }
+        mReport = report.toString().getBytes("UTF-8");
+
+        byte[] snapshot = new byte[100 * 1024];
+        new Random(1).nextBytes(snapshot);
+        mSnapshot = writeFile("snapshot.png", snapshot);
+
+        mAttachment = writeFile("attachment.txt", Arrays.copyOf(mReport, mReport.length / 2));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(mDirectory);
+    }
+
+    public void testArchiveIsReadByZipFile() throws IOException {
+        AttachmentCache cache = new AttachmentCache(new File(mDirectory, "cache"));
+        cache.put(mAttachment, Deflater.BEST_COMPRESSION);
+
+        ZipArchiveHelper archive = new ZipArchiveHelper(new File(mDirectory, "report").getPath(), Deflater.BEST_COMPRESSION);
+        archive.putNextEntry(REPORT_ENTRY_NAME);
+        int half = mReport.length / 2;
+        archive.write(Arrays.copyOf(mReport, half));
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(mReport.length - half);
+        directBuffer.put(mReport, half, mReport.length - half).flip();
+        archive.getEntryChannel().write(directBuffer);
+        archive.packFiles(Arrays.asList(mSnapshot, mAttachment), cache);
+        archive.close();
+
+        ZipFile zipFile = new ZipFile(archive.getArchiveFile());
+        try {
+            assertEquals(Arrays.asList(REPORT_ENTRY_NAME, mSnapshot.getName(), mAttachment.getName()), getNames(zipFile));
+            assertEntry(zipFile, REPORT_ENTRY_NAME, ZipEntry.DEFLATED, mReport);
+            assertEntry(zipFile, mSnapshot.getName(), ZipEntry.STORED, readFile(mSnapshot));
+            assertEntry(zipFile, mAttachment.getName(), ZipEntry.DEFLATED, readFile(mAttachment));
+        } finally {
+            zipFile.close();
+        }
+        assertEquals(Arrays.asList("attachment.txt", "cache", "report.zip", "snapshot.png"), getSortedNames(mDirectory));
+        assertEquals(1, new File(mDirectory, "cache").list().length);
+    }
+
+    public void testArchiveWithoutPackedFiles() throws IOException {
+        ZipArchiveHelper archive = new ZipArchiveHelper(new File(mDirectory, "report").getPath(), Deflater.BEST_SPEED);
+        archive.putNextEntry("first.log");
+        archive.write(mReport);
+        archive.putNextEntry("empty.log");
+        archive.close();
+
+        ZipFile zipFile = new ZipFile(archive.getArchiveFile());
+        try {
+            assertEquals(Arrays.asList("first.log", "empty.log"), getNames(zipFile));
+            assertEntry(zipFile, "first.log", ZipEntry.DEFLATED, mReport);
+            assertEntry(zipFile, "empty.log", ZipEntry.DEFLATED, new byte[0]);
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    public void testDiscardedArchiveIsRemoved() throws IOException {
+        ZipArchiveHelper archive = new ZipArchiveHelper(new File(mDirectory, "report").getPath(), Deflater.BEST_SPEED);
+        archive.putNextEntry(REPORT_ENTRY_NAME);
+        archive.write(mReport);
+        archive.packFiles(Collections.singletonList(mAttachment));
+        archive.discard();
+
+        assertFalse(archive.getArchiveFile().exists());
+        /*Data file of compressed entry is removed by compression thread, if archive is discarded during compression.*/
+        long deadline = System.currentTimeMillis() + 5000;
+        while (getSortedNames(mDirectory).size() > 2 && System.currentTimeMillis() < deadline){
+            Thread.yield();
+        }
+        assertEquals(Arrays.asList("attachment.txt", "snapshot.png"), getSortedNames(mDirectory));
+    }
+
+    private static void assertEntry(ZipFile zipFile, String name, int method, byte[] content) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        assertNotNull(name, entry);
+        assertEquals(name, method, entry.getMethod());
+        assertEquals(name, content.length, entry.getSize());
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(name, crc.getValue(), entry.getCrc());
+
+        InputStream input = zipFile.getInputStream(entry);
+        try {
+            assertTrue(name, Arrays.equals(content, readStream(input)));
+        } finally {
+            input.close();
+        }
+    }
+
+    private static List<String> getNames(ZipFile zipFile){
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()){
+            names.add(entries.nextElement().getName());
+        }
+        return names;
+    }
+
+    private static List<String> getSortedNames(File directory){
+        List<String> names = new ArrayList<String>(Arrays.asList(directory.list()));
+        Collections.sort(names);
+        return names;
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(mDirectory, name);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return readStream(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] readStream(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) > 0){
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if (files != null){
+            for (File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}